@@ -0,0 +1,37 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Leased BGRA page buffer: native memory ({@link NativeBgraBufferPool}) for engines that take
+ * native buffers, or a pooled heap array ({@link BgraBufferPool}) for engines that only take a
+ * byte[], so pages are converted once into the memory the engine reads and never copied over.
+ *
+ * <pre>
+ * try (var buffer = sessions.acquireBuffer(BgraConverter.bgraSize(image))) {
+ *     var bgra = BgraConverter.convert(image, buffer.segment());
+ *     session.recognize(image.getWidth(), image.getHeight(), bgra);
+ * }
+ * </pre>
+ */
+public interface BgraBuffer extends AutoCloseable {
+
+    /**
+     * Segment of exactly the requested size (contents are undefined)
+     */
+    MemorySegment segment();
+
+    /**
+     * Return the buffer to its pool
+     */
+    @Override
+    void close();
+
+    /**
+     * Lease a page buffer from the shared native or heap pool
+     */
+    static BgraBuffer acquire(long size, boolean nativeMemory) {
+        return nativeMemory ? NativeBgraBufferPool.SHARED.acquire(size)
+            : BgraBufferPool.SHARED.lease(Math.toIntExact(size));
+    }
+}
@@ -0,0 +1,109 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.lang.foreign.MemorySegment;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable destination buffers for BGRA page images.
+ *
+ * Buffers are pooled by exact byte size (consecutive PDF pages almost always share one size),
+ * so a steady-state run allocates one buffer per in-flight page instead of one per page.
+ * The pool holds at most maxPooledBuffers idle buffers; extra buffers are left to the GC.
+ */
+public class BgraBufferPool {
+
+    /** Process-wide pool, sized for a handful of concurrent OCR workers */
+    public static final BgraBufferPool SHARED = new BgraBufferPool(16);
+
+    private final int maxPooledBuffers;
+    private final Map<Integer, ConcurrentLinkedDeque<byte[]>> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger pooled = new AtomicInteger(0);
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    public BgraBufferPool(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * Take a buffer of exactly size bytes (contents are undefined)
+     */
+    public byte[] acquire(int size) {
+        var bucket = buckets.get(size);
+        var buffer = bucket != null ? bucket.pollFirst() : null;
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            hits.incrementAndGet();
+            return buffer;
+        }
+        misses.incrementAndGet();
+        return new byte[size];
+    }
+
+    /**
+     * Lease a buffer of exactly size bytes as a heap segment; close() returns it to the pool
+     */
+    public BgraBuffer lease(int size) {
+        var buffer = acquire(size);
+        var segment = MemorySegment.ofArray(buffer);
+        return new BgraBuffer() {
+            private boolean released;
+
+            @Override
+            public MemorySegment segment() {
+                return segment;
+            }
+
+            @Override
+            public void close() {
+                if (!released) {
+                    released = true;
+                    release(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Return a buffer for reuse. The caller must not touch it afterwards.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null) return;
+        if (pooled.incrementAndGet() > maxPooledBuffers && !evictOther(buffer.length)) {
+            pooled.decrementAndGet();
+            return; // pool full of this size already - let the GC have it
+        }
+        buckets.computeIfAbsent(buffer.length, k -> new ConcurrentLinkedDeque<>()).offerFirst(buffer);
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public int pooledBuffers() {
+        return pooled.get();
+    }
+
+    /**
+     * Drop one idle buffer of a different size (page size changed, old size is unlikely to come back)
+     */
+    private boolean evictOther(int keepSize) {
+        for (var entry : buckets.entrySet()) {
+            if (entry.getKey() != keepSize && entry.getValue().pollLast() != null) {
+                pooled.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,342 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Converts BufferedImages to the BGRA byte layout expected by OneOCR.
+ *
+ * The common raster types (TYPE_3BYTE_BGR, TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_4BYTE_ABGR,
+ * TYPE_BYTE_GRAY) are read straight from their DataBuffer instead of one getRGB(x, y)
+ * virtual call per pixel. Anything else (indexed, sub-images, custom sample models) falls back
+ * to row-wise getRGB, which still avoids the per-pixel call overhead.
+ * Output is byte-identical to the per-pixel getRGB conversion for every type.
+ *
+ * Both heap (byte[]) and off-heap (MemorySegment) destinations are supported; the segment
+ * variant lets pages go straight into native memory for the OCR call.
+ */
+public class BgraConverter {
+
+    // An ARGB int stored little-endian is exactly B,G,R,A
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfInt SEGMENT_INT_LE = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    // TYPE_BYTE_GRAY is linear gray; getRGB maps it through the sRGB curve, so we use the same mapping
+    private static final int[] GRAY_TO_ARGB = grayToArgbTable();
+
+    /**
+     * Number of bytes needed for the BGRA representation of an image
+     */
+    public static int bgraSize(BufferedImage image) {
+        return Math.multiplyExact(Math.multiplyExact(image.getWidth(), image.getHeight()), 4);
+    }
+
+    /**
+     * Convert into a buffer taken from the shared pool. Release it with
+     * {@code BgraBufferPool.SHARED.release(buffer)} once the OCR call is done.
+     */
+    public static byte[] convertPooled(BufferedImage image) {
+        return convert(image, BgraBufferPool.SHARED.acquire(bgraSize(image)));
+    }
+
+    /**
+     * Convert into dst (at least width*height*4 bytes) and return it
+     */
+    public static byte[] convert(BufferedImage image, byte[] dst) {
+        if (dst.length < bgraSize(image)) {
+            throw new IllegalArgumentException("Destination too small: " + dst.length + " < " + bgraSize(image));
+        }
+        var raster = image.getRaster();
+        boolean direct = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        if (direct) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_3BYTE_BGR -> {
+                    if (convert3ByteBgr(raster, dst)) return dst;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR -> {
+                    if (convert4ByteAbgr(raster, dst)) return dst;
+                }
+                case BufferedImage.TYPE_INT_RGB -> {
+                    if (convertInt(raster, dst, 0xFF000000)) return dst;
+                }
+                case BufferedImage.TYPE_INT_ARGB -> {
+                    if (convertInt(raster, dst, 0)) return dst;
+                }
+                case BufferedImage.TYPE_BYTE_GRAY -> {
+                    if (convertGray(raster, dst)) return dst;
+                }
+                default -> {
+                }
+            }
+        }
+        convertRows(image, dst);
+        return dst;
+    }
+
+    /**
+     * Convert into native memory (at least width*height*4 bytes) and return it
+     */
+    public static MemorySegment convert(BufferedImage image, MemorySegment dst) {
+        if (dst.byteSize() < bgraSize(image)) {
+            throw new IllegalArgumentException("Destination too small: " + dst.byteSize() + " < " + bgraSize(image));
+        }
+        var raster = image.getRaster();
+        boolean direct = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+        if (direct) {
+            switch (image.getType()) {
+                case BufferedImage.TYPE_3BYTE_BGR -> {
+                    if (convert3ByteBgr(raster, dst)) return dst;
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR -> {
+                    if (convert4ByteAbgr(raster, dst)) return dst;
+                }
+                case BufferedImage.TYPE_INT_RGB -> {
+                    if (convertInt(raster, dst, 0xFF000000)) return dst;
+                }
+                case BufferedImage.TYPE_INT_ARGB -> {
+                    if (convertInt(raster, dst, 0)) return dst;
+                }
+                case BufferedImage.TYPE_BYTE_GRAY -> {
+                    if (convertGray(raster, dst)) return dst;
+                }
+                default -> {
+                }
+            }
+        }
+        convertRows(image, dst);
+        return dst;
+    }
+
+    private static boolean convert3ByteBgr(Raster raster, byte[] dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 3) {
+            return false;
+        }
+        var offsets = sm.getBandOffsets(); // R,G,B band offsets: standard BGR layout is {2,1,0}
+        if (offsets[0] != 2 || offsets[1] != 1 || offsets[2] != 0) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            int end = p + width * 3;
+            for (; p < end; p += 3) {
+                dst[o++] = src[p];      // Blue
+                dst[o++] = src[p + 1];  // Green
+                dst[o++] = src[p + 2];  // Red
+                dst[o++] = (byte) 0xFF; // Alpha
+            }
+        }
+        return true;
+    }
+
+    private static boolean convert4ByteAbgr(Raster raster, byte[] dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 4) {
+            return false;
+        }
+        var offsets = sm.getBandOffsets(); // R,G,B,A band offsets: standard ABGR layout is {3,2,1,0}
+        if (offsets[0] != 3 || offsets[1] != 2 || offsets[2] != 1 || offsets[3] != 0) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            int end = p + width * 4;
+            for (; p < end; p += 4) {
+                dst[o++] = src[p + 1]; // Blue
+                dst[o++] = src[p + 2]; // Green
+                dst[o++] = src[p + 3]; // Red
+                dst[o++] = src[p];     // Alpha
+            }
+        }
+        return true;
+    }
+
+    private static boolean convertInt(Raster raster, byte[] dst, int alphaMask) {
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm)) {
+            return false;
+        }
+        var buffer = (DataBufferInt) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            int end = p + width;
+            for (; p < end; p++, o += 4) {
+                INT_LE.set(dst, o, src[p] | alphaMask);
+            }
+        }
+        return true;
+    }
+
+    private static boolean convertGray(Raster raster, byte[] dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 1) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        int base = buffer.getOffset() + sm.getBandOffsets()[0];
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = base + y * stride;
+            int end = p + width;
+            for (; p < end; p++, o += 4) {
+                INT_LE.set(dst, o, GRAY_TO_ARGB[src[p] & 0xFF]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generic path: one getRGB call per row instead of per pixel
+     */
+    private static void convertRows(BufferedImage image, byte[] dst) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        int o = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++, o += 4) {
+                INT_LE.set(dst, o, row[x]);
+            }
+        }
+    }
+
+    // Off-heap variants: same layouts as above, one little-endian int store per pixel
+
+    private static boolean convert3ByteBgr(Raster raster, MemorySegment dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 3) {
+            return false;
+        }
+        var offsets = sm.getBandOffsets();
+        if (offsets[0] != 2 || offsets[1] != 1 || offsets[2] != 0) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        long o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            int end = p + width * 3;
+            for (; p < end; p += 3, o += 4) {
+                dst.set(SEGMENT_INT_LE, o, 0xFF000000
+                    | (src[p + 2] & 0xFF) << 16 | (src[p + 1] & 0xFF) << 8 | (src[p] & 0xFF));
+            }
+        }
+        return true;
+    }
+
+    private static boolean convert4ByteAbgr(Raster raster, MemorySegment dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 4) {
+            return false;
+        }
+        var offsets = sm.getBandOffsets();
+        if (offsets[0] != 3 || offsets[1] != 2 || offsets[2] != 1 || offsets[3] != 0) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        long o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            int end = p + width * 4;
+            for (; p < end; p += 4, o += 4) {
+                dst.set(SEGMENT_INT_LE, o, (src[p] & 0xFF) << 24
+                    | (src[p + 3] & 0xFF) << 16 | (src[p + 2] & 0xFF) << 8 | (src[p + 1] & 0xFF));
+            }
+        }
+        return true;
+    }
+
+    private static boolean convertInt(Raster raster, MemorySegment dst, int alphaMask) {
+        if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm)) {
+            return false;
+        }
+        var buffer = (DataBufferInt) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        long o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = buffer.getOffset() + y * stride;
+            if (alphaMask == 0) {
+                // Already BGRA in little-endian int order: bulk copy the whole row
+                MemorySegment.copy(src, p, dst, SEGMENT_INT_LE, o, width);
+                o += (long) width * 4;
+                continue;
+            }
+            int end = p + width;
+            for (; p < end; p++, o += 4) {
+                dst.set(SEGMENT_INT_LE, o, src[p] | alphaMask);
+            }
+        }
+        return true;
+    }
+
+    private static boolean convertGray(Raster raster, MemorySegment dst) {
+        if (!(raster.getSampleModel() instanceof ComponentSampleModel sm) || sm.getPixelStride() != 1) {
+            return false;
+        }
+        var buffer = (DataBufferByte) raster.getDataBuffer();
+        var src = buffer.getData();
+        int width = raster.getWidth(), height = raster.getHeight();
+        int stride = sm.getScanlineStride();
+        int base = buffer.getOffset() + sm.getBandOffsets()[0];
+        long o = 0;
+        for (int y = 0; y < height; y++) {
+            int p = base + y * stride;
+            int end = p + width;
+            for (; p < end; p++, o += 4) {
+                dst.set(SEGMENT_INT_LE, o, GRAY_TO_ARGB[src[p] & 0xFF]);
+            }
+        }
+        return true;
+    }
+
+    private static void convertRows(BufferedImage image, MemorySegment dst) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        long o = 0;
+        for (int y = 0; y < height; y++, o += (long) width * 4) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            MemorySegment.copy(row, 0, dst, SEGMENT_INT_LE, o, width);
+        }
+    }
+
+    private static int[] grayToArgbTable() {
+        var gray = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+        var raster = gray.getRaster();
+        for (int v = 0; v < 256; v++) {
+            raster.setSample(v, 0, 0, v);
+        }
+        var table = new int[256];
+        gray.getRGB(0, 0, 256, 1, table, 0, 256);
+        return table;
+    }
+}
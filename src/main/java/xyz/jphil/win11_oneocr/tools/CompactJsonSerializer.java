@@ -201,7 +201,7 @@ public class CompactJsonSerializer {
             metaJson.getString("file"),
             imgWidth, imgHeight,
             metaJson.getString("timestampUTCISO"),
-            metaJson.getString("text"),
+            metaJson.optString("text", fullText), // plain text is no longer written to meta
             new OcrMetrics(result)
         );
         return new OcrJsonFile(metadata, result);
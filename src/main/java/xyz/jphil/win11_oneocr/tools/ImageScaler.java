@@ -0,0 +1,158 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Area-averaging downscale for deriving previews from a higher-resolution page raster.
+ *
+ * Every target pixel is the mean of the source area it covers (with fractional edge weights), so
+ * text strokes thinner than the reduction neither vanish nor alias as they do with bilinear sampling,
+ * and any ratio (e.g. 200 to 75 DPI) is handled in one pass over the source. Rows are read one at a
+ * time and resampled horizontally once, so the only extra memory is a few rows of accumulators.
+ *
+ * TYPE_BYTE_GRAY stays gray (linear samples, no sRGB round trip); everything else becomes TYPE_INT_RGB.
+ */
+public class ImageScaler {
+
+    /**
+     * Scale down to width x height (upscaling falls back to bilinear interpolation)
+     */
+    public static BufferedImage areaAverage(BufferedImage source, int width, int height) {
+        int srcWidth = source.getWidth();
+        int srcHeight = source.getHeight();
+        if (width == srcWidth && height == srcHeight) {
+            return source;
+        }
+        if (width > srcWidth || height > srcHeight) {
+            return bilinear(source, width, height);
+        }
+
+        boolean gray = source.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        int channels = gray ? 1 : 3;
+        var columns = Spans.of(srcWidth, width);
+        var rows = Spans.of(srcHeight, height);
+        float norm = 1f / ((float) srcWidth / width * ((float) srcHeight / height));
+
+        var target = new BufferedImage(width, height, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        byte[] grayOut = gray ? ((DataBufferByte) target.getRaster().getDataBuffer()).getData() : null;
+        int[] rgbOut = gray ? null : ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+
+        int[] sourceRow = new int[srcWidth];
+        float[] resampled = new float[width * channels];
+        float[] sum = new float[width * channels];
+        int resampledRow = -1;
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(sum, 0f);
+            for (int k = rows.start[y], end = rows.start[y] + rows.count[y]; k < end; k++) {
+                if (k != resampledRow) {
+                    readRow(source, k, gray, sourceRow);
+                    resampleRow(sourceRow, columns, channels, resampled);
+                    resampledRow = k;
+                }
+                float weight = rows.weight(y, k);
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += resampled[i] * weight;
+                }
+            }
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if (gray) {
+                    grayOut[offset + x] = (byte) clamp(sum[x] * norm);
+                } else {
+                    int i = x * 3;
+                    rgbOut[offset + x] = clamp(sum[i] * norm) << 16 | clamp(sum[i + 1] * norm) << 8 | clamp(sum[i + 2] * norm);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Source pixels [start, start + count) covering each target pixel, with the fractional share of the first and last
+     */
+    private record Spans(int[] start, int[] count, float[] first, float[] last) {
+
+        static Spans of(int sourceSize, int targetSize) {
+            double ratio = (double) sourceSize / targetSize;
+            var start = new int[targetSize];
+            var count = new int[targetSize];
+            var first = new float[targetSize];
+            var last = new float[targetSize];
+            for (int t = 0; t < targetSize; t++) {
+                double from = t * ratio;
+                double to = Math.min(sourceSize, (t + 1) * ratio);
+                int s = (int) Math.floor(from);
+                int e = Math.min(sourceSize, (int) Math.ceil(to));
+                start[t] = s;
+                count[t] = Math.max(1, e - s);
+                first[t] = (float) (Math.min(s + 1, to) - from);
+                last[t] = (float) (to - Math.max(e - 1, from));
+            }
+            return new Spans(start, count, first, last);
+        }
+
+        float weight(int t, int source) {
+            if (source == start[t]) return first[t];
+            if (source == start[t] + count[t] - 1) return last[t];
+            return 1f;
+        }
+    }
+
+    private static void resampleRow(int[] row, Spans columns, int channels, float[] out) {
+        int width = columns.start.length;
+        for (int x = 0; x < width; x++) {
+            float a = 0, b = 0, c = 0;
+            for (int k = columns.start[x], end = k + columns.count[x]; k < end; k++) {
+                float weight = columns.weight(x, k);
+                int pixel = row[k];
+                if (channels == 1) {
+                    a += pixel * weight;
+                } else {
+                    a += (pixel >> 16 & 0xFF) * weight;
+                    b += (pixel >> 8 & 0xFF) * weight;
+                    c += (pixel & 0xFF) * weight;
+                }
+            }
+            if (channels == 1) {
+                out[x] = a;
+            } else {
+                out[x * 3] = a;
+                out[x * 3 + 1] = b;
+                out[x * 3 + 2] = c;
+            }
+        }
+    }
+
+    // One row as gray samples or packed RGB, straight from the raster for the renderer's types
+    private static void readRow(BufferedImage image, int y, boolean gray, int[] row) {
+        int type = image.getType();
+        if (gray) {
+            image.getRaster().getSamples(0, y, row.length, 1, 0, row);
+        } else if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().getDataElements(0, y, row.length, 1, row);
+        } else {
+            image.getRGB(0, y, row.length, 1, row, 0, row.length);
+        }
+    }
+
+    private static int clamp(float value) {
+        int v = Math.round(value);
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+
+    private static BufferedImage bilinear(BufferedImage source, int width, int height) {
+        var target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+}
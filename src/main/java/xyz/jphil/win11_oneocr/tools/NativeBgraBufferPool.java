@@ -0,0 +1,147 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap BGRA page buffers, bucketed by power-of-two size class.
+ *
+ * Page images are converted straight into native memory and handed to the OCR engine from there,
+ * so a page never exists as a heap byte[] on the way to OneOCR. Each buffer lives in its own shared
+ * Arena, which lets idle buffers be freed individually once more than maxIdleBytes are pooled.
+ *
+ * <pre>
+ * try (var buffer = NativeBgraBufferPool.SHARED.acquire(width * height * 4)) {
+ *     BgraConverter.convert(image, buffer.segment());
+ *     session.recognize(width, height, buffer.segment());
+ * }
+ * </pre>
+ */
+public class NativeBgraBufferPool {
+
+    /** Process-wide pool; keeps up to 256MB of idle native buffers */
+    public static final NativeBgraBufferPool SHARED = new NativeBgraBufferPool(256L * 1024 * 1024);
+
+    private static final long MIN_SIZE_CLASS = 64 * 1024;
+    private static final long ALIGNMENT = 64;
+
+    private final long maxIdleBytes;
+    private final Map<Long, ConcurrentLinkedDeque<Slot>> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong idleBytes = new AtomicLong(0);
+
+    // Statistics
+    private final AtomicLong allocatedBytes = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+
+    private record Slot(Arena arena, MemorySegment segment) {}
+
+    public NativeBgraBufferPool(long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    /**
+     * Lease of a native buffer; close() returns it to the pool
+     */
+    public final class Buffer implements BgraBuffer {
+        private final Slot slot;
+        private final MemorySegment segment;
+        private boolean released;
+
+        private Buffer(Slot slot, long size) {
+            this.slot = slot;
+            this.segment = slot.segment().asSlice(0, size);
+        }
+
+        @Override
+        public MemorySegment segment() {
+            return segment;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(slot);
+            }
+        }
+    }
+
+    /**
+     * Lease a native buffer of at least size bytes
+     */
+    public Buffer acquire(long size) {
+        long sizeClass = sizeClass(size);
+        var bucket = buckets.get(sizeClass);
+        var slot = bucket != null ? bucket.pollFirst() : null;
+        if (slot != null) {
+            idleBytes.addAndGet(-sizeClass);
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            var arena = Arena.ofShared();
+            slot = new Slot(arena, arena.allocate(sizeClass, ALIGNMENT));
+            allocatedBytes.addAndGet(sizeClass);
+        }
+        return new Buffer(slot, size);
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Native bytes currently allocated (leased + idle)
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long idleBytes() {
+        return idleBytes.get();
+    }
+
+    /**
+     * Free all idle buffers
+     */
+    public void trim() {
+        for (var bucket : buckets.values()) {
+            Slot slot;
+            while ((slot = bucket.pollFirst()) != null) {
+                idleBytes.addAndGet(-slot.segment().byteSize());
+                free(slot);
+            }
+        }
+    }
+
+    private void release(Slot slot) {
+        long size = slot.segment().byteSize();
+        if (idleBytes.addAndGet(size) > maxIdleBytes) {
+            idleBytes.addAndGet(-size);
+            free(slot);
+            return;
+        }
+        buckets.computeIfAbsent(size, k -> new ConcurrentLinkedDeque<>()).offerFirst(slot);
+    }
+
+    private void free(Slot slot) {
+        allocatedBytes.addAndGet(-slot.segment().byteSize());
+        slot.arena().close();
+    }
+
+    static long sizeClass(long size) {
+        if (size <= MIN_SIZE_CLASS) {
+            return MIN_SIZE_CLASS;
+        }
+        long highest = Long.highestOneBit(size);
+        return highest == size ? size : highest << 1;
+    }
+}
@@ -81,6 +81,10 @@ public class OcrDSL {
         return new HtmlAttribute("imgHeight", String.valueOf(height));//easier for ai to understand
     }
     
+    public static HtmlAttribute textSource(String value) {
+        return new HtmlAttribute("textSource", value);
+    }
+
     public static HtmlAttribute timestamp(String value) {
         return new HtmlAttribute("timestamp", value);
     }
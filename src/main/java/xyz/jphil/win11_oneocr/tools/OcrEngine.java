@@ -0,0 +1,60 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.nio.file.Path;
+
+/**
+ * Pluggable OCR engine. Commands only talk to engines through sessions
+ * ({@link OcrSessionManager}), so the whole pipeline can run and be profiled off Windows.
+ *
+ * Engines are selected with the global --engine option:
+ * <ul>
+ * <li>{@code oneocr} - native Windows 11 OneOCR (default)</li>
+ * <li>{@code replay:<dir|file>} - serves results from existing .oneocr.json files</li>
+ * <li>{@code synthetic[:latencyMs[:wordsPerLine[:linesPerPage]]]} - generated results with a fixed per-call latency</li>
+ * </ul>
+ */
+public interface OcrEngine {
+
+    /**
+     * Short engine name for logs
+     */
+    String name();
+
+    /**
+     * Open a session on the calling thread (see OcrSession for the thread-confinement rule)
+     */
+    OcrSession openSession(int maxLines) throws Exception;
+
+    /**
+     * Whether its sessions read native page buffers without copying them (they override
+     * recognize(MemorySegment)); if not, pages are converted into heap buffers (see {@link BgraBuffer})
+     */
+    default boolean acceptsNativeBuffers() {
+        return false;
+    }
+
+    /**
+     * Create an engine from its --engine specification
+     */
+    static OcrEngine fromSpec(String spec) throws Exception {
+        if (spec == null || spec.isBlank() || spec.equalsIgnoreCase("oneocr")) {
+            return new OneOcrEngine();
+        }
+
+        var parts = spec.split(":", 2);
+        var kind = parts[0].toLowerCase();
+        var args = parts.length > 1 ? parts[1] : "";
+
+        return switch (kind) {
+            case "replay" -> {
+                if (args.isBlank()) {
+                    throw new IllegalArgumentException("Replay engine needs a source: replay:<dir|file>");
+                }
+                yield ReplayOcrEngine.load(Path.of(args));
+            }
+            case "synthetic" -> SyntheticOcrEngine.fromArgs(args);
+            default -> throw new IllegalArgumentException("Unknown OCR engine: " + spec
+                + " (expected oneocr, replay:<dir>, synthetic[:latencyMs[:wordsPerLine[:linesPerPage]]])");
+        };
+    }
+}
@@ -29,7 +29,7 @@ public class OcrMetrics {
                 cnt++;
             }
         }
-        return total/cnt;
+        return cnt > 0 ? total/cnt : 0; // blank page: avoid NaN (not representable in JSON)
     }
     
     public double highConfWordsRatio(){
@@ -45,7 +45,8 @@ public class OcrMetrics {
     }
 
     public double wordsPercentageWithinConfRange(double above, double below){
-        return wordsWithinConfRange(above, below)/wordsCount();
+        int words = wordsCount();
+        return words > 0 ? wordsWithinConfRange(above, below)/words : 0;
     }
             
     
@@ -0,0 +1,267 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.tools.pdf.CheckpointJournal;
+import xyz.jphil.win11_oneocr.tools.pdf.PageSidecar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+
+/**
+ * Content-addressed store of OCR results (--result-cache), shared by runs, folders and threads,
+ * so an input seen before is not OCRed again wherever a copy of it turns up.
+ *
+ * Results are keyed by the MD5 of the OCR input (an image file's bytes, or a rendered PDF page's
+ * BGRA pixels) plus what else decides the result: engine, maxLines and, for pixels, the raster
+ * size. The MD5 doubles as the srcMD5 of the XHTML outputs. One gzipped file per result:
+ * <pre>
+ * &lt;dir&gt;/9c/9c1e04aa...e3-5a03c1f7.ocr    (md5-crc of the options)
+ * </pre>
+ * holding the options line, then the lossless page sidecar JSON of the result and its image size.
+ *
+ * Lookups are lock-free: an in-memory index (built when the cache is opened) says which results
+ * exist; files are written to a temp file and moved into place, so a reader sees a whole file or
+ * none. Past maxBytes the least recently used results are deleted down to 90% of it; a hit touches
+ * its file, so recency carries over to later runs. A result deleted under a reader is a miss.
+ */
+public class OcrResultCache {
+
+    static final String SUFFIX = ".ocr";
+
+    /**
+     * Cached result and the size of the image it was recognized on
+     */
+    public record Entry(OcrResult result, int width, int height) {}
+
+    /**
+     * Cache key; options must match exactly for a hit
+     */
+    public record Key(String md5, String options) {
+        String fileName() {
+            return md5 + "-" + HexFormat.of().toHexDigits(CheckpointJournal.crc(options.getBytes(StandardCharsets.UTF_8))) + SUFFIX;
+        }
+    }
+
+    private static final class Slot {
+        final long bytes;
+        volatile long used;
+
+        Slot(long bytes, long used) {
+            this.bytes = bytes;
+            this.used = used;
+        }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final String engine;
+    private final Map<String, Slot> index = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private OcrResultCache(Path dir, long maxBytes, String engine) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.engine = engine;
+    }
+
+    /**
+     * Open (or create) a cache directory for results of the given engine (its --engine spec)
+     */
+    public static OcrResultCache open(Path dir, long maxBytes, String engine) throws IOException {
+        var cache = new OcrResultCache(dir, maxBytes, engine);
+        Files.createDirectories(dir);
+        try (var files = Files.walk(dir, 2)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                var name = file.getFileName().toString();
+                if (!name.endsWith(SUFFIX)) continue;
+                try {
+                    var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    cache.index.put(name, new Slot(attributes.size(), attributes.lastModifiedTime().toMillis()));
+                    cache.totalBytes.addAndGet(attributes.size());
+                } catch (NoSuchFileException e) {
+                    // evicted by another run meanwhile
+                }
+            }
+        }
+        cache.evictIfFull();
+        return cache;
+    }
+
+    /**
+     * Key of an image file's result, from the MD5 of its bytes
+     */
+    public Key key(String md5, int maxLines) {
+        return new Key(md5, engine + " maxLines=" + maxLines);
+    }
+
+    /**
+     * Key of a raster's result, from the MD5 of its BGRA pixels
+     */
+    public Key key(String md5, int maxLines, int width, int height) {
+        return new Key(md5, engine + " maxLines=" + maxLines + " bgra=" + width + "x" + height);
+    }
+
+    /**
+     * Cached result, or null
+     */
+    public Entry get(Key key) {
+        var name = key.fileName();
+        var slot = index.get(name);
+        if (slot != null) {
+            var file = path(name);
+            try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+                var content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                int newline = content.indexOf('\n');
+                if (newline >= 0 && content.substring(0, newline).equals(key.options())) {
+                    var page = PageSidecar.fromJson(content.substring(newline + 1));
+                    long now = System.currentTimeMillis();
+                    slot.used = now;
+                    try {
+                        Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+                    } catch (IOException e) {
+                        // recency is only kept for this run
+                    }
+                    hits.incrementAndGet();
+                    return new Entry(page.ocrResult(), page.imageWidth(), page.imageHeight());
+                }
+            } catch (IOException | RuntimeException e) {
+                // evicted, or unreadable: recognized again and stored anew
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store a result; concurrent stores of one key leave one of them
+     */
+    public void put(Key key, Entry entry) throws IOException {
+        var name = key.fileName();
+        var json = PageSidecar.toJson(new PagedOcrResult(0, entry.result(), "", entry.width(), entry.height(), null, null));
+        var bytes = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write((key.options() + "\n" + json).getBytes(StandardCharsets.UTF_8));
+        }
+        var file = path(name);
+        Files.createDirectories(file.getParent());
+        var temp = Files.createTempFile(file.getParent(), name, ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        var previous = index.put(name, new Slot(bytes.size(), System.currentTimeMillis()));
+        totalBytes.addAndGet(bytes.size() - (previous != null ? previous.bytes : 0));
+        stores.incrementAndGet();
+        evictIfFull();
+    }
+
+    // One thread evicts at a time; others carry on without waiting
+    private void evictIfFull() {
+        if (totalBytes.get() <= maxBytes || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            var oldest = new ArrayList<>(index.entrySet());
+            oldest.sort(Comparator.comparingLong(e -> e.getValue().used));
+            long target = maxBytes / 10 * 9;
+            for (var e : oldest) {
+                if (totalBytes.get() <= target) break;
+                if (!index.remove(e.getKey(), e.getValue())) continue;
+                totalBytes.addAndGet(-e.getValue().bytes);
+                evictions.incrementAndGet();
+                try {
+                    Files.deleteIfExists(path(e.getKey()));
+                } catch (IOException ex) {
+                    // left for a later eviction pass (next open)
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private Path path(String name) {
+        return dir.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long stores() {
+        return stores.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public int entries() {
+        return index.size();
+    }
+
+    public long sizeBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * MD5 of a file's bytes, as hex
+     */
+    public static String md5(byte[] bytes) {
+        return HexFormat.of().formatHex(digest().digest(bytes));
+    }
+
+    /**
+     * MD5 of native pixels (e.g. a BGRA page buffer), as hex
+     */
+    public static String md5(MemorySegment segment) {
+        var digest = digest();
+        long chunk = 1 << 24;
+        for (long offset = 0; offset < segment.byteSize(); offset += chunk) {
+            digest.update(segment.asSlice(offset, Math.min(chunk, segment.byteSize() - offset)).asByteBuffer());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform has MD5
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.BoundingBox;
+import xyz.jphil.win11_oneocr.OcrLine;
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.OcrWord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static xyz.jphil.win11_oneocr.OcrWord.ocrWord;
+
+/**
+ * Small helpers for transforming OcrResult records
+ */
+public class OcrResults {
+
+    /**
+     * Empty result (blank page or failed recognition)
+     */
+    public static OcrResult empty() {
+        return new OcrResult("", 0.0, List.of());
+    }
+
+    /**
+     * Scale all bounding boxes, e.g. to map coordinates from one raster size to another
+     */
+    public static OcrResult scale(OcrResult result, double sx, double sy) {
+        if (sx == 1.0 && sy == 1.0) {
+            return result;
+        }
+        var lines = new ArrayList<OcrLine>(result.lines().size());
+        for (var line : result.lines()) {
+            var words = new ArrayList<OcrWord>(line.words().size());
+            for (var word : line.words()) {
+                words.add(ocrWord(word.text(), scale(word.boundingBox(), sx, sy), word.confidence(), ""));
+            }
+            lines.add(new OcrLine(line.text(), scale(line.boundingBox(), sx, sy), words));
+        }
+        return new OcrResult(result.text(), result.textAngle(), lines);
+    }
+
+    /**
+     * Keep at most maxLines lines (mirrors the engine-side maxLines option)
+     */
+    public static OcrResult limitLines(OcrResult result, int maxLines) {
+        if (maxLines <= 0 || result.lines().size() <= maxLines) {
+            return result;
+        }
+        var lines = result.lines().subList(0, maxLines);
+        var text = String.join("\n", lines.stream().map(OcrLine::text).toList());
+        return new OcrResult(text, result.textAngle(), List.copyOf(lines));
+    }
+
+    private static BoundingBox scale(BoundingBox b, double sx, double sy) {
+        if (b == null) {
+            return null;
+        }
+        return new BoundingBox(
+            b.x1() * sx, b.y1() * sy,
+            b.x2() * sx, b.y2() * sy,
+            b.x3() * sx, b.y3() * sy,
+            b.x4() * sx, b.y4() * sy
+        );
+    }
+}
@@ -0,0 +1,72 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.OcrResult;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * An initialized OCR pipeline that can recognize any number of images.
+ *
+ * Sessions are thread-confined: OneOCR must be initialized on the same thread that uses it
+ * (confirmed by ThreadInitializationTest), so a session is only ever used by the thread that opened it.
+ * Use {@link OcrSessionManager} to obtain one instead of opening sessions directly.
+ */
+public interface OcrSession extends AutoCloseable {
+
+    /**
+     * Recognize text in a BGRA image (4 bytes per pixel, row-major)
+     */
+    OcrResult recognize(int width, int height, byte[] bgraData) throws Exception;
+
+    /**
+     * Recognize text in a BGRA image held in a segment.
+     * Sessions that can hand native memory to the engine directly should override this. The
+     * default passes a segment over a whole heap array (a {@link BgraBufferPool} lease) as that
+     * array, and copies anything else into a pooled heap buffer.
+     */
+    default OcrResult recognize(int width, int height, MemorySegment bgraData) throws Exception {
+        if (bgraData.heapBase().orElse(null) instanceof byte[] array
+                && bgraData.address() == 0 && array.length == bgraData.byteSize()) {
+            return recognize(width, height, array);
+        }
+        int size = Math.toIntExact(bgraData.byteSize());
+        var heap = BgraBufferPool.SHARED.acquire(size);
+        try {
+            MemorySegment.copy(bgraData, ValueLayout.JAVA_BYTE, 0, heap, 0, size);
+            return recognize(width, height, heap);
+        } finally {
+            BgraBufferPool.SHARED.release(heap);
+        }
+    }
+
+    /**
+     * Whether recognize(MemorySegment) reads native memory without copying it; sessions that
+     * override it to do so should return true
+     */
+    default boolean acceptsNativeBuffers() {
+        return false;
+    }
+
+    /**
+     * Recognize text in an image, converting it straight into a pooled BGRA buffer of the kind
+     * this session reads without a copy
+     */
+    default OcrResult recognize(BufferedImage image) throws Exception {
+        try (var buffer = BgraBuffer.acquire(BgraConverter.bgraSize(image), acceptsNativeBuffers())) {
+            return recognize(image.getWidth(), image.getHeight(), BgraConverter.convert(image, buffer.segment()));
+        }
+    }
+
+    @Override
+    void close() throws Exception;
+
+    /**
+     * Opens a new session on the calling thread
+     */
+    @FunctionalInterface
+    interface Factory {
+        OcrSession open() throws Exception;
+    }
+}
@@ -0,0 +1,259 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one initialized OCR session per thread for the whole run.
+ *
+ * Sessions are opened lazily on the thread that first borrows them and are never shared
+ * across threads (OneOCR thread-local init rule, see ThreadInitializationTest).
+ * The manager also owns the OCR worker pool: worker threads keep their session across
+ * tasks and close it on their own thread when the pool shuts down.
+ *
+ * Typical use:
+ * <pre>
+ * try (var sessions = new OcrSessionManager(engine, maxLines, threads)) {
+ *     var result = sessions.session().recognize(width, height, bgra);
+ *     // or from any thread, on a pool worker shared with every other caller
+ *     var pooled = sessions.call(session -&gt; session.recognize(width, height, bgra));
+ * }
+ * </pre>
+ */
+public class OcrSessionManager implements AutoCloseable {
+
+    private final OcrSession.Factory factory;
+    private final int workerCount;
+    private final PageScheduler scheduler;
+    private final boolean nativeBuffers;
+    private final Map<Thread, OcrSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger workerIds = new AtomicInteger(0);
+    private final Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+
+    // Lifecycle statistics (useful for verbose output and tests)
+    private final AtomicInteger sessionsOpened = new AtomicInteger(0);
+    private final AtomicInteger sessionsClosed = new AtomicInteger(0);
+    private final AtomicLong borrows = new AtomicLong(0);
+    private final AtomicInteger sessionsLeaked = new AtomicInteger(0);
+
+    // How long close() waits for queued work, then for interrupted workers to exit
+    long drainMillis = TimeUnit.SECONDS.toMillis(60);
+    long joinMillis = TimeUnit.SECONDS.toMillis(10);
+
+    private ExecutorService workers;
+    private volatile boolean closed = false;
+
+    /**
+     * OCR work done with a pool worker's session
+     */
+    @FunctionalInterface
+    public interface SessionTask<T> {
+        T apply(OcrSession session) throws Exception;
+    }
+
+    public OcrSessionManager(OcrSession.Factory factory, int workerCount) {
+        this(factory, workerCount, PageScheduler.Policy.FIFO);
+    }
+
+    /**
+     * Manager whose workers take queued tasks of different files by the given policy
+     */
+    public OcrSessionManager(OcrSession.Factory factory, int workerCount, PageScheduler.Policy policy) {
+        this(factory, workerCount, policy, true);
+    }
+
+    private OcrSessionManager(OcrSession.Factory factory, int workerCount, PageScheduler.Policy policy, boolean nativeBuffers) {
+        this.factory = factory;
+        this.nativeBuffers = nativeBuffers;
+        this.workerCount = Math.max(1, workerCount);
+        this.scheduler = new PageScheduler(policy);
+    }
+    
+    public OcrSessionManager(OcrEngine engine, int maxLines, int workerCount) {
+        this(engine, maxLines, workerCount, PageScheduler.Policy.FIFO);
+    }
+
+    public OcrSessionManager(OcrEngine engine, int maxLines, int workerCount, PageScheduler.Policy policy) {
+        this(() -> engine.openSession(maxLines), workerCount, policy, engine.acceptsNativeBuffers());
+    }
+
+    /**
+     * Page buffer for images recognized through these sessions: native memory when the engine
+     * reads it directly, a pooled heap array otherwise
+     */
+    public BgraBuffer acquireBuffer(long size) {
+        return BgraBuffer.acquire(size, nativeBuffers);
+    }
+
+    /**
+     * Borrow the calling thread's session, opening it on first use
+     */
+    public OcrSession session() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("OCR session manager is closed");
+        }
+        var thread = Thread.currentThread();
+        var session = sessions.get(thread);
+        if (session == null) {
+            session = factory.open();
+            sessions.put(thread, session);
+            sessionsOpened.incrementAndGet();
+        }
+        borrows.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Close the calling thread's session (if any). The next borrow on this thread opens a new one.
+     */
+    public void release() {
+        var session = sessions.remove(Thread.currentThread());
+        if (session != null) {
+            closeQuietly(session);
+        }
+    }
+
+    /**
+     * Fixed pool of OCR worker threads, each keeping its own session for the whole run.
+     * Owned by the manager - callers submit tasks but must not shut it down.
+     */
+    public synchronized ExecutorService workers() {
+        if (closed) {
+            throw new IllegalStateException("OCR session manager is closed");
+        }
+        if (workers == null) {
+            workers = scheduler.newPool(workerCount, this::newWorkerThread);
+        }
+        return workers;
+    }
+
+    /**
+     * Run the task on an OCR worker with that worker's session and wait for its result.
+     * Callers on any number of threads (several files, several page pipelines) queue on the same
+     * fixed pool, so the number of engine sessions stays at workerCount however many files run.
+     */
+    public <T> T call(SessionTask<T> task) throws Exception {
+        return call(PageScheduler.Source.ANY, task);
+    }
+
+    /**
+     * Run a page of the given file on an OCR worker, scheduled among other files' pages by the policy
+     */
+    public <T> T call(PageScheduler.Source source, SessionTask<T> task) throws Exception {
+        var result = scheduler.submit(workers(), source, () -> task.apply(session()));
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        }
+    }
+
+    public PageScheduler.Policy policy() {
+        return scheduler.policy();
+    }
+
+    public int workerCount() {
+        return workerCount;
+    }
+
+    public int sessionsOpened() {
+        return sessionsOpened.get();
+    }
+
+    public int sessionsClosed() {
+        return sessionsClosed.get();
+    }
+
+    public int activeSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Sessions of workers still running when close() gave up waiting; left open rather than
+     * closed off their own thread
+     */
+    public int sessionsLeaked() {
+        return sessionsLeaked.get();
+    }
+
+    public long borrows() {
+        return borrows.get();
+    }
+
+    @Override
+    public void close() {
+        ExecutorService pool;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            pool = workers;
+        }
+
+        // Worker threads close their own sessions as they exit
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(drainMillis, TimeUnit.MILLISECONDS)) {
+                    pool.shutdownNow();
+                }
+                // The pool counts as terminated before a worker's own session cleanup has run
+                for (var thread : workerThreads) {
+                    thread.join(joinMillis);
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Remaining sessions belong to non-worker threads (e.g. the main thread), or to workers
+        // stuck in a recognition: those are never closed from here, off their own thread
+        for (var thread : sessions.keySet()) {
+            if (workerThreads.contains(thread)) {
+                sessionsLeaked.incrementAndGet();
+                System.err.println("OCR session of " + thread.getName() + " leaked: the worker did not exit");
+                continue;
+            }
+            var session = sessions.remove(thread);
+            if (session != null) {
+                closeQuietly(session);
+            }
+        }
+    }
+
+    private Thread newWorkerThread(Runnable task) {
+        var thread = new Thread(() -> {
+            try {
+                task.run();
+            } finally {
+                release(); // thread-local cleanup: close the session on the thread that opened it
+                workerThreads.remove(Thread.currentThread());
+            }
+        }, "ocr-worker-" + workerIds.incrementAndGet());
+        thread.setDaemon(true);
+        workerThreads.add(thread);
+        return thread;
+    }
+
+    private void closeQuietly(OcrSession session) {
+        try {
+            session.close();
+        } catch (Exception e) {
+            System.err.println("Failed to close OCR session: " + e.getMessage());
+        } finally {
+            sessionsClosed.incrementAndGet();
+        }
+    }
+}
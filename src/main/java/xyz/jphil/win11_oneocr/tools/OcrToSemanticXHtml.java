@@ -29,6 +29,20 @@ public class OcrToSemanticXHtml {
      * Serialize OCR results to XHTML format using luvml DSL
      */
     public static String toXHtml(OcrResult result, String imageFile, int imageWidth, int imageHeight) {
+        return toXHtml(result, imageFile, imageWidth, imageHeight, null);
+    }
+
+    /**
+     * Serialize a page whose text did not come from OCR, recording where it came from (textSource)
+     */
+    public static String toXHtml(OcrResult result, String imageFile, int imageWidth, int imageHeight, String source) {
+        return toXHtml(result, imageFile, imageWidth, imageHeight, source, null);
+    }
+
+    /**
+     * Serialize with the MD5 of the recognized input (srcMD5), when it is known
+     */
+    public static String toXHtml(OcrResult result, String imageFile, int imageWidth, int imageHeight, String source, String md5) {
         // Create metadata record
         var metadata = OcrMetadata.create(imageFile, imageWidth, imageHeight, result);
         
@@ -78,7 +92,9 @@ public class OcrToSemanticXHtml {
         var ocrSection = section(
             class_("win11OneOcrPage"),
             srcName(metadata.file()),
+            if_(md5 != null, () -> srcMD5(md5)),
             imgWidth(metadata.width()),imgHeight(metadata.height()),
+            if_(source != null, () -> textSource(source)),
             timestamp(metadata.timestampUTCISO()),
             angle(formatNumber(result.textAngle())),
             ocrSegmentsCount(String.valueOf(metadata.metrics().linesCount())),
@@ -154,11 +170,6 @@ public class OcrToSemanticXHtml {
             return "";
         }
         
-        // Create metadata based on combined results
-        var firstResult = pagedResults.get(0);
-        var combinedMetadata = OcrMetadata.create(documentName, 
-            firstResult.imageWidth(), firstResult.imageHeight(), firstResult.ocrResult());
-        
         // Calculate combined metrics
         int totalWords = pagedResults.stream()
             .mapToInt(r -> r.ocrResult().lines().stream().mapToInt(l -> l.words().size()).sum())
@@ -173,72 +184,63 @@ public class OcrToSemanticXHtml {
             .average()
             .orElse(0.0);
         
-        // Build sections for each page
-        var allPageSections = new ArrayList<Frag_I>();
+        var shell = documentShell(documentName, pagedResults.size(), totalWords, totalSegments, avgConfidence);
+        var combined = new StringBuilder(shell.header());
         int globalWordIndex = 0;
-        
         for (var pagedResult : pagedResults) {
-            // Build segments for this page
-            var pageSegments = new ArrayList<Frag_I>();
-            int segmentIndex = 1;
-            
-            for (var ocrLine : pagedResult.ocrResult().lines()) {
-                var words = ocrLine.words();
-                var words_n_sp = new ArrayList<Frag_I>();
-                
-                for (int i = 0; i < words.size(); i++) {
-                    var word = words.get(i);
-                    words_n_sp.add(
-                        w(
-                            i("#" + globalWordIndex++),
-                            p(formatConfidence(word.confidence())),
-                            if_(word.boundingBox() != null, () ->
-                                b(formatBounds(word.boundingBox()))),
-                            text(word.text())
-                        )
-                    );
-                    if (i != words.size() - 1) {
-                        words_n_sp.add(text(" "));
-                    }
-                }
-                
-                // Create segment element for this page
-                pageSegments.add(
-                    segment(
-                        num(segmentIndex++),
-                        if_(ocrLine.boundingBox() != null, () ->
-                            b(formatBounds(ocrLine.boundingBox()))),
-                        frags(words_n_sp)
-                    )
-                );
-            }
-            
-            // Create page section with its own metadata
-            var pageWordsCount = pagedResult.ocrResult().lines().stream()
-                .mapToInt(l -> l.words().size()).sum();
-            var pageSegmentsCount = pagedResult.ocrResult().lines().size();
-            var pageAvgConfidence = pagedResult.ocrResult().lines().stream()
-                .flatMap(l -> l.words().stream())
-                .mapToDouble(OcrWord::confidence)
-                .average()
-                .orElse(0.0);
-            
-            allPageSections.add(
-                section(
-                    class_("win11OneOcrPage"),
-                    srcName(pagedResult.imageName()),
-                    imgWidth(pagedResult.imageWidth()), imgHeight(pagedResult.imageHeight()),
-                    angle(formatNumber(pagedResult.ocrResult().textAngle())),
-                    ocrSegmentsCount(String.valueOf(pageSegmentsCount)),
-                    ocrWordsCount(String.valueOf(pageWordsCount)),
-                    averageOcrConfidence(formatConfidence(pageAvgConfidence)),
-                    pageNum(String.valueOf(pagedResult.pageNumber())),
-                    div(class_("ocrContent"), frags(pageSegments))
-                )
-            );
+            combined.append(pageSection(pagedResult, globalWordIndex));
+            globalWordIndex += pagedResult.ocrResult().lines().stream().mapToInt(l -> l.words().size()).sum();
         }
-        
-        // Build complete XHTML document
+        return combined.append(shell.footer()).toString();
+    }
+    
+    /**
+     * Combined document around the page sections: header ends where the first page section starts,
+     * footer starts after the last one. Lets multi-page output be written page by page.
+     */
+    public record DocumentShell(String header, String footer) {}
+    
+    private static final String PAGES_PLACEHOLDER = "@@win11OneOcrPages@@";
+    
+    /**
+     * Marks where the document-level metadata goes in a shell from {@link #documentShellWithMetadataSlot}
+     */
+    public static final String METADATA_PLACEHOLDER = "@@win11OneOcrDocumentMetadata@@";
+    
+    /**
+     * Render the combined document (head with document-level metadata, body) without its page sections
+     */
+    public static DocumentShell documentShell(String documentName, int pagesCount, int totalWords, 
+            int totalSegments, double averageConfidence) {
+        return renderShell(documentName, documentMetadataFrags(pagesCount, totalWords, totalSegments, averageConfidence));
+    }
+    
+    /**
+     * Like {@link #documentShell}, but the header carries METADATA_PLACEHOLDER instead of the document-level
+     * meta elements, for writers that only know the counts once the last page is written
+     */
+    public static DocumentShell documentShellWithMetadataSlot(String documentName) {
+        return renderShell(documentName, text(METADATA_PLACEHOLDER));
+    }
+    
+    /**
+     * Render the document-level meta elements (page, word, segment counts and average confidence)
+     */
+    public static String documentMetadata(int pagesCount, int totalWords, int totalSegments, double averageConfidence) {
+        return XHtmlStringRenderer.asFormatted(
+            documentMetadataFrags(pagesCount, totalWords, totalSegments, averageConfidence), "");
+    }
+    
+    private static Frag_I<?> documentMetadataFrags(int pagesCount, int totalWords, int totalSegments, double averageConfidence) {
+        return frags(
+            meta(name("pagesCount"), content(String.valueOf(pagesCount))),
+            meta(name("totalWords"), content(String.valueOf(totalWords))),
+            meta(name("totalSegments"), content(String.valueOf(totalSegments))),
+            meta(name("averageConfidence"), content(formatConfidence(averageConfidence)))
+        );
+    }
+    
+    private static DocumentShell renderShell(String documentName, Frag_I<?> documentMetadata) {
         var xhtmlDoc = frags(
             xmlDeclaration("UTF-8"),
             DocType.html5(),
@@ -252,21 +254,89 @@ public class OcrToSemanticXHtml {
                     link(rel("stylesheet"), href(OcrSemanticXHtml5.CSS)),
                     script(src(OcrSemanticXHtml5.JS)),
                     // Add document-level metadata
-                    meta(name("pagesCount"), content(String.valueOf(pagedResults.size()))),
-                    meta(name("totalWords"), content(String.valueOf(totalWords))),
-                    meta(name("totalSegments"), content(String.valueOf(totalSegments))),
-                    meta(name("averageConfidence"), content(formatConfidence(avgConfidence)))
+                    documentMetadata
                 ),
                 body(
                     // this is a fallback style (if viewing offline)
                     // main styling is in the css file
                     E.style("segment {display: block;}"),
-                    frags(allPageSections)
+                    text(PAGES_PLACEHOLDER)
                 )
             )
         );
         
-        return XHtmlStringRenderer.asFormatted(xhtmlDoc, "");
+        var rendered = XHtmlStringRenderer.asFormatted(xhtmlDoc, "");
+        int split = rendered.indexOf(PAGES_PLACEHOLDER);
+        return new DocumentShell(rendered.substring(0, split), 
+            rendered.substring(split + PAGES_PLACEHOLDER.length()));
+    }
+    
+    /**
+     * Render one page as a section of the combined document.
+     * Word indices are document-wide, continuing from firstWordIndex.
+     */
+    public static String pageSection(PagedOcrResult pagedResult, int firstWordIndex) {
+        // Build segments for this page
+        var pageSegments = new ArrayList<Frag_I>();
+        int segmentIndex = 1;
+        int globalWordIndex = firstWordIndex;
+        
+        for (var ocrLine : pagedResult.ocrResult().lines()) {
+            var words = ocrLine.words();
+            var words_n_sp = new ArrayList<Frag_I>();
+            
+            for (int i = 0; i < words.size(); i++) {
+                var word = words.get(i);
+                words_n_sp.add(
+                    w(
+                        i("#" + globalWordIndex++),
+                        p(formatConfidence(word.confidence())),
+                        if_(word.boundingBox() != null, () ->
+                            b(formatBounds(word.boundingBox()))),
+                        text(word.text())
+                    )
+                );
+                if (i != words.size() - 1) {
+                    words_n_sp.add(text(" "));
+                }
+            }
+            
+            // Create segment element for this page
+            pageSegments.add(
+                segment(
+                    num(segmentIndex++),
+                    if_(ocrLine.boundingBox() != null, () ->
+                        b(formatBounds(ocrLine.boundingBox()))),
+                    frags(words_n_sp)
+                )
+            );
+        }
+        
+        // Create page section with its own metadata
+        var pageWordsCount = pagedResult.ocrResult().lines().stream()
+            .mapToInt(l -> l.words().size()).sum();
+        var pageSegmentsCount = pagedResult.ocrResult().lines().size();
+        var pageAvgConfidence = pagedResult.ocrResult().lines().stream()
+            .flatMap(l -> l.words().stream())
+            .mapToDouble(OcrWord::confidence)
+            .average()
+            .orElse(0.0);
+        
+        var pageSection = section(
+            class_("win11OneOcrPage"),
+            srcName(pagedResult.imageName()),
+            if_(pagedResult.srcMD5() != null, () -> srcMD5(pagedResult.srcMD5())),
+            imgWidth(pagedResult.imageWidth()), imgHeight(pagedResult.imageHeight()),
+            if_(pagedResult.textSource() != null, () -> textSource(pagedResult.textSource())),
+            angle(formatNumber(pagedResult.ocrResult().textAngle())),
+            ocrSegmentsCount(String.valueOf(pageSegmentsCount)),
+            ocrWordsCount(String.valueOf(pageWordsCount)),
+            averageOcrConfidence(formatConfidence(pageAvgConfidence)),
+            pageNum(String.valueOf(pagedResult.pageNumber())),
+            div(class_("ocrContent"), frags(pageSegments))
+        );
+        
+        return XHtmlStringRenderer.asFormatted(frags(pageSection), "") + "\n";
     }
 
 
@@ -1,6 +1,7 @@
 package xyz.jphil.win11_oneocr.tools;
 
 import xyz.jphil.win11_oneocr.tools.folder.FolderOcrCommand;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfMemoryMode;
 import xyz.jphil.win11_oneocr.tools.pdf.PdfOcrCommand;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -10,7 +11,9 @@ import xyz.jphil.win11_oneocr.*;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -64,10 +67,63 @@ public class OcrTool implements Callable<Integer> {
 
     @Option(names = {"--threads"}, description = "Number of OCR threads for parallel processing (default: 1)", defaultValue = "1")
     private int threads;
+
+    @Option(names = {"--render-handles"}, description = "Max PDF documents opened for parallel page rendering (default: same as --threads)", defaultValue = "0")
+    private int renderHandles;
+
+    @Option(names = {"--pdf-memory"}, description = "Where PDF data lives: heap (PDFBox defaults), mixed (scratch spills to temp files past 64MB), mapped (file memory-mapped off-heap, for multi-gigabyte PDFs) (default: heap)", defaultValue = "heap")
+    private String pdfMemory;
+
+    @Option(names = {"--engine"}, description = "OCR engine: oneocr, replay:<dir|file> (replays .oneocr.json results), synthetic[:latencyMs[:wordsPerLine[:linesPerPage]]] (default: oneocr)", defaultValue = "oneocr")
+    private String engineSpec;
+
+    @Option(names = {"--result-cache"}, description = "Directory of a content-addressed OCR result cache shared across runs and folders: inputs already recognized (same content, engine and --max-lines) are not OCRed again (default: none)")
+    private File resultCacheDir;
+
+    @Option(names = {"--result-cache-mb"}, description = "Size the result cache is kept under; least recently used results are evicted first", defaultValue = "1024")
+    private long resultCacheMb;
+    
+    private OcrEngine engine;
+    private OcrResultCache resultCache;
     
     public int getThreads() {
         return threads;
     }
+    
+    /**
+     * Number of independent PDF handles used for rendering; bounds memory held by open documents
+     */
+    public int getRenderHandles() {
+        return renderHandles > 0 ? renderHandles : Math.max(1, threads);
+    }
+    
+    /**
+     * How PDFs are loaded (--pdf-memory)
+     * @throws IllegalArgumentException for an unknown mode
+     */
+    public PdfMemoryMode getPdfMemory() {
+        return PdfMemoryMode.parse(pdfMemory);
+    }
+
+    /**
+     * OCR engine selected with --engine (created once, shared by subcommands)
+     */
+    public synchronized OcrEngine getEngine() throws Exception {
+        if (engine == null) {
+            engine = OcrEngine.fromSpec(engineSpec);
+        }
+        return engine;
+    }
+
+    /**
+     * Result cache selected with --result-cache (opened once, shared by subcommands), or null
+     */
+    public synchronized OcrResultCache getResultCache() throws IOException {
+        if (resultCache == null && resultCacheDir != null) {
+            resultCache = OcrResultCache.open(resultCacheDir.toPath(), resultCacheMb * 1024 * 1024, engineSpec);
+        }
+        return resultCache;
+    }
 
     public static void main(String[] args) {
         // Set up UTF-8 console for proper emoji display
@@ -143,40 +199,54 @@ public class OcrTool implements Callable<Integer> {
                 return 1;
             }
 
-            // Load and process image
-            BufferedImage image = ImageIO.read(inputFile);
-            if (image == null) {
-                progress.err("Unable to read image file");
-                return 1;
-            }
+            // Load and process image; the bytes are read once, for decoding and the content hash (srcMD5)
+            var bytes = Files.readAllBytes(inputFile.toPath());
+            var md5 = OcrResultCache.md5(bytes);
+            var cache = getResultCache();
+            var cacheKey = cache != null ? cache.key(md5, maxLines) : null;
+            var cached = cache != null ? cache.get(cacheKey) : null;
 
-            progress.inc();
-            log.debug("IMAGE", String.format("Loaded: %dx%d pixels", image.getWidth(), image.getHeight()));
-            log.step("OCR", "Initializing engine");
-            
-            byte[] bgraData = convertToBGRA(image);
-            
-            // Perform OCR
             OcrResult result;
-            try (var ocrApi = new OneOcrApi()) {
-                log.step("OCR", "Running recognition");
-                
-                var initOptions = ocrApi.createInitOptions();
-                var pipeline = ocrApi.createPipeline(initOptions);
-                var processOptions = ocrApi.createProcessOptions(maxLines);
+            int imageWidth;
+            int imageHeight;
+            if (cached != null) {
+                // Recognized before (this file or a copy of it): outputs are regenerated from the cached result
+                result = cached.result();
+                imageWidth = cached.width();
+                imageHeight = cached.height();
+                progress.inc();
+                progress.inc();
+                log.success("OCR", String.format("Cached: %d lines, %d words (%s)", 
+                    result.lines().size(), 
+                    result.lines().stream().mapToInt(l -> l.words().size()).sum(), md5));
+            } else {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+                if (image == null) {
+                    progress.err("Unable to read image file");
+                    return 1;
+                }
+                imageWidth = image.getWidth();
+                imageHeight = image.getHeight();
+
+                progress.inc();
+                log.debug("IMAGE", String.format("Loaded: %dx%d pixels", imageWidth, imageHeight));
+                log.step("OCR", "Initializing engine");
                 
-                result = ocrApi.recognizeImage(pipeline, processOptions, 
-                    image.getWidth(), image.getHeight(), bgraData);
+                // Perform OCR
+                try (var sessions = new OcrSessionManager(getEngine(), maxLines, 1)) {
+                    log.step("OCR", "Running recognition");
                     
-                processOptions.close();
-                pipeline.close();
-                initOptions.close();
-            }
+                    result = sessions.session().recognize(image);
+                }
+                if (cache != null) {
+                    cache.put(cacheKey, new OcrResultCache.Entry(result, imageWidth, imageHeight));
+                }
 
-            progress.inc();
-            log.success("OCR", String.format("Completed: %d lines, %d words found", 
-                result.lines().size(), 
-                result.lines().stream().mapToInt(l -> l.words().size()).sum()));
+                progress.inc();
+                log.success("OCR", String.format("Completed: %d lines, %d words found", 
+                    result.lines().size(), 
+                    result.lines().stream().mapToInt(l -> l.words().size()).sum()));
+            }
             
             // Filter by confidence if specified
             if (minConfidence > 0) {
@@ -209,13 +279,13 @@ public class OcrTool implements Callable<Integer> {
                 outputPlainText(result, actualTextFile, log);
             }
             if (actualJsonFile != null) {
-                outputCompactJson(result, actualJsonFile, image.getWidth(), image.getHeight(), log);
+                outputCompactJson(result, actualJsonFile, imageWidth, imageHeight, log);
             }
             if (actualXhtmlFile != null) {
-                outputSemanticXhtml(result, actualXhtmlFile, image.getWidth(), image.getHeight(), log);
+                outputSemanticXhtml(result, actualXhtmlFile, imageWidth, imageHeight, md5, log);
             }
             if (actualSvgFile != null) {
-                generateSvg(result, actualSvgFile, image.getWidth(), image.getHeight());
+                generateSvg(result, actualSvgFile, imageWidth, imageHeight);
                 log.success("SVG", "Saved: " + actualSvgFile.getName());
             }
             
@@ -297,8 +367,8 @@ public class OcrTool implements Callable<Integer> {
         log.success("OUTPUT", String.format("JSON: %s (%d bytes)", compactJsonFile.getName(), compactJson.length()));
     }
 
-    private void outputSemanticXhtml(OcrResult result, File xhtmlFile, int imageWidth, int imageHeight, LogFormatter log) throws Exception {
-        String xhtml = OcrToSemanticXHtml.toXHtml(result, inputFile.toPath().getFileName().toString(), imageWidth, imageHeight);
+    private void outputSemanticXhtml(OcrResult result, File xhtmlFile, int imageWidth, int imageHeight, String md5, LogFormatter log) throws Exception {
+        String xhtml = OcrToSemanticXHtml.toXHtml(result, inputFile.toPath().getFileName().toString(), imageWidth, imageHeight, null, md5);
         Files.writeString(xhtmlFile.toPath(), xhtml);
         
         log.success("OUTPUT", String.format("XHTML: %s (%d bytes)", xhtmlFile.getName(), xhtml.length()));
@@ -323,22 +393,11 @@ public class OcrTool implements Callable<Integer> {
         );
     }
 
+    /**
+     * Convert an image to a freshly allocated BGRA array.
+     * Hot paths should use OcrSession.recognize(BufferedImage), which converts into pooled buffers.
+     */
     public static byte[] convertToBGRA(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        byte[] bgraData = new byte[width * height * 4];
-        
-        int index = 0;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int rgb = image.getRGB(x, y);
-                bgraData[index++] = (byte) (rgb & 0xFF);        // Blue
-                bgraData[index++] = (byte) ((rgb >> 8) & 0xFF);  // Green  
-                bgraData[index++] = (byte) ((rgb >> 16) & 0xFF); // Red
-                bgraData[index++] = (byte) ((rgb >> 24) & 0xFF); // Alpha
-            }
-        }
-        
-        return bgraData;
+        return BgraConverter.convert(image, new byte[BgraConverter.bgraSize(image)]);
     }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package xyz.jphil.win11_oneocr.tools;
+
+/**
+ * Engine adapter over the native Windows 11 OneOCR API
+ */
+public class OneOcrEngine implements OcrEngine {
+
+    @Override
+    public String name() {
+        return "oneocr";
+    }
+
+    @Override
+    public OcrSession openSession(int maxLines) throws Exception {
+        return OneOcrSession.open(maxLines);
+    }
+}
@@ -0,0 +1,66 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.OneOcrApi;
+
+/**
+ * OcrSession backed by the native Windows 11 OneOCR pipeline.
+ * Holds the api, init options, pipeline and process options for its whole lifetime,
+ * so the model is loaded once per session instead of once per image.
+ *
+ * The API (1.0) only takes byte[] images, so the session does not accept native buffers: pages
+ * are converted into pooled heap arrays, which are passed to recognizeImage as they are (the API
+ * copies them to native memory once).
+ */
+public class OneOcrSession implements OcrSession {
+
+    private final OneOcrApi api;
+    private final OneOcrApi.OcrInitOptions initOptions;
+    private final OneOcrApi.OcrPipeline pipeline;
+    private final OneOcrApi.OcrProcessOptions processOptions;
+
+    private OneOcrSession(OneOcrApi api, OneOcrApi.OcrInitOptions initOptions,
+            OneOcrApi.OcrPipeline pipeline, OneOcrApi.OcrProcessOptions processOptions) {
+        this.api = api;
+        this.initOptions = initOptions;
+        this.pipeline = pipeline;
+        this.processOptions = processOptions;
+    }
+
+    /**
+     * Load the OneOCR model and create a pipeline on the calling thread
+     */
+    public static OneOcrSession open(int maxLines) throws Exception {
+        var api = new OneOcrApi();
+        OneOcrApi.OcrInitOptions initOptions = null;
+        OneOcrApi.OcrPipeline pipeline = null;
+        try {
+            initOptions = api.createInitOptions();
+            pipeline = api.createPipeline(initOptions);
+            var processOptions = api.createProcessOptions(maxLines);
+            return new OneOcrSession(api, initOptions, pipeline, processOptions);
+        } catch (Exception e) {
+            // Release whatever was created before the failure
+            if (pipeline != null) pipeline.close();
+            if (initOptions != null) initOptions.close();
+            api.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public OcrResult recognize(int width, int height, byte[] bgraData) throws Exception {
+        return api.recognizeImage(pipeline, processOptions, width, height, bgraData);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            processOptions.close();
+            pipeline.close();
+            initOptions.close();
+        } finally {
+            api.close();
+        }
+    }
+}
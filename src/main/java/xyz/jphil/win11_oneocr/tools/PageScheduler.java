@@ -0,0 +1,150 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders the page-sized OCR tasks of every file in a run for the OCR workers.
+ *
+ * Each task belongs to a {@link Source} (an image, or a PDF whose pages are queued one by one as
+ * they are rendered). Waiting tasks are taken by policy:
+ * - fifo: in submission order
+ * - smallest: pages of the smallest file first (by page count), so short jobs finish first
+ * - round-robin: one page per file in turn, so a large PDF does not hold back the files behind it
+ *   and no file starves; a file joining late starts at the current round rather than catching up
+ *
+ * <pre>
+ * var scheduler = new PageScheduler(PageScheduler.Policy.ROUND_ROBIN);
+ * var pool = scheduler.newPool(threads, threadFactory);
+ * var result = scheduler.submit(pool, new PageScheduler.Source(path, pages), () -&gt; recognize(page));
+ * </pre>
+ */
+public class PageScheduler {
+
+    public enum Policy {
+        FIFO, SMALLEST, ROUND_ROBIN;
+
+        /**
+         * Policy for a --schedule value
+         * @throws IllegalArgumentException for anything but fifo, smallest and round-robin
+         */
+        public static Policy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("--schedule must be fifo, smallest or round-robin: " + value);
+            }
+        }
+    }
+
+    /**
+     * A file whose pages are scheduled; name identifies it (e.g. its path), pages is its size
+     */
+    public record Source(String name, long pages) {
+        /** Tasks submitted without a file */
+        public static final Source ANY = new Source("", 1);
+    }
+
+    private final class Task<T> extends FutureTask<T> {
+        final Source source;
+        final long round;
+        final long sequence;
+
+        Task(Source source, Callable<T> callable, long round, long sequence) {
+            super(callable);
+            this.source = source;
+            this.round = round;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final int PRUNE_THRESHOLD = 1024;
+
+    private final Policy policy;
+    private final Map<Source, Long> nextRound = new HashMap<>();
+    private long sequence;
+    private long servedRound;
+
+    public PageScheduler(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+
+    /**
+     * Fixed pool whose waiting tasks are taken in this scheduler's order. Tasks submitted or executed
+     * on it directly (not through submit(pool, source, task)) count as {@link Source#ANY}.
+     */
+    public ExecutorService newPool(int threads, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(64, this::compare), threadFactory) {
+            @Override
+            public void execute(Runnable command) {
+                // execute() bypasses newTaskFor: plain runnables are queued as tasks too
+                super.execute(command instanceof Task<?> ? command : task(Source.ANY, Executors.callable(command)));
+            }
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+                return task(Source.ANY, callable);
+            }
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+                return task(Source.ANY, Executors.callable(runnable, value));
+            }
+
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                served((Task<?>) task);
+            }
+        };
+    }
+
+    /**
+     * Queue a task of the given file on a pool made by {@link #newPool}
+     */
+    public <T> Future<T> submit(ExecutorService pool, Source source, Callable<T> callable) {
+        var task = task(source, callable);
+        pool.execute(task);
+        return task;
+    }
+
+    private synchronized <T> Task<T> task(Source source, Callable<T> callable) {
+        long round = Math.max(nextRound.getOrDefault(source, 0L), servedRound);
+        nextRound.put(source, round + 1);
+        return new Task<>(source, callable, round, sequence++);
+    }
+
+    private synchronized void served(Task<?> task) {
+        servedRound = Math.max(servedRound, task.round);
+        if (nextRound.size() > PRUNE_THRESHOLD) {
+            // Files whose next task would start at the current round anyway (e.g. finished ones)
+            nextRound.values().removeIf(round -> round <= servedRound);
+        }
+    }
+
+    private int compare(Runnable a, Runnable b) {
+        var x = (Task<?>) a;
+        var y = (Task<?>) b;
+        int order = switch (policy) {
+            case FIFO -> 0;
+            case SMALLEST -> Long.compare(x.source.pages(), y.source.pages());
+            case ROUND_ROBIN -> Long.compare(x.round, y.round);
+        };
+        return order != 0 ? order : Long.compare(x.sequence, y.sequence);
+    }
+}
@@ -29,15 +29,23 @@ public class PagedOcrData {
     ) {}
     
     /**
-     * Represents OCR results with page context for XHTML generation
+     * Represents OCR results with page context for XHTML generation.
+     * textSource records where the text came from when it was not OCR (e.g. the PDF text layer), null for OCR.
+     * srcMD5 is the MD5 of the recognized input (see OcrResultCache), null when it was not computed.
      */
     public record PagedOcrResult(
         int pageNumber,
         OcrResult ocrResult,
         String imageName,
         int imageWidth,
-        int imageHeight
+        int imageHeight,
+        String textSource,
+        String srcMD5
     ) {
+        public PagedOcrResult(int pageNumber, OcrResult ocrResult, String imageName, int imageWidth, int imageHeight) {
+            this(pageNumber, ocrResult, imageName, imageWidth, imageHeight, null, null);
+        }
+
         /**
          * Create from PageOcrResult
          */
@@ -0,0 +1,146 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import com.luciad.imageio.webp.WebPWriteParam;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.ImageWriterSpi;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Encodes page preview images in the format chosen with --image-format.
+ *
+ * quality is 0..100 and method (WebP only) 0..6, where lower methods encode faster and larger;
+ * -1 keeps the writer's default. {@link #none()} writes no previews at all, for runs that only
+ * need the text. The image writer is looked up once, when the encoder is chosen; each page gets
+ * its own writer instance from it, as writers are not thread-safe.
+ */
+public sealed interface PreviewEncoder {
+
+    /**
+     * File extension of the previews, or null when previews are disabled
+     */
+    String extension();
+
+    byte[] encode(BufferedImage image) throws IOException;
+
+    default boolean enabled() {
+        return extension() != null;
+    }
+
+    record Jpeg(ImageWriterSpi writers, int quality) implements PreviewEncoder {
+        @Override
+        public String extension() {
+            return "jpg";
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            var writer = writers.createWriterInstance();
+            var param = writer.getDefaultWriteParam();
+            if (quality >= 0) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality / 100f);
+            }
+            return write(writer, param, image);
+        }
+    }
+
+    record Png() implements PreviewEncoder {
+        @Override
+        public String extension() {
+            return "png";
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            var out = new ByteArrayOutputStream();
+            if (!ImageIO.write(image, "png", out)) {
+                throw new IOException("No PNG writer available");
+            }
+            return out.toByteArray();
+        }
+    }
+
+    record WebP(ImageWriterSpi writers, int quality, int method) implements PreviewEncoder {
+        @Override
+        public String extension() {
+            return "webp";
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image) throws IOException {
+            var writer = writers.createWriterInstance();
+            var param = writer.getDefaultWriteParam();
+            if (quality >= 0) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionType("Lossy");
+                param.setCompressionQuality(quality / 100f);
+            }
+            if (method >= 0 && param instanceof WebPWriteParam webp) {
+                webp.setMethod(method);
+            }
+            return write(writer, param, image);
+        }
+    }
+
+    record None() implements PreviewEncoder {
+        @Override
+        public String extension() {
+            return null;
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image) {
+            throw new IllegalStateException("Previews are disabled");
+        }
+    }
+
+    static PreviewEncoder none() {
+        return new None();
+    }
+
+    /**
+     * Encoder for an --image-format value (jpg/jpeg, png, webp, none)
+     * @throws IllegalArgumentException for an unknown format, or one without an image writer
+     */
+    static PreviewEncoder forFormat(String format, int quality, int method) {
+        return switch (format.toLowerCase(Locale.ROOT)) {
+            case "jpg", "jpeg" -> new Jpeg(writers("jpeg", "JPEG"), quality);
+            case "png" -> new Png();
+            case "webp" -> new WebP(writers("webp", "WebP"), quality, method);
+            case "none" -> none();
+            default -> throw new IllegalArgumentException("Unsupported image format: " + format
+                + " (expected jpg, png, webp or none)");
+        };
+    }
+
+    private static ImageWriterSpi writers(String formatName, String displayName) {
+        var writers = ImageIO.getImageWritersByFormatName(formatName);
+        if (!writers.hasNext()) {
+            throw new IllegalArgumentException("No " + displayName + " writer available");
+        }
+        var writer = writers.next();
+        try {
+            return writer.getOriginatingProvider();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static byte[] write(ImageWriter writer, ImageWriteParam param, BufferedImage image) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,364 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encodes page previews on a fixed number of workers, with the pixels waiting for them bounded in bytes.
+ *
+ * submit() hands over a rendered page and returns immediately while the pages admitted so far fit in
+ * maxInFlightBytes. Once the budget is used up the caller either waits for encoders to catch up
+ * (back-pressure on the renderer) or, with spill enabled, has the raw pixels written to a temp file
+ * and read back when a worker gets to them, so rendering and OCR continue at disk cost instead of heap.
+ * A spilled page comes back as the same image type with the same data, so the preview does not depend
+ * on memory pressure.
+ * A page larger than the whole budget is still admitted when nothing else is in flight.
+ *
+ * Pixels in memory are bounded by maxInFlightBytes plus one page per worker (spilled pages are read
+ * back by the worker that encodes them).
+ *
+ * One service can be shared by several PDFs (a folder run), each submitting with its own encoder,
+ * so the byte budget and the encoder threads hold for the whole run rather than per file.
+ */
+public class PreviewEncodingService implements AutoCloseable {
+
+    /**
+     * Turns a rendered page into preview file content
+     */
+    @FunctionalInterface
+    public interface Encoder {
+        byte[] encode(BufferedImage image) throws IOException;
+    }
+
+    private final Encoder encoder;
+    private final int workers;
+    private final long maxInFlightBytes;
+    private final boolean spill;
+    private final ExecutorService executor;
+    private final Set<Path> spillFiles = ConcurrentHashMap.newKeySet();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inFlightBytes;
+    private long peakInFlightBytes;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong encoded = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong pixelBytes = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Service for callers that pass their encoder with each page (see submit(image, encoder))
+     */
+    public PreviewEncodingService(int workers, long maxInFlightBytes, boolean spill) {
+        this(workers, maxInFlightBytes, spill, null);
+    }
+
+    public PreviewEncodingService(int workers, long maxInFlightBytes, boolean spill, Encoder encoder) {
+        this.encoder = encoder;
+        this.workers = Math.max(1, workers);
+        this.maxInFlightBytes = Math.max(1, maxInFlightBytes);
+        this.spill = spill;
+        var ids = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.workers, task -> {
+            var thread = new Thread(task, "preview-encoder-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a page for encoding. The caller must not modify the image afterwards.
+     * Blocks while the byte budget is used up, unless spilling is enabled.
+     */
+    public CompletableFuture<byte[]> submit(BufferedImage image) throws InterruptedException, IOException {
+        if (encoder == null) {
+            throw new IllegalStateException("No default encoder: submit the page with its encoder");
+        }
+        return submit(image, encoder);
+    }
+
+    /**
+     * Queue a page for encoding with the given encoder, as submit(image)
+     */
+    public CompletableFuture<byte[]> submit(BufferedImage image, Encoder encoder) throws InterruptedException, IOException {
+        long bytes = pixelBytes(image);
+        Path spillFile = null;
+        if (!admit(bytes, spillable(image))) {
+            spillFile = spillToDisk(image);
+            spillFiles.add(spillFile);
+            spilled.incrementAndGet();
+            bytes = 0;
+            image = null;
+        }
+
+        var result = new CompletableFuture<byte[]>();
+        final long admitted = bytes;
+        final BufferedImage inMemory = image;
+        final Path onDisk = spillFile;
+        int depth = queued.incrementAndGet();
+        peakQueued.accumulateAndGet(depth, Math::max);
+        executor.execute(() -> {
+            queued.decrementAndGet();
+            long start = System.nanoTime();
+            try {
+                var pixels = inMemory != null ? inMemory : readSpill(onDisk);
+                var content = encoder.encode(pixels);
+                encoded.incrementAndGet();
+                pixelBytes.addAndGet(pixelBytes(pixels));
+                outputBytes.addAndGet(content.length);
+                result.complete(content);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+                release(admitted);
+                if (onDisk != null) {
+                    deleteSpill(onDisk);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Reserve bytes of the budget; false when they do not fit and the page should be spilled instead
+     * (pages that cannot be spilled as they are wait for the budget)
+     */
+    private boolean admit(long bytes, boolean spillable) throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            while (inFlightBytes > 0 && inFlightBytes + bytes > maxInFlightBytes) {
+                if (spill && spillable) {
+                    return false;
+                }
+                released.await();
+            }
+            inFlightBytes += bytes;
+            peakInFlightBytes = Math.max(peakInFlightBytes, inFlightBytes);
+            return true;
+        } finally {
+            lock.unlock();
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void deleteSpill(Path file) {
+        spillFiles.remove(file);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Temp file; left for the OS to clean up
+        }
+    }
+
+    private void release(long bytes) {
+        if (bytes == 0) return;
+        lock.lock();
+        try {
+            inFlightBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static long pixelBytes(BufferedImage image) {
+        var buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * Whether the image can be spilled as its raw data buffer and rebuilt as the same type: a whole
+     * (not sub-) image of a standard non-indexed type, which is what the renderers produce
+     */
+    static boolean spillable(BufferedImage image) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_CUSTOM || type == BufferedImage.TYPE_BYTE_BINARY || type == BufferedImage.TYPE_BYTE_INDEXED) {
+            return false;
+        }
+        var raster = image.getRaster();
+        var buffer = raster.getDataBuffer();
+        return raster.getParent() == null && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+            && buffer.getNumBanks() == 1 && buffer.getOffset() == 0
+            && buffer.getSize() == (long) image.getWidth() * image.getHeight() * raster.getNumDataElements()
+            && (buffer instanceof DataBufferByte || buffer instanceof DataBufferUShort || buffer instanceof DataBufferInt);
+    }
+
+    /**
+     * The image's data buffer as is, after a header of width, height and image type
+     */
+    private static Path spillToDisk(BufferedImage image) throws IOException {
+        Path file = Files.createTempFile("oneocr-preview-", ".raw");
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            var header = ByteBuffer.allocate(12).order(ByteOrder.nativeOrder())
+                .putInt(image.getWidth()).putInt(image.getHeight()).putInt(image.getType()).flip();
+            write(channel, header);
+            var chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.nativeOrder());
+            switch (image.getRaster().getDataBuffer()) {
+                case DataBufferByte bytes -> {
+                    var data = bytes.getData();
+                    for (int offset = 0; offset < data.length; offset += chunk.capacity()) {
+                        write(channel, ByteBuffer.wrap(data, offset, Math.min(chunk.capacity(), data.length - offset)));
+                    }
+                }
+                case DataBufferUShort shorts -> {
+                    var data = shorts.getData();
+                    for (int offset = 0; offset < data.length; ) {
+                        int count = Math.min(chunk.capacity() / 2, data.length - offset);
+                        chunk.clear();
+                        chunk.asShortBuffer().put(data, offset, count);
+                        chunk.limit(count * 2);
+                        write(channel, chunk);
+                        offset += count;
+                    }
+                }
+                case DataBufferInt ints -> {
+                    var data = ints.getData();
+                    for (int offset = 0; offset < data.length; ) {
+                        int count = Math.min(chunk.capacity() / 4, data.length - offset);
+                        chunk.clear();
+                        chunk.asIntBuffer().put(data, offset, count);
+                        chunk.limit(count * 4);
+                        write(channel, chunk);
+                        offset += count;
+                    }
+                }
+                default -> throw new IllegalArgumentException("Preview cannot be spilled: " + image);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    private static BufferedImage readSpill(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = ByteBuffer.allocate(12).order(ByteOrder.nativeOrder());
+            read(channel, header);
+            header.flip();
+            var image = new BufferedImage(header.getInt(), header.getInt(), header.getInt());
+            var chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.nativeOrder());
+            switch (image.getRaster().getDataBuffer()) {
+                case DataBufferByte bytes -> {
+                    var data = bytes.getData();
+                    for (int offset = 0; offset < data.length; offset += chunk.capacity()) {
+                        read(channel, ByteBuffer.wrap(data, offset, Math.min(chunk.capacity(), data.length - offset)));
+                    }
+                }
+                case DataBufferUShort shorts -> {
+                    var data = shorts.getData();
+                    for (int offset = 0; offset < data.length; ) {
+                        int count = Math.min(chunk.capacity() / 2, data.length - offset);
+                        chunk.clear().limit(count * 2);
+                        read(channel, chunk);
+                        chunk.flip();
+                        chunk.asShortBuffer().get(data, offset, count);
+                        offset += count;
+                    }
+                }
+                case DataBufferInt ints -> {
+                    var data = ints.getData();
+                    for (int offset = 0; offset < data.length; ) {
+                        int count = Math.min(chunk.capacity() / 4, data.length - offset);
+                        chunk.clear().limit(count * 4);
+                        read(channel, chunk);
+                        chunk.flip();
+                        chunk.asIntBuffer().get(data, offset, count);
+                        offset += count;
+                    }
+                }
+                default -> throw new IOException("Spilled preview has an unsupported image type: " + image.getType());
+            }
+            return image;
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Spilled preview is truncated");
+            }
+        }
+    }
+
+    public long encoded() {
+        return encoded.get();
+    }
+
+    public long spilled() {
+        return spilled.get();
+    }
+
+    public int peakQueued() {
+        return peakQueued.get();
+    }
+
+    public long peakInFlightBytes() {
+        lock.lock();
+        try {
+            return peakInFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long pendingSpillFiles() {
+        return spillFiles.size();
+    }
+
+    /**
+     * Throughput, queue depth and memory summary, e.g. for verbose output
+     */
+    public String report() {
+        double wall = (System.nanoTime() - startNanos) / 1e9;
+        double busy = busyNanos.get() / 1e9;
+        return String.format("  previews   x%d  %5d encoded (%.1f/s, %.1f MB/s of pixels while busy, %.0f%% utilized)%n"
+                + "  previews   queue peak %d, in-memory peak %.1f of %.1f MB, %d spilled, producer waited %.1fs%n",
+            workers, encoded.get(), wall > 0 ? encoded.get() / wall : 0,
+            busy > 0 ? pixelBytes.get() / 1e6 / busy : 0, wall > 0 ? busy / (wall * workers) * 100 : 0,
+            peakQueued.get(), peakInFlightBytes() / 1e6, maxInFlightBytes / 1e6, spilled.get(),
+            waitNanos.get() / 1e9);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        // Pages that were never encoded (the run was stopped)
+        for (var file : Set.copyOf(spillFiles)) {
+            deleteSpill(file);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.OcrResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * Deterministic engine that replays results from existing .oneocr.json files.
+ *
+ * Recorded files are served in sorted path order, cycling when exhausted, so a single-threaded
+ * run always sees the same sequence. Boxes are rescaled when the requested image size differs
+ * from the recorded one. Each file is parsed once and cached, so the engine itself costs
+ * (almost) nothing - useful to measure everything around the OCR call.
+ */
+public class ReplayOcrEngine implements OcrEngine {
+
+    private final List<Path> sources;
+    private final AtomicReferenceArray<OcrJsonFile> cache;
+    private final AtomicLong cursor = new AtomicLong(0);
+
+    private ReplayOcrEngine(List<Path> sources) {
+        this.sources = sources;
+        this.cache = new AtomicReferenceArray<>(sources.size());
+    }
+
+    /**
+     * Load a single .oneocr.json file, or every .oneocr.json file below a directory
+     */
+    public static ReplayOcrEngine load(Path source) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> paths = Files.walk(source)) {
+                files = paths
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".oneocr.json"))
+                    .sorted()
+                    .toList();
+            }
+        } else if (Files.isRegularFile(source)) {
+            files = List.of(source);
+        } else {
+            throw new IOException("Replay source does not exist: " + source);
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No .oneocr.json files found in " + source);
+        }
+        return new ReplayOcrEngine(files);
+    }
+
+    @Override
+    public String name() {
+        return "replay";
+    }
+
+    @Override
+    public boolean acceptsNativeBuffers() {
+        return true;
+    }
+
+    public int recordingsCount() {
+        return sources.size();
+    }
+
+    @Override
+    public OcrSession openSession(int maxLines) {
+        return new OcrSession() {
+            @Override
+            public OcrResult recognize(int width, int height, byte[] bgraData) {
+                int index = (int) (cursor.getAndIncrement() % sources.size());
+                var recorded = recording(index);
+                var result = recorded.data();
+                int recordedWidth = recorded.metadata().width();
+                int recordedHeight = recorded.metadata().height();
+                if (recordedWidth > 0 && recordedHeight > 0) {
+                    result = OcrResults.scale(result,
+                        (double) width / recordedWidth, (double) height / recordedHeight);
+                }
+                return OcrResults.limitLines(result, maxLines);
+            }
+
+            @Override
+            public OcrResult recognize(int width, int height, MemorySegment bgraData) {
+                // Pixels are not used, so skip the heap copy
+                return recognize(width, height, (byte[]) null);
+            }
+
+            @Override
+            public boolean acceptsNativeBuffers() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private OcrJsonFile recording(int index) {
+        var recorded = cache.get(index);
+        if (recorded == null) {
+            try {
+                recorded = CompactJsonSerializer.fromJson(Files.readString(sources.get(index)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + sources.get(index), e);
+            }
+            cache.compareAndSet(index, null, recorded);
+        }
+        return recorded;
+    }
+}
@@ -0,0 +1,376 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-stage worker pipeline with bounded queues between stages and ordered commit.
+ *
+ * Every item flows through all stages in order. Each stage runs its own number of worker loops,
+ * either on threads it owns or on an executor supplied by the caller (e.g. the OCR session
+ * manager's workers, so OCR stays pinned to the threads that hold an initialized session).
+ * Queues between stages are bounded and submit() blocks once the configured number of items is
+ * in flight, so memory is bounded by queue depth rather than by the number of items.
+ *
+ * Items may finish stages out of order; the committer sees them strictly in submission order.
+ * A failing stage does not stop the pipeline: the item skips the remaining stages and is
+ * committed with its failure. This includes Errors (e.g. an OutOfMemoryError while rendering),
+ * so every item is committed and finish() cannot wait forever on a lost one.
+ *
+ * <pre>
+ * try (var pipeline = StagedPipeline.&lt;Page&gt;builder("pdf")
+ *         .stage("render", 2, page -&gt; page.render())
+ *         .stage("ocr", ocrThreads, sessions.workers(), page -&gt; page.recognize())
+ *         .commit((page, failure) -&gt; ...)
+ *         .start()) {
+ *     for (var page : pages) pipeline.submit(page);
+ *     pipeline.finish();
+ * }
+ * </pre>
+ */
+public class StagedPipeline<T> implements AutoCloseable {
+
+    /**
+     * Work done by one stage on one item
+     */
+    @FunctionalInterface
+    public interface StageTask<T> {
+        void process(T item) throws Exception;
+    }
+
+    /**
+     * Receives items in submission order; failure is null when every stage succeeded
+     */
+    @FunctionalInterface
+    public interface Committer<T> {
+        void commit(T item, Throwable failure) throws Exception;
+    }
+
+    private static final class Envelope<T> {
+        final long sequence;
+        final T item;
+        Throwable failure;
+
+        Envelope(long sequence, T item) {
+            this.sequence = sequence;
+            this.item = item;
+        }
+    }
+
+    private final class Stage {
+        final String name;
+        final int parallelism;
+        final StageTask<T> task;
+        final ExecutorService executor;
+        final boolean ownsExecutor;
+        final BlockingQueue<Envelope<T>> input;
+        final AtomicLong busyNanos = new AtomicLong(0);
+        final AtomicLong processed = new AtomicLong(0);
+        Stage next;
+
+        Stage(String name, int parallelism, StageTask<T> task, ExecutorService executor, int queueDepth) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.task = task;
+            this.ownsExecutor = executor == null;
+            this.executor = executor != null ? executor : Executors.newFixedThreadPool(parallelism, threadFactory(name));
+            this.input = new ArrayBlockingQueue<>(queueDepth);
+        }
+
+        void work() {
+            try {
+                while (true) {
+                    var envelope = input.take();
+                    if (envelope == poison) {
+                        return;
+                    }
+                    if (envelope.failure == null) {
+                        long start = System.nanoTime();
+                        try {
+                            task.process(envelope.item);
+                            processed.incrementAndGet();
+                        } catch (Throwable e) {
+                            envelope.failure = e;
+                        } finally {
+                            busyNanos.addAndGet(System.nanoTime() - start);
+                        }
+                    }
+                    if (next != null) {
+                        next.input.put(envelope);
+                    } else {
+                        arrive(envelope);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final String pipelineName;
+    private final List<Stage> stages = new ArrayList<>();
+    private final List<WorkerLoop> workerLoops = new ArrayList<>();
+    private final Committer<T> committer;
+    private final Envelope<T> poison = new Envelope<>(-1, null);
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    // Reorder buffer: envelopes that reached the end ahead of an earlier item
+    private final Map<Long, Envelope<T>> reorder = new HashMap<>();
+    private final Object commitLock = new Object();
+    private long nextToCommit = 0;
+    private long nextSequence = 0;
+    private int maxReordered = 0;
+    private Throwable commitFailure;
+
+    private record WorkerLoop(String stage, Future<?> future) {}
+
+    private long startNanos;
+    private long finishNanos;
+    private boolean finished;
+
+    private StagedPipeline(Builder<T> builder) {
+        this.pipelineName = builder.name;
+        this.committer = builder.committer;
+        int depth = builder.queueDepth;
+        int workers = 0;
+        for (var spec : builder.stages) {
+            stages.add(new Stage(spec.name(), spec.parallelism(), spec.task(), spec.executor(), depth));
+            workers += spec.parallelism();
+        }
+        for (int i = 0; i + 1 < stages.size(); i++) {
+            stages.get(i).next = stages.get(i + 1);
+        }
+        // Queued + being worked on: the most items that can be held in memory at once
+        this.maxInFlight = depth * stages.size() + workers;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public static <T> Builder<T> builder(String name) {
+        return new Builder<>(name);
+    }
+
+    public static final class Builder<T> {
+        private record StageSpec<T>(String name, int parallelism, ExecutorService executor, StageTask<T> task) {}
+
+        private final String name;
+        private final List<StageSpec<T>> stages = new ArrayList<>();
+        private int queueDepth = 2;
+        private Committer<T> committer = (item, failure) -> {};
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Add a stage running on parallelism threads owned by the pipeline
+         */
+        public Builder<T> stage(String stageName, int parallelism, StageTask<T> task) {
+            return stage(stageName, parallelism, null, task);
+        }
+
+        /**
+         * Add a stage whose worker loops run on the given executor (which must have at least
+         * parallelism threads available; the pipeline does not shut it down)
+         */
+        public Builder<T> stage(String stageName, int parallelism, ExecutorService executor, StageTask<T> task) {
+            stages.add(new StageSpec<>(stageName, Math.max(1, parallelism), executor, task));
+            return this;
+        }
+
+        /**
+         * Capacity of each queue between stages
+         */
+        public Builder<T> queueDepth(int queueDepth) {
+            this.queueDepth = Math.max(1, queueDepth);
+            return this;
+        }
+
+        public Builder<T> commit(Committer<T> committer) {
+            this.committer = committer;
+            return this;
+        }
+
+        public StagedPipeline<T> start() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("Pipeline " + name + " has no stages");
+            }
+            var pipeline = new StagedPipeline<>(this);
+            pipeline.startWorkers();
+            return pipeline;
+        }
+    }
+
+    private void startWorkers() {
+        startNanos = System.nanoTime();
+        for (var stage : stages) {
+            for (int i = 0; i < stage.parallelism; i++) {
+                workerLoops.add(new WorkerLoop(stage.name, stage.executor.submit(stage::work)));
+            }
+        }
+    }
+
+    /**
+     * Feed the next item; blocks while the pipeline is full (back-pressure)
+     */
+    public void submit(T item) throws InterruptedException {
+        inFlight.acquire();
+        stages.get(0).input.put(new Envelope<>(nextSequence++, item));
+    }
+
+    /**
+     * Wait until every submitted item is committed, then stop the worker loops.
+     * Rethrows the first committer failure, or the failure of a worker loop that died.
+     */
+    public void finish() throws Exception {
+        if (finished) return;
+        inFlight.acquire(maxInFlight); // all items committed
+        inFlight.release(maxInFlight);
+        finished = true;
+        finishNanos = System.nanoTime();
+        stopWorkers();
+        synchronized (commitLock) {
+            if (commitFailure instanceof Error error) {
+                throw error;
+            }
+            if (commitFailure != null) {
+                throw (Exception) commitFailure;
+            }
+        }
+    }
+
+    /**
+     * Stops the pipeline; items still in flight are abandoned if finish() was not called
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            finishNanos = System.nanoTime();
+            for (var loop : workerLoops) {
+                loop.future().cancel(true);
+            }
+        }
+        for (var stage : stages) {
+            if (stage.ownsExecutor) {
+                stage.executor.shutdownNow();
+            }
+        }
+    }
+
+    private void stopWorkers() throws InterruptedException {
+        for (var stage : stages) {
+            for (int i = 0; i < stage.parallelism; i++) {
+                stage.input.put(poison);
+            }
+        }
+        for (var loop : workerLoops) {
+            try {
+                loop.future().get();
+            } catch (ExecutionException e) {
+                // Worker loops catch item and committer failures, so this is a bug in the loop itself
+                synchronized (commitLock) {
+                    if (commitFailure == null) {
+                        commitFailure = new IllegalStateException("Pipeline " + pipelineName + ": a "
+                            + loop.stage() + " worker loop died", e.getCause());
+                    }
+                }
+            }
+        }
+        for (var stage : stages) {
+            if (stage.ownsExecutor) {
+                stage.executor.shutdown();
+                stage.executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private ThreadFactory threadFactory(String stageName) {
+        var ids = new AtomicInteger(0);
+        return task -> {
+            var thread = new Thread(task, pipelineName + "-" + stageName + "-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void arrive(Envelope<T> envelope) {
+        synchronized (commitLock) {
+            reorder.put(envelope.sequence, envelope);
+            maxReordered = Math.max(maxReordered, reorder.size());
+            Envelope<T> ready;
+            while ((ready = reorder.remove(nextToCommit)) != null) {
+                nextToCommit++;
+                try {
+                    committer.commit(ready.item, ready.failure);
+                } catch (Throwable e) {
+                    if (commitFailure == null) commitFailure = e;
+                } finally {
+                    inFlight.release();
+                }
+            }
+        }
+    }
+
+    public long committed() {
+        synchronized (commitLock) {
+            return nextToCommit;
+        }
+    }
+
+    /**
+     * Most items that can be held in memory at once (queues + workers)
+     */
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Largest number of items that waited in the reorder buffer
+     */
+    public int maxReordered() {
+        synchronized (commitLock) {
+            return maxReordered;
+        }
+    }
+
+    /**
+     * Fraction of wall time a stage's workers spent processing items (0..1)
+     */
+    public double utilization(String stageName) {
+        for (var stage : stages) {
+            if (stage.name.equals(stageName)) {
+                long wall = (finished ? finishNanos : System.nanoTime()) - startNanos;
+                return wall > 0 ? (double) stage.busyNanos.get() / ((double) wall * stage.parallelism) : 0;
+            }
+        }
+        throw new IllegalArgumentException("No stage named " + stageName);
+    }
+
+    /**
+     * One-line summary per stage, e.g. for verbose output
+     */
+    public String report() {
+        var report = new StringBuilder();
+        for (var stage : stages) {
+            report.append(String.format("  %-10s x%d  %5d items  %5.1fs busy  %3.0f%% utilized%n",
+                stage.name, stage.parallelism, stage.processed.get(),
+                stage.busyNanos.get() / 1e9, utilization(stage.name) * 100));
+        }
+        report.append(String.format("  in flight <= %d, reorder buffer peak %d%n", maxInFlight, maxReordered()));
+        return report.toString();
+    }
+}
@@ -0,0 +1,224 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.OcrWord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+
+/**
+ * Writes a combined multi-page XHTML document page by page, without holding the document in memory.
+ *
+ * The document header is written when the file is created, with a fixed-size whitespace slot where the
+ * document-level meta elements (pagesCount, totalWords, ...) belong. Each page section is written as soon
+ * as that page and all earlier pages have arrived; pages completed out of order by parallel workers wait
+ * in a small reorder buffer (accept() blocks once it holds maxBuffered pages). finish() patches the real
+ * counts into the slot and writes the footer, so heap use stays flat however many pages the document has.
+ *
+ * The writer's position can be persisted with {@link #state()} and restored with {@link #resume},
+ * which truncates anything written after the recorded state.
+ */
+public class StreamingCombinedXhtmlWriter implements AutoCloseable {
+
+    // Room for the four document-level meta elements; unused bytes stay as whitespace in <head>
+    static final int METADATA_SLOT_BYTES = 512;
+
+    /**
+     * Everything needed to continue writing after a restart
+     */
+    public record State(int pagesWritten, int nextWordIndex, int totalSegments, double confidenceSum,
+                        long bytesWritten, long metadataSlotOffset) {}
+
+    private final FileChannel channel;
+    private final String footer;
+    private final int maxBuffered;
+    private final Map<Integer, PagedOcrResult> reorder = new HashMap<>();
+    private int peakBuffered;
+
+    private int pagesWritten;
+    private int nextWordIndex;
+    private int totalSegments;
+    private double confidenceSum;
+    private long bytesWritten;
+    private final long metadataSlotOffset;
+
+    private StreamingCombinedXhtmlWriter(FileChannel channel, String footer, int maxBuffered, State state) {
+        this.channel = channel;
+        this.footer = footer;
+        this.maxBuffered = Math.max(1, maxBuffered);
+        this.pagesWritten = state.pagesWritten();
+        this.nextWordIndex = state.nextWordIndex();
+        this.totalSegments = state.totalSegments();
+        this.confidenceSum = state.confidenceSum();
+        this.bytesWritten = state.bytesWritten();
+        this.metadataSlotOffset = state.metadataSlotOffset();
+    }
+
+    /**
+     * Create (or overwrite) the file and write the document header
+     */
+    public static StreamingCombinedXhtmlWriter create(Path file, String documentName, int maxBuffered) throws IOException {
+        var shell = OcrToSemanticXHtml.documentShellWithMetadataSlot(documentName);
+        var header = shell.header().getBytes(StandardCharsets.UTF_8);
+        var placeholder = OcrToSemanticXHtml.METADATA_PLACEHOLDER.getBytes(StandardCharsets.UTF_8);
+        int slotAt = indexOf(header, placeholder);
+
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            long written = write(channel, ByteBuffer.wrap(header, 0, slotAt));
+            written += write(channel, blanks(METADATA_SLOT_BYTES));
+            int afterSlot = slotAt + placeholder.length;
+            written += write(channel, ByteBuffer.wrap(header, afterSlot, header.length - afterSlot));
+            return new StreamingCombinedXhtmlWriter(channel, shell.footer(), maxBuffered,
+                new State(0, 0, 0, 0.0, written, slotAt));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reopen a file written by an earlier writer, discarding anything after the recorded state
+     */
+    public static StreamingCombinedXhtmlWriter resume(Path file, String documentName, int maxBuffered, State state) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < state.bytesWritten()) {
+                throw new IOException("Combined XHTML is shorter than its recorded state: " + file);
+            }
+            channel.truncate(state.bytesWritten()).position(state.bytesWritten());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        var footer = OcrToSemanticXHtml.documentShellWithMetadataSlot(documentName).footer();
+        return new StreamingCombinedXhtmlWriter(channel, footer, maxBuffered, state);
+    }
+
+    /**
+     * Accept a page in any order; it is written once all earlier pages are in.
+     * Blocks while the reorder buffer is full and this page is not the next one, so with N workers
+     * handing in pages taken in order, maxBuffered must be at least N - 1.
+     */
+    public synchronized void accept(PagedOcrResult page) throws IOException, InterruptedException {
+        if (page.pageNumber() <= pagesWritten || reorder.containsKey(page.pageNumber())) {
+            throw new IllegalStateException("Page " + page.pageNumber() + " was already accepted");
+        }
+        while (page.pageNumber() != pagesWritten + 1 && reorder.size() >= maxBuffered) {
+            wait();
+        }
+        if (page.pageNumber() != pagesWritten + 1) {
+            reorder.put(page.pageNumber(), page);
+            peakBuffered = Math.max(peakBuffered, reorder.size());
+            return;
+        }
+
+        writePage(page);
+        PagedOcrResult next;
+        while ((next = reorder.remove(pagesWritten + 1)) != null) {
+            writePage(next);
+        }
+        notifyAll();
+    }
+
+    private void writePage(PagedOcrResult page) throws IOException {
+        var section = OcrToSemanticXHtml.pageSection(page, nextWordIndex);
+        bytesWritten += write(channel, ByteBuffer.wrap(section.getBytes(StandardCharsets.UTF_8)));
+        for (var line : page.ocrResult().lines()) {
+            nextWordIndex += line.words().size();
+            confidenceSum += line.words().stream().mapToDouble(OcrWord::confidence).sum();
+        }
+        totalSegments += page.ocrResult().lines().size();
+        pagesWritten++;
+    }
+
+    /**
+     * Pages written to the file so far (always a contiguous run starting at page 1)
+     */
+    public synchronized int pagesWritten() {
+        return pagesWritten;
+    }
+
+    /**
+     * Most pages that waited in the reorder buffer at once
+     */
+    public synchronized int peakBuffered() {
+        return peakBuffered;
+    }
+
+    /**
+     * Position of the writer for persisting; only pages written so far are covered
+     */
+    public synchronized State state() {
+        return new State(pagesWritten, nextWordIndex, totalSegments, confidenceSum, bytesWritten, metadataSlotOffset);
+    }
+
+    /**
+     * Patch the document-level counts into the header and write the footer
+     */
+    public synchronized void finish() throws IOException {
+        if (!reorder.isEmpty()) {
+            throw new IllegalStateException("Pages " + reorder.keySet() + " are waiting for page " + (pagesWritten + 1));
+        }
+        double averageConfidence = nextWordIndex > 0 ? confidenceSum / nextWordIndex : 0.0;
+        var metadata = OcrToSemanticXHtml.documentMetadata(pagesWritten, nextWordIndex, totalSegments, averageConfidence)
+            .getBytes(StandardCharsets.UTF_8);
+        if (metadata.length > METADATA_SLOT_BYTES) {
+            throw new IllegalStateException("Document metadata exceeds the reserved header slot: " + metadata.length + " bytes");
+        }
+        var slot = blanks(METADATA_SLOT_BYTES).put(metadata).rewind();
+        long position = metadataSlotOffset;
+        while (slot.hasRemaining()) {
+            position += channel.write(slot, position);
+        }
+        bytesWritten += write(channel, ByteBuffer.wrap(footer.getBytes(StandardCharsets.UTF_8)));
+        channel.force(false);
+    }
+
+    /**
+     * Force the pages written so far to disk (the state() of them survives an OS crash)
+     */
+    public synchronized void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static long write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return written;
+    }
+
+    private static ByteBuffer blanks(int size) {
+        var buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) ' ');
+        }
+        return buffer.flip();
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        throw new IllegalStateException("Document shell has no metadata slot");
+    }
+}
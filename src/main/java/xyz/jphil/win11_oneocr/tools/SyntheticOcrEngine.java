@@ -0,0 +1,199 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import xyz.jphil.win11_oneocr.BoundingBox;
+import xyz.jphil.win11_oneocr.OcrLine;
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.OcrWord;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static xyz.jphil.win11_oneocr.OcrWord.ocrWord;
+
+/**
+ * Engine that generates plausible results with a configurable per-call latency and word density.
+ *
+ * Output is a pure function of the image (size + sampled pixels), so identical pages produce
+ * identical results regardless of thread or call order. The latency is spent sleeping, which
+ * models a worker thread blocked inside the native engine. The engine counts the sessions opened and
+ * the recognitions running at once, so tests can check how work was scheduled without timing it.
+ */
+public class SyntheticOcrEngine implements OcrEngine {
+
+    private static final String[] VOCABULARY = {
+        "the", "of", "and", "page", "chapter", "text", "document", "scan", "lorem", "ipsum",
+        "dolor", "sit", "amet", "archive", "record", "volume", "section", "figure", "table", "index"
+    };
+
+    private final long latencyMs;
+    private final int wordsPerLine;
+    private final int linesPerPage;
+
+    private final AtomicInteger sessionsOpened = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger peakRunning = new AtomicInteger();
+
+    public SyntheticOcrEngine(long latencyMs, int wordsPerLine, int linesPerPage) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.wordsPerLine = Math.max(1, wordsPerLine);
+        this.linesPerPage = Math.max(0, linesPerPage);
+    }
+
+    /**
+     * Parse "latencyMs[:wordsPerLine[:linesPerPage]]" (all optional, defaults 0:10:40)
+     */
+    public static SyntheticOcrEngine fromArgs(String args) {
+        var parts = args == null || args.isBlank() ? new String[0] : args.split(":");
+        try {
+            long latency = parts.length > 0 ? Long.parseLong(parts[0]) : 0;
+            int words = parts.length > 1 ? Integer.parseInt(parts[1]) : 10;
+            int lines = parts.length > 2 ? Integer.parseInt(parts[2]) : 40;
+            return new SyntheticOcrEngine(latency, words, lines);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid synthetic engine arguments: " + args
+                + " (expected latencyMs[:wordsPerLine[:linesPerPage]])");
+        }
+    }
+
+    @Override
+    public String name() {
+        return "synthetic";
+    }
+
+    @Override
+    public boolean acceptsNativeBuffers() {
+        return true;
+    }
+
+    @Override
+    public OcrSession openSession(int maxLines) {
+        sessionsOpened.incrementAndGet();
+        return new OcrSession() {
+            @Override
+            public OcrResult recognize(int width, int height, byte[] bgraData) throws Exception {
+                work();
+                return generate(width, height, bgraData, maxLines);
+            }
+
+            @Override
+            public OcrResult recognize(int width, int height, MemorySegment bgraData) throws Exception {
+                work();
+                return generate(width, height, seed(width, height, bgraData), maxLines);
+            }
+
+            @Override
+            public boolean acceptsNativeBuffers() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private void work() throws InterruptedException {
+        peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    public int sessionsOpened() {
+        return sessionsOpened.get();
+    }
+
+    /**
+     * Most recognitions that were running at the same time
+     */
+    public int peakConcurrentCalls() {
+        return peakRunning.get();
+    }
+
+    OcrResult generate(int width, int height, byte[] bgraData, int maxLines) {
+        return generate(width, height, seed(width, height, bgraData), maxLines);
+    }
+
+    private OcrResult generate(int width, int height, long seed, int maxLines) {
+        var random = new SplittableRandom(seed);
+        int lineCount = maxLines > 0 ? Math.min(linesPerPage, maxLines) : linesPerPage;
+        if (lineCount == 0 || width <= 0 || height <= 0) {
+            return OcrResults.empty();
+        }
+
+        double lineHeight = (double) height / lineCount;
+        double wordWidth = (double) width / wordsPerLine;
+        var lines = new ArrayList<OcrLine>(lineCount);
+        var text = new StringBuilder();
+
+        for (int l = 0; l < lineCount; l++) {
+            double top = l * lineHeight + lineHeight * 0.15;
+            double bottom = (l + 1) * lineHeight - lineHeight * 0.15;
+            var words = new ArrayList<OcrWord>(wordsPerLine);
+            var lineText = new StringBuilder();
+
+            for (int w = 0; w < wordsPerLine; w++) {
+                var word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+                double left = w * wordWidth + wordWidth * 0.1;
+                double right = (w + 1) * wordWidth - wordWidth * 0.1;
+                double confidence = 0.5 + random.nextInt(500) / 1000.0;
+                words.add(ocrWord(word, box(left, top, right, bottom), confidence, ""));
+                if (w > 0) lineText.append(' ');
+                lineText.append(word);
+            }
+
+            var lineBox = box(wordWidth * 0.1, top, width - wordWidth * 0.1, bottom);
+            lines.add(new OcrLine(lineText.toString(), lineBox, words));
+            if (l > 0) text.append('\n');
+            text.append(lineText);
+        }
+
+        return new OcrResult(text.toString(), 0.0, List.copyOf(lines));
+    }
+
+    private static BoundingBox box(double left, double top, double right, double bottom) {
+        return new BoundingBox(
+            Math.round(left * 10) / 10.0, Math.round(top * 10) / 10.0,
+            Math.round(right * 10) / 10.0, Math.round(top * 10) / 10.0,
+            Math.round(right * 10) / 10.0, Math.round(bottom * 10) / 10.0,
+            Math.round(left * 10) / 10.0, Math.round(bottom * 10) / 10.0
+        );
+    }
+
+    /**
+     * Cheap content seed: image size plus a sparse sample of pixels
+     */
+    private static long seed(int width, int height, byte[] bgraData) {
+        long seed = 31L * width + height;
+        if (bgraData != null && bgraData.length > 0) {
+            int step = Math.max(1, bgraData.length / 4096);
+            for (int i = 0; i < bgraData.length; i += step) {
+                seed = seed * 31 + bgraData[i];
+            }
+        }
+        return seed;
+    }
+
+    /**
+     * Same seed as the byte[] variant, read straight from native memory
+     */
+    private static long seed(int width, int height, MemorySegment bgraData) {
+        long seed = 31L * width + height;
+        long length = bgraData.byteSize();
+        if (length > 0) {
+            long step = Math.max(1, length / 4096);
+            for (long i = 0; i < length; i += step) {
+                seed = seed * 31 + bgraData.get(ValueLayout.JAVA_BYTE, i);
+            }
+        }
+        return seed;
+    }
+}
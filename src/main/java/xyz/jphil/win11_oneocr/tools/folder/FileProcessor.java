@@ -5,9 +5,12 @@ import lombok.experimental.Accessors;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 import lombok.*;
 
@@ -36,19 +39,46 @@ public class FileProcessor {
      * Discover all processable files in the folder (and subfolders if recursive)
      */
     public List<Path> discoverFiles() throws IOException {
+        var files = new ArrayList<Path>();
+        discoverFiles(files::add);
+        return files;
+    }
+    
+    /**
+     * Hand each processable file to found as soon as the walk reaches it, directory by directory
+     * in name order (the order of discoverFiles()), instead of after walking the whole tree
+     * @return counts of the files found
+     */
+    public FileStats discoverFiles(Consumer<Path> found) throws IOException {
         if (verbose) {
             System.err.printf("🔍 Discovering files in %s%s%n", 
                 rootFolder, recursive ? " (recursive)" : "");
         }
         
-        try (Stream<Path> paths = recursive ? 
-            Files.walk(rootFolder) : Files.list(rootFolder)) {
-                
-            return paths
-                .filter(Files::isRegularFile)
-                .filter(this::isSupportedFile)
-                .sorted()
-                .toList();
+        int[] counts = new int[2]; // images, PDFs
+        walk(rootFolder, file -> {
+            counts[isImageFile(file) ? 0 : 1]++;
+            found.accept(file);
+        });
+        return FileStats.empty()
+            .withTotal(counts[0] + counts[1])
+            .withImages(counts[0])
+            .withPdfs(counts[1]);
+    }
+    
+    private void walk(Path folder, Consumer<Path> found) throws IOException {
+        List<Path> entries;
+        try (Stream<Path> paths = Files.list(folder)) {
+            entries = paths.sorted().toList();
+        }
+        for (var entry : entries) {
+            if (Files.isRegularFile(entry)) {
+                if (isSupportedFile(entry)) {
+                    found.accept(entry);
+                }
+            } else if (recursive && Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) { // as Files.walk: no link cycles
+                walk(entry, found);
+            }
         }
     }
     
@@ -4,15 +4,33 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
+import xyz.jphil.win11_oneocr.tools.pdf.CheckpointJournal;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfMemoryMode;
 import xyz.jphil.win11_oneocr.tools.pdf.PdfOcrCommand;
 import xyz.jphil.win11_oneocr.OcrResult;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import xyz.jphil.win11_oneocr.tools.BgraConverter;
 import xyz.jphil.win11_oneocr.tools.LogFormatter;
+import xyz.jphil.win11_oneocr.tools.OcrEngine;
+import xyz.jphil.win11_oneocr.tools.OcrResultCache;
+import xyz.jphil.win11_oneocr.tools.OcrSessionManager;
 import xyz.jphil.win11_oneocr.tools.OcrTool;
+import xyz.jphil.win11_oneocr.tools.PageScheduler;
+import xyz.jphil.win11_oneocr.tools.PreviewEncodingService;
+import xyz.jphil.win11_oneocr.tools.OneOcrEngine;
 import xyz.jphil.win11_oneocr.tools.ProgressTracker;
 import xyz.jphil.win11_oneocr.tools.ProgressAwareLogFormatter;
 
@@ -34,6 +52,18 @@ public class FolderOcrCommand implements Callable<Integer> {
         return parentCommand != null ? parentCommand.getThreads() : 1;
     }
     
+    private PdfMemoryMode getPdfMemory() {
+        return parentCommand != null ? parentCommand.getPdfMemory() : PdfMemoryMode.HEAP;
+    }
+    
+    private OcrEngine getEngine() throws Exception {
+        return parentCommand != null ? parentCommand.getEngine() : new OneOcrEngine();
+    }
+    
+    private OcrResultCache getResultCache() throws IOException {
+        return parentCommand != null ? parentCommand.getResultCache() : null;
+    }
+    
     @Parameters(
         index = "0", 
         description = "Input folder containing images and/or PDFs"
@@ -70,6 +100,39 @@ public class FolderOcrCommand implements Callable<Integer> {
     )
     private int maxLines = 1000;
     
+    @Option(
+        names = {"--files"}, 
+        description = "Files processed concurrently; their OCR shares the --threads OCR workers (default: twice --threads, at least 2)"
+    )
+    private int concurrentFiles = 0;
+    
+    @Option(
+        names = {"--schedule"}, 
+        description = "Order of the OCR workers' waiting pages across files: fifo, smallest (smallest file first), round-robin (one page per file in turn) (default: ${DEFAULT-VALUE})"
+    )
+    private String schedule = "round-robin";
+    
+    @Option(
+        names = {"--force"}, 
+        description = "Process every file again, even those the output manifest records as unchanged"
+    )
+    private boolean force = false;
+    
+    // One OCR session per worker thread for the whole folder run (shared with PDF processing)
+    private OcrSessionManager sessions;
+    // Rendered pages waiting for preview encoding across all PDFs of the run (pdf --preview-memory default)
+    private static final int PREVIEW_MEMORY_MB = 256;
+    // PDFs processed at once share one preview byte budget and its encoders, and one budget of open render documents
+    private PreviewEncodingService previews;
+    private Semaphore renderBudget;
+    // Inputs processed by earlier runs into this output root
+    private OutputManifest manifest;
+    // Results of inputs recognized before, by content (--result-cache), or null
+    private OcrResultCache resultCache;
+    private final AtomicInteger successCount = new AtomicInteger(0);
+    private final AtomicInteger errorCount = new AtomicInteger(0);
+    private final AtomicInteger unchangedCount = new AtomicInteger(0);
+    
     @Override
     public Integer call() throws Exception {
         // Validate input folder
@@ -78,6 +141,22 @@ public class FolderOcrCommand implements Callable<Integer> {
             return 1;
         }
         
+        PdfMemoryMode memoryMode;
+        PageScheduler.Policy policy;
+        try {
+            memoryMode = getPdfMemory();
+            policy = PageScheduler.Policy.parse(schedule);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        }
+        try {
+            resultCache = getResultCache();
+        } catch (IOException e) {
+            System.err.println("Error: Cannot open result cache: " + e.getMessage());
+            return 1;
+        }
+        
         // Set default output folder
         Path outputPath = outputFolder != null ? 
             outputFolder.toPath() : inputFolder.toPath();
@@ -89,15 +168,18 @@ public class FolderOcrCommand implements Callable<Integer> {
         // Initialize file processor
         var fileProcessor = new FileProcessor(inputFolder.toPath(), recursive, verbose);
         
+        manifest = OutputManifest.open(outputPath, inputFolder.toPath());
+        
         // Initialize work queue and start background scope discovery
         var workQueue = new WorkQueue();
-        var scopeDiscovery = new ScopeDiscoveryTask(workQueue, fileProcessor, verbose);
+        var scopeDiscovery = new ScopeDiscoveryTask(workQueue, fileProcessor, memoryMode, force ? null : manifest, verbose);
         var discoveryThread = new Thread(scopeDiscovery, "scope-discovery");
         discoveryThread.setDaemon(true);
         discoveryThread.start();
         
         // Wait for first item or discovery completion
         if (!waitForFirstWork(workQueue)) {
+            manifest.close();
             System.err.println("No supported files found (images: .jpg/.png/.bmp/.tiff/.webp, PDFs: .pdf)");
             return 0;
         }
@@ -113,86 +195,146 @@ public class FolderOcrCommand implements Callable<Integer> {
         // Create progress-aware logger to prevent output interference
         var progressAwareLog = ProgressAwareLogFormatter.create(verbose, progress);
         
-        // Process work items as they become available
-        int successCount = 0;
-        int errorCount = 0;
+        // Files run concurrently on their own threads; OCR of every image and PDF page queues on one shared worker pool
+        // More files than OCR workers, so a long PDF never holds back the files queued behind it
+        int fileWorkers = concurrentFiles > 0 ? concurrentFiles : Math.max(2, 2 * getThreads());
+        long startNanos = System.nanoTime();
+        sessions = new OcrSessionManager(getEngine(), maxLines, getThreads(), policy);
+        previews = new PreviewEncodingService(Math.max(1, getThreads()), PREVIEW_MEMORY_MB * 1024L * 1024L, false);
+        renderBudget = new Semaphore(parentCommand != null ? parentCommand.getRenderHandles() : Math.max(1, getThreads()));
+        var fileThreads = Executors.newFixedThreadPool(fileWorkers, fileThreadFactory());
+        try {
+            var workers = new ArrayList<Future<?>>();
+            for (int i = 0; i < fileWorkers; i++) {
+                workers.add(fileThreads.submit(() -> processFiles(workQueue, outputPath, progress, progressAwareLog)));
+            }
+            for (var worker : workers) {
+                worker.get();
+            }
+        } finally {
+            fileThreads.shutdownNow();
+            sessions.close();
+            previews.close();
+            manifest.close();
+        }
+        
+        if (verbose) {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            System.err.printf("Files: %d in %.1fs (%.1f files/s) on %d file threads, OCR pages scheduled %s%n",
+                successCount.get() + errorCount.get(), seconds, (successCount.get() + errorCount.get()) / Math.max(seconds, 1e-3), fileWorkers,
+                schedule);
+            System.err.printf("OCR sessions (%s): %d opened for %d recognitions%n", 
+                getEngine().name(), sessions.sessionsOpened(), sessions.borrows());
+            if (resultCache != null) {
+                System.err.printf("Result cache: %d hits, %d misses, %d entries (%dMB)%n",
+                    resultCache.hits(), resultCache.misses(), resultCache.entries(), resultCache.sizeBytes() / (1024 * 1024));
+            }
+        }
+        
+        // Complete progress and show summary
+        progress.done();
+        System.out.printf("📊 Processing complete: %d success, %d errors, %d unchanged since the last run%n",
+            successCount.get(), errorCount.get(), unchangedCount.get());
+        
+        // Disable folder mode to clean up
+        xyz.jphil.win11_oneocr.tools.DualProgressRenderer.disableFolderMode();
         
-        while (workQueue.hasWork()) {
+        return errorCount.get() > 0 ? 1 : 0;
+    }
+    
+    // One file thread: takes files until discovery is complete and the queue is drained
+    private void processFiles(WorkQueue workQueue, Path outputPath, FolderProgressTracker progress,
+                              ProgressAwareLogFormatter log) {
+        while (true) {
             WorkItem workItem = null;
             try {
-                workItem = workQueue.takeWork();
+                workItem = workQueue.nextWork();
+                if (workItem == null) {
+                    return;
+                }
                 
                 // Update progress tracker with current scope knowledge
                 updateProgressScope(progress, workQueue);
                 
+                if (!force && isUnchanged(workItem, outputPath)) {
+                    unchangedCount.incrementAndGet();
+                    progress.inc();
+                    continue;
+                }
+                
                 boolean success = switch (workItem.fileType()) {
-                    case IMAGE -> processImageFile(workItem.filePath(), outputPath, progressAwareLog);
-                    case PDF -> processPdfFile(workItem.filePath(), outputPath, progressAwareLog);
+                    case IMAGE -> processImageFile(workItem.filePath(), outputPath, log);
+                    case PDF -> processPdfFile(workItem.filePath(), outputPath, log);
                     default -> {
                         progress.err("Unsupported file type: " + workItem.filePath().getFileName());
                         yield false;
                     }
                 };
                 
-                if (success) {
-                    successCount++;
-                } else {
-                    errorCount++;
-                }
-                
+                (success ? successCount : errorCount).incrementAndGet();
                 progress.inc();
                 
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                break;
+                return;
             } catch (Exception e) {
                 var fileName = workItem != null ? workItem.getDisplayName() : "unknown file";
                 progress.err(String.format("Failed to process %s: %s", fileName, e.getMessage()));
-                errorCount++;
+                errorCount.incrementAndGet();
                 progress.inc();
             }
         }
-        
-        // Complete progress and show summary
-        progress.done();
-        System.out.printf("📊 Processing complete: %d success, %d errors%n", successCount, errorCount);
-        
-        // Disable folder mode to clean up
-        xyz.jphil.win11_oneocr.tools.DualProgressRenderer.disableFolderMode();
-        
-        return errorCount > 0 ? 1 : 0;
+    }
+    
+    private static ThreadFactory fileThreadFactory() {
+        var ids = new AtomicInteger(0);
+        return task -> {
+            var thread = new Thread(task, "folder-file-" + ids.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
     
     private boolean processImageFile(Path file, Path outputPath, ProgressAwareLogFormatter log) throws Exception {
         log.step("IMAGE", "Processing " + file.getFileName());
         
         try {
-            // Load and process image
-            var image = javax.imageio.ImageIO.read(file.toFile());
-            if (image == null) {
-                log.error("IMAGE", "Unable to read: " + file.getFileName());
-                return false;
+            // Load and process image; the bytes read once for decoding and the manifest's content hash
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            var bytes = Files.readAllBytes(file);
+            int crc = CheckpointJournal.crc(bytes);
+            var textFile = createOutputPath(file, outputPath, ".oneocr.txt");
+            if (!force && manifest.sameContent(file, bytes.length, crc) && Files.exists(textFile)) {
+                // Only touched since the last run: same content, nothing to OCR
+                manifest.record(file, bytes.length, modified, crc);
+                log.success("IMAGE", "Unchanged: " + file.getFileName());
+                return true;
             }
-            
-            byte[] bgraData = OcrTool.convertToBGRA(image);
-            
-            // Perform OCR
+            // A copy recognized before (in any folder or run) is not OCRed again
+            var cacheKey = resultCache != null ? resultCache.key(OcrResultCache.md5(bytes), maxLines) : null;
+            var cached = cacheKey != null ? resultCache.get(cacheKey) : null;
             OcrResult result;
-            try (var ocrApi = new xyz.jphil.win11_oneocr.OneOcrApi()) {
-                var initOptions = ocrApi.createInitOptions();
-                var pipeline = ocrApi.createPipeline(initOptions);
-                var processOptions = ocrApi.createProcessOptions(maxLines);
+            if (cached != null) {
+                result = cached.result();
+            } else {
+                var image = javax.imageio.ImageIO.read(new ByteArrayInputStream(bytes));
+                if (image == null) {
+                    log.error("IMAGE", "Unable to read: " + file.getFileName());
+                    return false;
+                }
                 
-                result = ocrApi.recognizeImage(pipeline, processOptions, 
-                    image.getWidth(), image.getHeight(), bgraData);
-                    
-                processOptions.close();
-                pipeline.close();
-                initOptions.close();
+                // Converted on this file's thread; recognized on a shared OCR worker with its long-lived session
+                try (var buffer = sessions.acquireBuffer(BgraConverter.bgraSize(image))) {
+                    var bgra = BgraConverter.convert(image, buffer.segment());
+                    var source = new PageScheduler.Source(file.toAbsolutePath().toString(), 1);
+                    result = sessions.call(source, session -> session.recognize(image.getWidth(), image.getHeight(), bgra));
+                }
+                if (cacheKey != null) {
+                    resultCache.put(cacheKey, new OcrResultCache.Entry(result, image.getWidth(), image.getHeight()));
+                }
             }
             
             // Generate outputs preserving relative path structure  
-            var textFile = createOutputPath(file, outputPath, ".oneocr.txt");
             var text = result.text();
             
             // Ensure parent directory exists
@@ -204,6 +346,7 @@ public class FolderOcrCommand implements Callable<Integer> {
                 // TODO: Add SVG generation if needed
             }
             
+            manifest.record(file, bytes.length, modified, crc);
             log.success("IMAGE", String.format("Completed: %s (%d chars)", 
                 file.getFileName(), text.length()));
             return true;
@@ -223,7 +366,9 @@ public class FolderOcrCommand implements Callable<Integer> {
             var pdfOutputDir = createOutputPath(file, outputPath, ".oneocr");
             
             // EARLY EXIT: Check if PDF processing is already complete (skip expensive operations)
+            long modified = Files.getLastModifiedTime(file).toMillis();
             if (isPdfProcessingComplete(file, pdfOutputDir)) {
+                recordPdf(file, modified);
                 log.success("PDF", "Already completed: " + file.getFileName());
                 return true;
             }
@@ -237,6 +382,12 @@ public class FolderOcrCommand implements Callable<Integer> {
             // Set up parent command relationship so PdfOcrCommand can access --threads
             pdfCommand.setParentCommand(this.parentCommand);
             
+            // Reuse the folder run's OCR sessions instead of loading the model per PDF
+            pdfCommand.setSessionManager(sessions);
+            // ... and bound previews and open render documents for the run, not per concurrent PDF
+            pdfCommand.setPreviewService(previews);
+            pdfCommand.setRenderBudget(renderBudget);
+            
             // Create command line args for the PDF command
             java.util.List<String> pdfArgsList = new java.util.ArrayList<>();
             pdfArgsList.add(file.toString());
@@ -260,6 +411,7 @@ public class FolderOcrCommand implements Callable<Integer> {
             // DUAL PROGRESS: Continue with simultaneous rendering
             
             if (result == 0) {
+                recordPdf(file, modified);
                 log.success("PDF", "Processed: " + file.getFileName());
                 return true;
             } else {
@@ -278,6 +430,30 @@ public class FolderOcrCommand implements Callable<Integer> {
         }
     }
     
+    /**
+     * Whether the manifest records the file as processed with its current size and modification
+     * time, and its output is still there; a stat or two, the file itself is not opened
+     */
+    private boolean isUnchanged(WorkItem workItem, Path outputPath) throws IOException {
+        var file = workItem.filePath();
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!manifest.unchanged(file, attributes.size(), attributes.lastModifiedTime().toMillis())) {
+            return false;
+        }
+        return switch (workItem.fileType()) {
+            case IMAGE -> Files.exists(createOutputPath(file, outputPath, ".oneocr.txt"));
+            case PDF -> isPdfProcessingComplete(file, createOutputPath(file, outputPath, ".oneocr"));
+            default -> false;
+        };
+    }
+    
+    // Modification time as of before processing, so a file changed meanwhile is processed again next run
+    private void recordPdf(Path file, long modified) throws IOException {
+        if (!manifest.unchanged(file, Files.size(file), modified)) {
+            manifest.record(file, Files.size(file), modified, OutputManifest.crc(file));
+        }
+    }
+    
     /**
      * Check if PDF processing is already complete by looking for final output files
      */
@@ -0,0 +1,203 @@
+package xyz.jphil.win11_oneocr.tools.folder;
+
+import picocli.CommandLine.Command;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+import xyz.jphil.win11_oneocr.tools.pdf.CheckpointJournal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only record of the inputs a folder run has processed (.oneocr.manifest in the output
+ * root), so a rerun skips unchanged files from a stat instead of opening them.
+ *
+ * One line per processed input, path relative to the input folder, last:
+ * <pre>
+ * 48213 1760000000000 9c1e04aa 1.0 scans/2024/receipt-0001.jpg *5a03c1f7
+ * </pre>
+ * size, modification time (ms), CRC32C of the content and the tool version. As in the
+ * CheckpointJournal, the trailing *crc covers the line, so torn lines are ignored; later lines win.
+ * A file counts as unchanged when size, modification time and tool version all match; a file
+ * only touched (same size and content, new time) is recognized by its content once read.
+ * The manifest is rewritten without superseded lines when they outnumber the live ones.
+ */
+public class OutputManifest implements AutoCloseable {
+
+    public static final String FILE_NAME = ".oneocr.manifest";
+    static final int FORCE_EVERY = 256;
+    static final int COMPACT_MIN_LINES = 1024;
+
+    /** Version recorded with each input: outputs of another version are produced again */
+    public static final String TOOL_VERSION = OcrTool.class.getAnnotation(Command.class).version()[0];
+
+    /**
+     * A processed input as recorded
+     */
+    public record Entry(long size, long modified, int crc, String version, String path) {}
+
+    private final Path file;
+    private final Path inputRoot;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private FileChannel channel;
+    private int unforced;
+
+    private OutputManifest(Path file, Path inputRoot) {
+        this.file = file;
+        this.inputRoot = inputRoot;
+    }
+
+    /**
+     * Read the manifest of an output root (if any) and open it for appending
+     */
+    public static OutputManifest open(Path outputRoot, Path inputRoot) throws IOException {
+        var manifest = new OutputManifest(outputRoot.resolve(FILE_NAME), inputRoot.toAbsolutePath().normalize());
+        int lines = Files.exists(manifest.file) ? manifest.load() : 0;
+        if (lines >= COMPACT_MIN_LINES && lines > 2 * manifest.entries.size()) {
+            manifest.compact();
+        }
+        long validBytes = Files.exists(manifest.file) ? Files.size(manifest.file) : 0;
+        manifest.channel = FileChannel.open(manifest.file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        manifest.channel.position(validBytes);
+        return manifest;
+    }
+
+    // Returns the number of valid lines; a torn last line is cut off so appends start on a line of their own
+    private int load() throws IOException {
+        var content = Files.readAllBytes(file);
+        int lines = 0;
+        long validBytes = 0;
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') continue;
+            var entry = parse(new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8));
+            lineStart = i + 1;
+            if (entry == null) continue;
+            entries.put(entry.path(), entry);
+            lines++;
+            validBytes = lineStart;
+        }
+        if (validBytes < content.length) {
+            try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        return lines;
+    }
+
+    private void compact() throws IOException {
+        var temp = file.resolveSibling(FILE_NAME + ".tmp");
+        var content = new StringBuilder();
+        for (var entry : entries.values()) {
+            content.append(line(entry));
+        }
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Recorded entry of an input file, or null
+     */
+    public synchronized Entry entry(Path input) {
+        return entries.get(key(input));
+    }
+
+    /**
+     * Whether the input is recorded with this size and modification time by this tool version
+     */
+    public boolean unchanged(Path input, long size, long modified) {
+        var entry = entry(input);
+        return entry != null && entry.size() == size && entry.modified() == modified
+            && entry.version().equals(TOOL_VERSION);
+    }
+
+    /**
+     * Whether the input is recorded with this content (size and CRC32C) by this tool version
+     */
+    public boolean sameContent(Path input, long size, int crc) {
+        var entry = entry(input);
+        return entry != null && entry.size() == size && entry.crc() == crc
+            && entry.version().equals(TOOL_VERSION);
+    }
+
+    /**
+     * Record a processed input
+     */
+    public synchronized void record(Path input, long size, long modified, int crc) throws IOException {
+        var path = key(input);
+        if (path.indexOf('\n') >= 0) {
+            return; // cannot be recorded on a line; processed again next time
+        }
+        var entry = new Entry(size, modified, crc, TOOL_VERSION, path);
+        var buffer = ByteBuffer.wrap(line(entry).getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        entries.put(path, entry);
+        if (++unforced >= FORCE_EVERY) {
+            channel.force(false);
+            unforced = 0;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (unforced > 0) channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * CRC32C of a file's content, read in chunks (PDFs may not fit in memory)
+     */
+    public static int crc(Path input) throws IOException {
+        var crc = new CRC32C();
+        var buffer = ByteBuffer.allocate(1 << 16);
+        try (var channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) > 0) {
+                crc.update(buffer.flip());
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    private String key(Path input) {
+        return inputRoot.relativize(input.toAbsolutePath().normalize()).toString().replace('\\', '/');
+    }
+
+    private static String line(Entry entry) {
+        var body = entry.size() + " " + entry.modified() + " " + Integer.toHexString(entry.crc())
+            + " " + entry.version() + " " + entry.path();
+        return body + " *" + Integer.toHexString(CheckpointJournal.crc(body.getBytes(StandardCharsets.UTF_8))) + "\n";
+    }
+
+    static Entry parse(String line) {
+        int star = line.lastIndexOf(" *");
+        if (star < 0) return null;
+        try {
+            var body = line.substring(0, star);
+            if (CheckpointJournal.crc(body.getBytes(StandardCharsets.UTF_8)) != Integer.parseUnsignedInt(line.substring(star + 2), 16)) {
+                return null;
+            }
+            var fields = body.split(" ", 5);
+            return new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                Integer.parseUnsignedInt(fields[2], 16), fields[3], fields[4]);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
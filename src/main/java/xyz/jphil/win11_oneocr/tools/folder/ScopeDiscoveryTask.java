@@ -1,48 +1,70 @@
 package xyz.jphil.win11_oneocr.tools.folder;
 
 import java.nio.file.Path;
-import java.util.List;
+import java.util.concurrent.Executors;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfDocumentCache;
 import xyz.jphil.win11_oneocr.tools.pdf.PdfInfoUtil;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfMemoryMode;
 
+/**
+ * Streams the folder's files into the work queue as the walk finds them, so OCR starts on the
+ * first file rather than after the whole tree is walked. PDFs are queued with a page count
+ * estimated from their size; a small background pool then counts their pages and corrects the
+ * queue's totals, skipping PDFs already taken for processing (which parse them anyway) and PDFs
+ * the output manifest records as unchanged (which are not opened at all).
+ */
 public class ScopeDiscoveryTask implements Runnable {
+    private static final int PAGE_COUNT_THREADS = 2;
+    
     private final WorkQueue workQueue;
     private final FileProcessor fileProcessor;
+    private final PdfMemoryMode memoryMode;
+    private final OutputManifest manifest; // null: count every PDF
     private final boolean verbose;
     
-    public ScopeDiscoveryTask(WorkQueue workQueue, FileProcessor fileProcessor, boolean verbose) {
+    public ScopeDiscoveryTask(WorkQueue workQueue, FileProcessor fileProcessor, PdfMemoryMode memoryMode,
+                              OutputManifest manifest, boolean verbose) {
         this.workQueue = workQueue;
         this.fileProcessor = fileProcessor;
+        this.memoryMode = memoryMode;
+        this.manifest = manifest;
         this.verbose = verbose;
     }
     
     @Override
     public void run() {
+        var pageCounters = Executors.newFixedThreadPool(PAGE_COUNT_THREADS, task -> {
+            var thread = new Thread(task, "page-count");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
             if (verbose) {
                 System.err.println("🔍 Starting background scope discovery...");
             }
             
-            var files = fileProcessor.discoverFiles();
-            var stats = fileProcessor.analyzeFiles(files);
-            
-            for (Path file : files) {
+            var stats = fileProcessor.discoverFiles(file -> {
                 var fileType = fileProcessor.getFileType(file);
                 var sizeBytes = getFileSize(file);
-                var pageCountInfo = getPageCountInfo(file, fileType, sizeBytes);
-                
-                var workItem = new WorkItem(file, fileType, sizeBytes, 
-                    pageCountInfo.pageCount(), pageCountInfo.isActual());
+                var workItem = fileType == FileProcessor.FileType.IMAGE
+                    ? new WorkItem(file, fileType, sizeBytes, 1, true)
+                    : new WorkItem(file, fileType, sizeBytes, estimatePagesFromSize(sizeBytes), false);
                 workQueue.addWork(workItem);
-            }
-            
-            workQueue.markDiscoveryComplete();
+                if (fileType == FileProcessor.FileType.PDF) {
+                    pageCounters.execute(() -> countPages(workItem));
+                }
+            });
             
-            // Don't output here - it interferes with progress bar rendering
-            // Scope info will be shown in the final summary or integrated into progress display
+            if (verbose) {
+                System.err.printf("📊 Found %d files: %d images, %d PDFs%n", 
+                    stats.totalFiles(), stats.imageFiles(), stats.pdfFiles());
+            }
             
         } catch (Exception e) {
             System.err.println("❌ Error in scope discovery: " + e.getMessage());
+        } finally {
             workQueue.markDiscoveryComplete();
+            pageCounters.shutdown(); // queued counts still run
         }
     }
     
@@ -54,22 +76,27 @@ public class ScopeDiscoveryTask implements Runnable {
         }
     }
     
-    private PageCountInfo getPageCountInfo(Path file, FileProcessor.FileType fileType, long sizeBytes) {
-        if (fileType == FileProcessor.FileType.IMAGE) {
-            return new PageCountInfo(1, true);
-        } else {
-            // For PDFs, try to get actual page count first
-            try {
-                var pdfInfo = PdfInfoUtil.getPdfInfo(file.toFile());
-                return new PageCountInfo(pdfInfo.pageCount(), true);
-            } catch (Exception e) {
-                // Fallback: Size-based page estimation for Google Drive/network files
-                int estimatedPages = estimatePagesFromSize(sizeBytes);
-                if (verbose) {
-                    System.err.printf("📊 PDF header unreadable for %s, estimated %d pages from %s%n", 
-                        file.getFileName(), estimatedPages, formatSize(sizeBytes));
-                }
-                return new PageCountInfo(estimatedPages, false);
+    private void countPages(WorkItem item) {
+        if (workQueue.isStarted(item)) {
+            return;
+        }
+        var file = item.filePath().toFile();
+        if (manifest != null && manifest.unchanged(item.filePath(), file.length(), file.lastModified())) {
+            return;
+        }
+        try {
+            var pdfInfo = PdfInfoUtil.getPdfInfo(file, memoryMode); // same mode as processing
+            workQueue.resolvePageCount(item, pdfInfo.pageCount());
+        } catch (Exception e) {
+            // Unreadable header (e.g. a network placeholder): the size-based estimate stays
+            if (verbose) {
+                System.err.printf("📊 PDF header unreadable for %s, estimated %d pages from %s%n", 
+                    item.getDisplayName(), item.estimatedPages(), formatSize(item.fileSizeBytes()));
+            }
+        } finally {
+            // Counted well ahead of processing: not kept parsed and open until then
+            if (!workQueue.isStarted(item)) {
+                PdfDocumentCache.SHARED.closeIdle(file);
             }
         }
     }
@@ -101,6 +128,4 @@ public class ScopeDiscoveryTask implements Runnable {
         else if (reliability >= 0.3) return "mixed";
         else return "estimated";
     }
-    
-    private record PageCountInfo(int pageCount, boolean isActual) {}
 }
\ No newline at end of file
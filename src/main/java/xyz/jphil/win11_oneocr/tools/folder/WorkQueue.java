@@ -1,7 +1,11 @@
 package xyz.jphil.win11_oneocr.tools.folder;
 
+import java.nio.file.Path;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -9,6 +13,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class WorkQueue {
     private final BlockingQueue<WorkItem> queue = new LinkedBlockingQueue<>();
     private final AtomicBoolean discoveryComplete = new AtomicBoolean(false);
+    private final Set<Path> started = ConcurrentHashMap.newKeySet();
     
     // Total metrics (discovered during scope discovery)
     private final AtomicInteger totalFiles = new AtomicInteger(0);
@@ -39,7 +44,50 @@ public class WorkQueue {
     }
     
     public WorkItem takeWork() throws InterruptedException {
-        return queue.take();
+        return started(queue.take());
+    }
+    
+    /**
+     * Next file for any of several consumers; null once discovery is complete and the queue is drained
+     */
+    public WorkItem nextWork() throws InterruptedException {
+        while (true) {
+            var item = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return started(item);
+            }
+            // Discovery queues its last item before completing, so empty after completion means done
+            if (discoveryComplete.get() && queue.isEmpty()) {
+                return null;
+            }
+        }
+    }
+    
+    // PDFs only: what a background page count checks before opening the file
+    private WorkItem started(WorkItem item) {
+        if (item.fileType() == FileProcessor.FileType.PDF) {
+            started.add(item.filePath());
+        }
+        return item;
+    }
+    
+    /**
+     * Whether a consumer has taken the PDF for processing
+     */
+    public boolean isStarted(WorkItem item) {
+        return started.contains(item.filePath());
+    }
+    
+    /**
+     * Replace a queued file's estimated page count with its actual one, counted after it was queued
+     */
+    public void resolvePageCount(WorkItem item, int actualPages) {
+        if (item.isPageCountActual()) {
+            return;
+        }
+        totalPages.addAndGet(actualPages - item.estimatedPages());
+        pagesFromEstimate.addAndGet(-item.estimatedPages());
+        pagesFromActualCount.addAndGet(actualPages);
     }
     
     public boolean hasWork() {
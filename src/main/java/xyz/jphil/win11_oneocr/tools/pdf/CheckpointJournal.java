@@ -0,0 +1,237 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only record of completed pages (name.oneocr.journal), so resuming reads one file instead
+ * of checking every page's outputs on disk.
+ *
+ * One line per completed page lists each output with its size and CRC32C:
+ * <pre>
+ * 12 webp:48213:9c1e04aa txt:1890:0d2f6b11 json:20644:77ab0e3c xhtml:31022:e0c4a912 *5a03c1f7
+ * </pre>
+ * The trailing *crc covers the line itself, so a line torn by a crash is ignored (and cut off
+ * before new records are appended). A line with no outputs retracts the page. Later lines win.
+ *
+ * Runs working on parts of a document (--pages, --shard) each append to a journal of their own
+ * and read the others', so each knows every finished page without two processes appending to
+ * one file. Records of the own journal are read last and win.
+ *
+ * Records are forced to disk in batches (every {@value #FORCE_EVERY} records or
+ * {@value #FORCE_INTERVAL_MS} ms) rather than per page; a record lost in an OS crash only means
+ * that page is processed again. The page files a record vouches for must already be forced when
+ * it is recorded; the journal's directory is forced with each batch, so their renames are durable
+ * before the records that trust them.
+ */
+public class CheckpointJournal implements AutoCloseable {
+
+    static final int FORCE_EVERY = 64;
+    static final long FORCE_INTERVAL_MS = 2000;
+
+    /**
+     * One output file of a page
+     */
+    public record Artifact(String extension, long size, int crc) {
+        public static Artifact of(String extension, byte[] content) {
+            return new Artifact(extension, content.length, CheckpointJournal.crc(content));
+        }
+
+        /**
+         * Whether content is exactly what was recorded
+         */
+        public boolean matches(byte[] content) {
+            return content.length == size && CheckpointJournal.crc(content) == crc;
+        }
+    }
+
+    /**
+     * A completed page and its outputs
+     */
+    public record PageRecord(int page, List<Artifact> artifacts) {
+        public Artifact artifact(String extension) {
+            for (var artifact : artifacts) {
+                if (artifact.extension().equals(extension)) return artifact;
+            }
+            return null;
+        }
+    }
+
+    private final Path file;
+    private final Map<Integer, PageRecord> pages = new TreeMap<>();
+    private final boolean existed;
+    private FileChannel channel;
+    private int unforced;
+    private long lastForce = System.currentTimeMillis();
+
+    private CheckpointJournal(Path file, boolean existed) {
+        this.file = file;
+        this.existed = existed;
+    }
+
+    /**
+     * Read the journal (if any) and open it for appending
+     */
+    public static CheckpointJournal open(Path file) throws IOException {
+        return open(file, List.of());
+    }
+
+    /**
+     * Read the journals of other runs on the same document (read only), then this one, and open it for appending
+     */
+    public static CheckpointJournal open(Path file, List<Path> others) throws IOException {
+        var journal = new CheckpointJournal(file, Files.exists(file) || others.stream().anyMatch(Files::exists));
+        for (var other : others) {
+            try {
+                journal.load(other);
+            } catch (NoSuchFileException e) {
+                // Removed since it was listed
+            }
+        }
+        long validBytes = Files.exists(file) ? journal.load(file) : 0;
+        journal.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Cut off a torn last line so the next record starts on a line of its own
+        journal.channel.truncate(validBytes).position(validBytes);
+        return journal;
+    }
+
+    private long load(Path file) throws IOException {
+        var content = Files.readAllBytes(file);
+        long validBytes = 0;
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') continue;
+            var record = parse(new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8));
+            lineStart = i + 1;
+            if (record == null) continue;
+            if (record.artifacts().isEmpty()) {
+                pages.remove(record.page());
+            } else {
+                pages.put(record.page(), record);
+            }
+            validBytes = lineStart;
+        }
+        return validBytes;
+    }
+
+    /**
+     * Whether a journal file was there when opened (false for new or pre-journal output folders)
+     */
+    public boolean existed() {
+        return existed;
+    }
+
+    /**
+     * Record of a completed page, or null
+     */
+    public synchronized PageRecord page(int page) {
+        return pages.get(page);
+    }
+
+    public synchronized int completedPages() {
+        return pages.size();
+    }
+
+    /**
+     * Append a completed page
+     */
+    public synchronized void record(PageRecord record) throws IOException {
+        append(record);
+        pages.put(record.page(), record);
+    }
+
+    /**
+     * Mark a page as no longer complete (its outputs failed verification)
+     */
+    public synchronized void retract(int page) throws IOException {
+        if (pages.remove(page) != null) {
+            append(new PageRecord(page, List.of()));
+        }
+    }
+
+    private void append(PageRecord record) throws IOException {
+        var line = format(record);
+        var buffer = ByteBuffer.wrap((line + " *" + Integer.toHexString(crc(line.getBytes(StandardCharsets.UTF_8))) + "\n")
+            .getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (++unforced >= FORCE_EVERY || System.currentTimeMillis() - lastForce >= FORCE_INTERVAL_MS) {
+            force();
+        }
+    }
+
+    private void force() throws IOException {
+        forceDirectory(file.toAbsolutePath().getParent());
+        channel.force(false);
+        unforced = 0;
+        lastForce = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (unforced > 0) force();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Make renames in a directory durable, where the platform allows opening a directory (not on Windows,
+     * where NTFS commits renames through its own metadata journal)
+     */
+    static void forceDirectory(Path dir) {
+        try (var channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened or forced on this platform
+        }
+    }
+
+    public static int crc(byte[] content) {
+        var crc = new CRC32C();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    static String format(PageRecord record) {
+        var line = new StringBuilder().append(record.page());
+        for (var artifact : record.artifacts()) {
+            line.append(' ').append(artifact.extension()).append(':').append(artifact.size())
+                .append(':').append(Integer.toHexString(artifact.crc()));
+        }
+        return line.toString();
+    }
+
+    static PageRecord parse(String line) {
+        int star = line.lastIndexOf(" *");
+        if (star < 0) return null;
+        try {
+            var body = line.substring(0, star);
+            if (crc(body.getBytes(StandardCharsets.UTF_8)) != Integer.parseUnsignedInt(line.substring(star + 2), 16)) {
+                return null;
+            }
+            var fields = body.split(" ");
+            var artifacts = new ArrayList<Artifact>();
+            for (int i = 1; i < fields.length; i++) {
+                var parts = fields[i].split(":");
+                artifacts.add(new Artifact(parts[0], Long.parseLong(parts[1]), Integer.parseUnsignedInt(parts[2], 16)));
+            }
+            return new PageRecord(Integer.parseInt(fields[0]), List.copyOf(artifacts));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The image of a scanned page, taken out of the PDF instead of rendering the page.
+ *
+ * A page qualifies when all it paints is one image XObject covering its crop box, placed upright or
+ * turned by a multiple of 90 degrees (by its matrix, the page /Rotate, or both): the image then is
+ * the page, at the scanner's resolution. Invisible text (the text layer of an OCRed scan) and
+ * clipping are allowed; anything else visible, masks, flipped or skewed placements are not, and
+ * such pages are rendered as usual.
+ *
+ * Two things can be taken from a qualifying page:
+ * - content: the encoded DCT (JPEG) or JPX (JPEG 2000) stream byte for byte, usable as the preview
+ *   when the image is displayed upright and its colours need no conversion (no decode array, no CMYK)
+ * - pixels: the decoded image turned upright as the page is displayed, e.g. as OCR input
+ *
+ * width and height are the image's native pixel size as displayed; pageWidth and pageHeight the
+ * displayed page size in points, which is what rendering at a DPI would produce.
+ */
+public record EmbeddedPageImage(String extension, byte[] content, BufferedImage pixels,
+                                int width, int height, float pageWidth, float pageHeight) {
+
+    /**
+     * Extensions of copied previews: JPEG, JP2 file, bare JPEG 2000 codestream
+     */
+    public static final List<String> EXTENSIONS = List.of("jpg", "jp2", "j2k");
+
+    // Edges may be off by this fraction of the page size (rounding in the producer's placement)
+    private static final float COVERAGE_TOLERANCE = 0.01f;
+
+    /**
+     * The page's (0-based) single full-page image with its encoded stream (copy) and/or decoded
+     * pixels (decode), or null when the page has to be rendered. Either part is null when it was
+     * not asked for or cannot be taken from this image; the whole result is null if neither can.
+     */
+    public static EmbeddedPageImage find(PDDocument document, int pageIndex, boolean copy, boolean decode) throws IOException {
+        var page = document.getPage(pageIndex);
+        if (page.getRotation() % 90 != 0 || hasVisibleAnnotations(page)) {
+            return null;
+        }
+        var scan = new SinglePageImage(page);
+        try {
+            scan.processPage(page);
+        } catch (SinglePageImage.Disqualified e) {
+            return null;
+        }
+        if (scan.image == null) {
+            return null;
+        }
+
+        var image = scan.image;
+        if (image.isStencil() || image.getCOSObject().containsKey(COSName.SMASK)
+                || image.getCOSObject().containsKey(COSName.MASK)) {
+            return null;
+        }
+        int turns = scan.quarterTurns;
+        String extension = copy || decode ? codecExtension(image) : null;
+        byte[] encoded = null;
+        if (extension != null && (copy && turns == 0 || decode && extension.equals("jpg"))) {
+            // Undo any outer filters (e.g. Flate around the JPEG) and stop at the image codec
+            try (var in = image.getStream().createInputStream(List.of(COSName.DCT_DECODE.getName(), COSName.JPX_DECODE.getName()))) {
+                encoded = in.readAllBytes();
+            }
+            if (extension.equals("jp2") && !isJp2(encoded)) {
+                extension = "j2k";
+            }
+        }
+        byte[] content = copy && turns == 0 ? encoded : null;
+        BufferedImage pixels = null;
+        if (decode) {
+            // A plain JPEG decodes much faster through ImageIO than through PDFBox's per-pixel colour conversion
+            var decoded = encoded != null && extension.equals("jpg") ? ImageIO.read(new ByteArrayInputStream(encoded)) : null;
+            pixels = upright(decoded != null ? decoded : image.getImage(), turns);
+        }
+        if (content == null && pixels == null) {
+            return null;
+        }
+
+        boolean sideways = turns % 2 == 1;
+        boolean pageSideways = page.getRotation() % 180 != 0;
+        var box = page.getCropBox();
+        return new EmbeddedPageImage(content != null ? extension : null, content, pixels,
+            sideways ? image.getHeight() : image.getWidth(), sideways ? image.getWidth() : image.getHeight(),
+            pageSideways ? box.getHeight() : box.getWidth(), pageSideways ? box.getWidth() : box.getHeight());
+    }
+
+    /**
+     * Pixel size of the page rendered at dpi (as PDFRenderer sizes it)
+     */
+    public int renderedWidth(float dpi) {
+        return (int) Math.max(Math.floor(pageWidth * dpi / 72f), 1);
+    }
+
+    public int renderedHeight(float dpi) {
+        return (int) Math.max(Math.floor(pageHeight * dpi / 72f), 1);
+    }
+
+    // Extension of a stream that can be copied as is: gray/RGB JPEG (CMYK ones display inverted or not
+    // at all) or JPEG 2000, without a decode array changing its colours
+    private static String codecExtension(PDImageXObject image) throws IOException {
+        var filters = image.getStream().getFilters();
+        if (filters.isEmpty() || image.getCOSObject().containsKey(COSName.DECODE)) {
+            return null;
+        }
+        var codec = filters.get(filters.size() - 1);
+        if (COSName.DCT_DECODE.equals(codec)) {
+            int components = image.getColorSpace().getNumberOfComponents();
+            return components == 1 || components == 3 ? "jpg" : null;
+        }
+        return COSName.JPX_DECODE.equals(codec) ? "jp2" : null;
+    }
+
+    // JP2 file format (signature box) rather than a bare JPEG 2000 codestream
+    private static boolean isJp2(byte[] content) {
+        return content.length >= 8 && content[0] == 0 && content[1] == 0 && content[2] == 0 && content[3] == 0x0C
+            && content[4] == 'j' && content[5] == 'P' && content[6] == ' ' && content[7] == ' ';
+    }
+
+    // Turn the decoded image clockwise by quarter turns, exactly (no resampling)
+    private static BufferedImage upright(BufferedImage image, int quarterTurns) {
+        if (quarterTurns == 0) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        var transform = switch (quarterTurns) {
+            case 1 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 2 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+        int type = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        var target = quarterTurns == 2 ? new BufferedImage(w, h, type) : new BufferedImage(h, w, type);
+        return new AffineTransformOp(transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR).filter(image, target);
+    }
+
+    private static boolean hasVisibleAnnotations(PDPage page) throws IOException {
+        for (var annotation : page.getAnnotations()) {
+            if (annotation.getAppearance() != null && !annotation.isHidden() && !annotation.isNoView()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Walks the page content (forms included) and keeps the one image it draws, stopping at the
+     * first thing that would show in the rendering besides it (text pages stop at their first glyph)
+     */
+    private static final class SinglePageImage extends PageContentEngine {
+
+        static final class Disqualified extends RuntimeException {
+            Disqualified() {
+                super(null, null, false, false);
+            }
+        }
+
+        PDImageXObject image;
+        int quarterTurns;
+
+        SinglePageImage(PDPage page) {
+            super(page);
+        }
+
+        private static void disqualify() {
+            throw new Disqualified();
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+            if (image != null || !(pdImage instanceof PDImageXObject xobject)) {
+                throw new Disqualified();
+            }
+            Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+            quarterTurns = quarterTurns(ctm, getPage().getRotation());
+            if (quarterTurns < 0 || !coversPage(ctm)) {
+                disqualify();
+            }
+            image = xobject;
+        }
+
+        /**
+         * Clockwise quarter turns from the image's own orientation to the displayed page, or -1
+         * when it is skewed, flipped or not at a right angle
+         */
+        private static int quarterTurns(Matrix ctm, int pageRotation) {
+            // Where the image's columns (right) and rows (down) point on the page, in y-down space
+            float rx = ctm.getScaleX(), ry = -ctm.getShearY();
+            float dx = -ctm.getShearX(), dy = ctm.getScaleY();
+            for (int r = 0; r < Math.floorMod(pageRotation, 360) / 90; r++) {
+                float t = rx; rx = -ry; ry = t;
+                t = dx; dx = -dy; dy = t;
+            }
+            int right = direction(rx, ry);
+            int down = direction(dx, dy);
+            return right >= 0 && down == (right + 1) % 4 ? right : -1;
+        }
+
+        // 0 right, 1 down, 2 left, 3 up; -1 when not along an axis
+        private static int direction(float x, float y) {
+            float tolerance = 1e-3f * Math.max(Math.abs(x), Math.abs(y));
+            if (Math.abs(y) <= tolerance && x != 0) return x > 0 ? 0 : 2;
+            if (Math.abs(x) <= tolerance && y != 0) return y > 0 ? 1 : 3;
+            return -1;
+        }
+
+        // Edge to edge over the crop box
+        private boolean coversPage(Matrix ctm) {
+            float a = ctm.getScaleX(), b = ctm.getShearY(), c = ctm.getShearX(), d = ctm.getScaleY();
+            float x0 = ctm.getTranslateX() + Math.min(0, a) + Math.min(0, c);
+            float x1 = ctm.getTranslateX() + Math.max(0, a) + Math.max(0, c);
+            float y0 = ctm.getTranslateY() + Math.min(0, b) + Math.min(0, d);
+            float y1 = ctm.getTranslateY() + Math.max(0, b) + Math.max(0, d);
+            var box = getPage().getCropBox();
+            float tx = box.getWidth() * COVERAGE_TOLERANCE;
+            float ty = box.getHeight() * COVERAGE_TOLERANCE;
+            return Math.abs(x0 - box.getLowerLeftX()) <= tx && Math.abs(x1 - box.getUpperRightX()) <= tx
+                && Math.abs(y0 - box.getLowerLeftY()) <= ty && Math.abs(y1 - box.getUpperRightY()) <= ty;
+        }
+
+        @Override
+        protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement) {
+            var mode = getGraphicsState().getTextState().getRenderingMode();
+            if (mode.isFill() || mode.isStroke()) {
+                disqualify();
+            }
+        }
+
+        @Override
+        public void strokePath() {
+            disqualify();
+        }
+
+        @Override
+        public void fillPath(int windingRule) {
+            disqualify();
+        }
+
+        @Override
+        public void fillAndStrokePath(int windingRule) {
+            disqualify();
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName) {
+            disqualify();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadView;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A PDF file memory-mapped as one segment, for PDFBox to parse without copying the file onto the heap.
+ *
+ * PDFBox's own RandomAccessReadMemoryMappedFile maps through a ByteBuffer and so stops at 2GB; a
+ * MemorySegment has no such limit. The mapping is released on close(), which the document does.
+ */
+final class MappedPdfFile implements RandomAccessRead {
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long length;
+    private long position;
+    private boolean closed;
+
+    MappedPdfFile(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            length = channel.size();
+            arena = Arena.ofShared();
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, length, arena);
+            } catch (IOException | RuntimeException e) {
+                arena.close();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkOpen();
+        return position < length ? segment.get(ValueLayout.JAVA_BYTE, position++) & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int count) throws IOException {
+        checkOpen();
+        if (count == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        int n = (int) Math.min(count, length - position);
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, position, b, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkOpen();
+        return position;
+    }
+
+    @Override
+    public void seek(long newPosition) throws IOException {
+        checkOpen();
+        if (newPosition < 0) {
+            throw new IOException("Invalid position " + newPosition);
+        }
+        position = Math.min(newPosition, length);
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkOpen();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkOpen();
+        return position >= length;
+    }
+
+    @Override
+    public RandomAccessReadView createView(long startPosition, long streamLength) throws IOException {
+        checkOpen();
+        return new RandomAccessReadView(this, startPosition, streamLength);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            arena.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Mapped PDF file is already closed");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.awt.geom.Point2D;
+
+/**
+ * Content stream walker for page analysis (not drawing): path construction, clipping and painting
+ * are accepted and ignored, so subclasses only override the operations they look for.
+ */
+abstract class PageContentEngine extends PDFGraphicsStreamEngine {
+
+    PageContentEngine(PDPage page) {
+        super(page);
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {
+    }
+
+    @Override
+    public void clip(int windingRule) {
+    }
+
+    @Override
+    public void moveTo(float x, float y) {
+    }
+
+    @Override
+    public void lineTo(float x, float y) {
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+    }
+
+    @Override
+    public Point2D getCurrentPoint() {
+        return new Point2D.Float();
+    }
+
+    @Override
+    public void closePath() {
+    }
+
+    @Override
+    public void endPath() {
+    }
+
+    @Override
+    public void strokePath() {
+    }
+
+    @Override
+    public void fillPath(int windingRule) {
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) {
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) {
+    }
+}
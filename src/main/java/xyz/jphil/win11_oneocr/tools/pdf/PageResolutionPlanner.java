@@ -0,0 +1,99 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import xyz.jphil.win11_oneocr.tools.ImageScaler;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Per-page render and preview resolution, planned as each page is scheduled.
+ *
+ * The preview DPI follows the page's own size: a fixed --target-dpi, or the file size budget spread
+ * over the page's area (so fold-outs get fewer DPI than receipts). The OCR DPI is the requested one,
+ * lowered to a scan's native resolution (rendering a scan finer only interpolates it), and every page
+ * is kept within the megapixel cap, lowering both DPIs if needed, so no single page can take
+ * unbounded render time or memory.
+ */
+public class PageResolutionPlanner {
+
+    static final int MAX_OCR_DPI = 600;
+
+    private final Integer fixedPreviewDpi;
+    private final long bytesPerPage;
+    private final int ocrDpi;
+    private final double maxPixels;
+
+    /**
+     * DPIs for one page; capped is true when the megapixel cap lowered them
+     */
+    public record Plan(float previewDpi, float ocrDpi, boolean capped) {
+
+        /**
+         * Preview pixels for a side of a raster rendered at the OCR DPI
+         */
+        public int previewSize(int ocrPixels) {
+            return previewDpi == ocrDpi ? ocrPixels : (int) Math.max(Math.floor(ocrPixels * (double) previewDpi / ocrDpi), 1);
+        }
+    }
+
+    /**
+     * @param fixedPreviewDpi --target-dpi, or null to derive it from the budget per page
+     * @param bytesPerPage    average file bytes per page (the preview budget)
+     * @param ocrDpi          requested OCR DPI
+     * @param maxMegapixels   cap on the pixels of any page raster
+     */
+    public PageResolutionPlanner(Integer fixedPreviewDpi, long bytesPerPage, int ocrDpi, double maxMegapixels) {
+        this.fixedPreviewDpi = fixedPreviewDpi;
+        this.bytesPerPage = bytesPerPage;
+        this.ocrDpi = Math.min(MAX_OCR_DPI, ocrDpi);
+        this.maxPixels = maxMegapixels * 1_000_000;
+    }
+
+    /**
+     * Plan for a page that is rendered (or read from its text layer)
+     */
+    public Plan plan(PDPage page) {
+        boolean sideways = page.getRotation() % 180 != 0;
+        var box = page.getCropBox();
+        return plan(sideways ? box.getHeight() : box.getWidth(), sideways ? box.getWidth() : box.getHeight(), 0);
+    }
+
+    /**
+     * Plan for a scanned page, at most at the scan's own resolution
+     */
+    public Plan plan(EmbeddedPageImage scan) {
+        return plan(scan.pageWidth(), scan.pageHeight(), scan.width() * 72f / scan.pageWidth());
+    }
+
+    /**
+     * Plan for a page of the given displayed size in points; nativeDpi 0 when there is no scan
+     */
+    Plan plan(float widthPoints, float heightPoints, float nativeDpi) {
+        float preview = fixedPreviewDpi != null ? fixedPreviewDpi
+            : PdfInfoUtil.calculateSimpleDpi(widthPoints, heightPoints, bytesPerPage, false);
+        float ocr = nativeDpi > 0 ? Math.min(ocrDpi, nativeDpi) : ocrDpi;
+        ocr = Math.max(preview, ocr);
+
+        double squareInches = (widthPoints / 72.0) * (heightPoints / 72.0);
+        float capDpi = squareInches > 0 ? (float) Math.sqrt(maxPixels / squareInches) : Float.MAX_VALUE;
+        boolean capped = ocr > capDpi;
+        if (capped) {
+            ocr = capDpi;
+            preview = Math.min(preview, capDpi);
+        }
+        return new Plan(preview, ocr, capped);
+    }
+
+    /**
+     * The decoded scan itself, or scaled down to the megapixel cap
+     */
+    public BufferedImage fit(BufferedImage pixels) {
+        double pixelCount = (double) pixels.getWidth() * pixels.getHeight();
+        if (pixelCount <= maxPixels) {
+            return pixels;
+        }
+        double scale = Math.sqrt(maxPixels / pixelCount);
+        return ImageScaler.areaAverage(pixels,
+            (int) Math.max(Math.floor(pixels.getWidth() * scale), 1), (int) Math.max(Math.floor(pixels.getHeight() * scale), 1));
+    }
+}
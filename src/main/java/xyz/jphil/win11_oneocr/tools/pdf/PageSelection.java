@@ -0,0 +1,119 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Pages of a document one run works on: a --pages list, narrowed to one --shard.
+ *
+ * Page lists are 1-based and inclusive: "1-50,120,300-" (an open end runs to the last page,
+ * an open start from the first). Shard i/n takes every n-th selected page starting with the
+ * i-th, so shards of a document with scanned and born-digital sections get similar work, and
+ * the same arguments always give the same pages.
+ */
+public class PageSelection {
+
+    private final BitSet pages;
+    private final int pageCount;
+    private final String tag;
+
+    private PageSelection(BitSet pages, int pageCount, String tag) {
+        this.pages = pages;
+        this.pageCount = pageCount;
+        this.tag = tag;
+    }
+
+    /**
+     * Every page
+     */
+    public static PageSelection all(int pageCount) {
+        var pages = new BitSet();
+        pages.set(1, pageCount + 1);
+        return new PageSelection(pages, pageCount, null);
+    }
+
+    /**
+     * Pages of a --pages list and/or --shard (either may be null)
+     * @throws IllegalArgumentException for malformed or out-of-range lists and shards
+     */
+    public static PageSelection parse(String pageList, String shard, int pageCount) {
+        var pages = new BitSet();
+        if (pageList == null) {
+            pages.set(1, pageCount + 1);
+        } else {
+            for (var part : pageList.split(",")) {
+                var range = part.trim();
+                int dash = range.indexOf('-');
+                int first = dash < 0 ? page(range, pageList) : dash == 0 ? 1 : page(range.substring(0, dash), pageList);
+                int last = dash < 0 ? first : dash == range.length() - 1 ? pageCount : page(range.substring(dash + 1), pageList);
+                if (first > last) {
+                    throw new IllegalArgumentException("Descending page range '" + range + "' in --pages " + pageList);
+                }
+                if (first > pageCount) {
+                    throw new IllegalArgumentException("Page " + first + " is beyond the last page (" + pageCount + ")");
+                }
+                pages.set(first, Math.min(last, pageCount) + 1);
+            }
+        }
+
+        var tag = new StringBuilder();
+        if (pageList != null) {
+            tag.append("pages-").append(Integer.toHexString(CheckpointJournal.crc(pageList.replace(" ", "").getBytes(StandardCharsets.UTF_8))));
+        }
+        if (shard != null) {
+            var parts = shard.split("/");
+            int index, count;
+            try {
+                if (parts.length != 2) throw new NumberFormatException();
+                index = Integer.parseInt(parts[0].trim());
+                count = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("--shard must be i/n, e.g. 2/8: " + shard);
+            }
+            if (count < 1 || index < 1 || index > count) {
+                throw new IllegalArgumentException("--shard " + shard + " must have 1 <= i <= n");
+            }
+            int position = 0;
+            for (int page = pages.nextSetBit(0); page >= 0; page = pages.nextSetBit(page + 1)) {
+                if (position++ % count != index - 1) {
+                    pages.clear(page);
+                }
+            }
+            if (!tag.isEmpty()) tag.append('-');
+            tag.append("shard-").append(index).append("of").append(count);
+        }
+        return new PageSelection(pages, pageCount, tag.isEmpty() ? null : tag.toString());
+    }
+
+    private static int page(String number, String pageList) {
+        try {
+            int page = Integer.parseInt(number.trim());
+            if (page < 1) throw new NumberFormatException();
+            return page;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--pages expects page numbers and ranges like 1-50,120,300-: " + pageList);
+        }
+    }
+
+    /**
+     * Whether the selection is the whole document
+     */
+    public boolean isAll() {
+        return pages.cardinality() == pageCount;
+    }
+
+    public boolean contains(int page) {
+        return pages.get(page);
+    }
+
+    public int count() {
+        return pages.cardinality();
+    }
+
+    /**
+     * Name part identifying this selection (e.g. "shard-2of8"), or null for the whole document
+     */
+    public String tag() {
+        return isAll() ? null : tag;
+    }
+}
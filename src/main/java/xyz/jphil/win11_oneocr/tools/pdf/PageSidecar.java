@@ -0,0 +1,108 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import xyz.jphil.win11_oneocr.BoundingBox;
+import xyz.jphil.win11_oneocr.OcrLine;
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.OcrWord;
+
+import java.util.ArrayList;
+
+import static xyz.jphil.win11_oneocr.OcrWord.ocrWord;
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+
+/**
+ * Per-page structured result (name.pgNN.json), written next to the page outputs at OCR time.
+ *
+ * Unlike the ultra-compact .oneocr.json format (rounded bounds and confidences, for readers), the
+ * sidecar is lossless: a resumed run rehydrates exactly the PagedOcrResult the OCR produced, so
+ * the combined outputs are identical to those of an uninterrupted run without re-running OCR.
+ *
+ * Layout: {"page":n,"image":"...","size":"WxH","angle":a,"lines":[[text,bounds|null,[[text,conf,llm,bounds|null],...]],...]}
+ * plus "text" only when the page text is not simply the line texts joined by newlines, "source"
+ * only for text that did not come from OCR, and "md5" when the MD5 of the OCR input is known.
+ */
+public class PageSidecar {
+
+    public static String toJson(PagedOcrResult page) {
+        var result = page.ocrResult();
+        var lines = new JSONArray();
+        for (var line : result.lines()) {
+            var words = new JSONArray();
+            for (var word : line.words()) {
+                words.put(new JSONArray()
+                    .put(word.text())
+                    .put(word.confidence())
+                    .put(word.llmCorrection() != null ? word.llmCorrection() : "")
+                    .put(bounds(word.boundingBox())));
+            }
+            lines.put(new JSONArray().put(line.text()).put(bounds(line.boundingBox())).put(words));
+        }
+
+        var root = new JSONObject()
+            .put("page", page.pageNumber())
+            .put("image", page.imageName())
+            .put("size", page.imageWidth() + "x" + page.imageHeight())
+            .put("angle", result.textAngle())
+            .put("lines", lines);
+        if (!result.text().equals(joinedLineText(result))) {
+            root.put("text", result.text());
+        }
+        if (page.textSource() != null) {
+            root.put("source", page.textSource());
+        }
+        if (page.srcMD5() != null) {
+            root.put("md5", page.srcMD5());
+        }
+        return root.toString();
+    }
+
+    public static PagedOcrResult fromJson(String json) {
+        var root = new JSONObject(json);
+        var lines = new ArrayList<OcrLine>();
+        var linesArray = root.getJSONArray("lines");
+        for (int i = 0; i < linesArray.length(); i++) {
+            var lineArray = linesArray.getJSONArray(i);
+            var wordsArray = lineArray.getJSONArray(2);
+            var words = new ArrayList<OcrWord>(wordsArray.length());
+            for (int j = 0; j < wordsArray.length(); j++) {
+                var wordArray = wordsArray.getJSONArray(j);
+                words.add(ocrWord(wordArray.getString(0), bounds(wordArray, 3),
+                    wordArray.getDouble(1), wordArray.getString(2)));
+            }
+            lines.add(new OcrLine(lineArray.getString(0), bounds(lineArray, 1), words));
+        }
+
+        var size = root.getString("size").split("x");
+        var result = new OcrResult("", root.getDouble("angle"), lines);
+        var text = root.has("text") ? root.getString("text") : joinedLineText(result);
+        return new PagedOcrResult(root.getInt("page"), new OcrResult(text, result.textAngle(), lines),
+            root.getString("image"), Integer.parseInt(size[0]), Integer.parseInt(size[1]), root.optString("source", null),
+            root.optString("md5", null));
+    }
+
+    private static String joinedLineText(OcrResult result) {
+        return String.join("\n", result.lines().stream().map(OcrLine::text).toList());
+    }
+
+    private static Object bounds(BoundingBox box) {
+        if (box == null) {
+            return JSONObject.NULL;
+        }
+        var array = new JSONArray();
+        for (double value : box.bounds()) {
+            array.put(value);
+        }
+        return array;
+    }
+
+    private static BoundingBox bounds(JSONArray parent, int index) {
+        if (parent.isNull(index)) {
+            return null;
+        }
+        var b = parent.getJSONArray(index);
+        return new BoundingBox(b.getDouble(0), b.getDouble(1), b.getDouble(2), b.getDouble(3),
+            b.getDouble(4), b.getDouble(5), b.getDouble(6), b.getDouble(7));
+    }
+}
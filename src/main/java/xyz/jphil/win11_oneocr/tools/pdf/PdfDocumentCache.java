@@ -0,0 +1,232 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of parsed PDF documents, so discovery, PdfInfoUtil and the renderer pool
+ * parse a file once instead of each loading it again (parsing the xref and object tree of a large
+ * scan takes seconds).
+ *
+ * Documents are leased exclusively (PDFBox documents are not thread-safe) and kept open when the
+ * lease is closed. Several leases of one file get separate documents, as parallel rendering needs.
+ * Documents are keyed by path, size and modification time, so a changed file is loaded afresh and
+ * its outdated documents are closed; documents loaded with a different PdfMemoryMode are not shared.
+ * Idle documents are closed least recently used first while the open documents exceed maxHandles or
+ * maxBytes; a document's memory is estimated by its mode (for heap, its file size, an overestimate
+ * of the parsed object tree that leaves room for the resources rendering caches).
+ *
+ * <pre>
+ * try (var lease = PdfDocumentCache.SHARED.acquire(pdfFile)) {
+ *     int pages = lease.document().getNumberOfPages();
+ * }
+ * </pre>
+ */
+public class PdfDocumentCache {
+
+    /** Process-wide cache; at most 16 documents or an estimated 1GB open */
+    public static final PdfDocumentCache SHARED = new PdfDocumentCache(16, 1024L * 1024 * 1024);
+
+    private record Key(Path path, long size, long modified, PdfMemoryMode mode) {
+        static Key of(File file, PdfMemoryMode mode) throws IOException {
+            var path = file.toPath().toAbsolutePath().normalize();
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new Key(path, attributes.size(), attributes.lastModifiedTime().toMillis(), mode);
+        }
+
+        boolean sameVersion(Key other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+
+    private record Entry(Key key, PDDocument document) {
+        long estimatedBytes() {
+            return key.mode().estimatedHeapBytes(key.size());
+        }
+    }
+
+    private final int maxHandles;
+    private final long maxBytes;
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>(); // least recently used first
+    private int leased;
+    private long leasedBytes;
+    private long idleBytes;
+
+    // Statistics
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong loads = new AtomicLong(0);
+
+    public PdfDocumentCache(int maxHandles, long maxBytes) {
+        this.maxHandles = maxHandles;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Exclusive use of a parsed document; close() returns it to the cache
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private boolean released;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        public PDDocument document() {
+            return entry.document();
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * Lease a document of the file loaded with the heap mode: an idle parsed one, or a newly loaded one
+     */
+    public Lease acquire(File file) throws IOException {
+        return acquire(file, PdfMemoryMode.HEAP);
+    }
+
+    /**
+     * Lease a document of the file loaded with the given mode: an idle parsed one, or a newly loaded one
+     */
+    public Lease acquire(File file, PdfMemoryMode mode) throws IOException {
+        var key = Key.of(file, mode);
+        var outdated = new ArrayList<Entry>();
+        Entry found = null;
+        synchronized (this) {
+            // Most recently used first; documents of an older version of the file go
+            for (var iterator = idle.descendingIterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                if (!entry.key().path().equals(key.path())) continue;
+                if (entry.key().equals(key)) {
+                    if (found != null) continue;
+                    found = entry;
+                } else if (!entry.key().sameVersion(key)) {
+                    outdated.add(entry);
+                } else {
+                    continue;
+                }
+                iterator.remove();
+                idleBytes -= entry.estimatedBytes();
+            }
+            if (found != null) {
+                leased++;
+                leasedBytes += found.estimatedBytes();
+            }
+        }
+        closeAll(outdated);
+        if (found != null) {
+            hits.incrementAndGet();
+            return new Lease(found);
+        }
+
+        var entry = new Entry(key, mode.load(file));
+        loads.incrementAndGet();
+        List<Entry> evicted;
+        synchronized (this) {
+            leased++;
+            leasedBytes += entry.estimatedBytes();
+            evicted = evict();
+        }
+        closeAll(evicted);
+        return new Lease(entry);
+    }
+
+    private void release(Entry entry) {
+        List<Entry> evicted;
+        synchronized (this) {
+            leased--;
+            leasedBytes -= entry.estimatedBytes();
+            idle.addLast(entry);
+            idleBytes += entry.estimatedBytes();
+            evicted = evict();
+        }
+        closeAll(evicted);
+    }
+
+    // Least recently used idle documents while over either bound (leased documents cannot be closed)
+    private List<Entry> evict() {
+        var evicted = new ArrayList<Entry>();
+        while (!idle.isEmpty() && (leased + idle.size() > maxHandles || leasedBytes + idleBytes > maxBytes)) {
+            var entry = idle.removeFirst();
+            idleBytes -= entry.estimatedBytes();
+            evicted.add(entry);
+        }
+        return evicted;
+    }
+
+    /**
+     * Close the idle documents of a file that is done with, so it is not held open (e.g. locked on Windows)
+     */
+    public void closeIdle(File file) {
+        var path = file.toPath().toAbsolutePath().normalize();
+        var entries = new ArrayList<Entry>();
+        synchronized (this) {
+            for (var iterator = idle.iterator(); iterator.hasNext(); ) {
+                var entry = iterator.next();
+                if (entry.key().path().equals(path)) {
+                    iterator.remove();
+                    idleBytes -= entry.estimatedBytes();
+                    entries.add(entry);
+                }
+            }
+        }
+        closeAll(entries);
+    }
+
+    /**
+     * Close every idle document
+     */
+    public void clear() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(idle);
+            idle.clear();
+            idleBytes = 0;
+        }
+        closeAll(entries);
+    }
+
+    public synchronized int idleDocuments() {
+        return idle.size();
+    }
+
+    /**
+     * Leases served by an already parsed document
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * Documents parsed from their file
+     */
+    public long loads() {
+        return loads.get();
+    }
+
+    private static void closeAll(List<Entry> entries) {
+        for (var entry : entries) {
+            try {
+                entry.document().close();
+            } catch (IOException e) {
+                // Nothing to recover: the document is dropped either way
+            }
+        }
+    }
+}
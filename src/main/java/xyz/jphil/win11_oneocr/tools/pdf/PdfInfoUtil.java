@@ -1,6 +1,5 @@
 package xyz.jphil.win11_oneocr.tools.pdf;
 
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import java.io.File;
 import java.nio.file.Files;
@@ -31,8 +30,17 @@ public class PdfInfoUtil {
      * @return PdfInfo with page count and first page dimensions (in points, 1/72 inch)
      */
     public static PdfInfo getPdfInfo(File pdfFile) throws Exception {
+        return getPdfInfo(pdfFile, PdfMemoryMode.HEAP);
+    }
+
+    /**
+     * Extract PDF page count and first page dimensions, parsing the file with the given memory mode
+     */
+    public static PdfInfo getPdfInfo(File pdfFile, PdfMemoryMode memoryMode) throws Exception {
         long fileSize = -1;
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
+        // Parsed once: the renderers and later calls lease the same document
+        try (var lease = PdfDocumentCache.SHARED.acquire(pdfFile, memoryMode)) {
+            PDDocument document = lease.document();
             int pageCount = document.getNumberOfPages();
             fileSize = Files.size(pdfFile.toPath());
             if (pageCount == 0) {
@@ -59,20 +67,27 @@ public class PdfInfoUtil {
      * Uses actual page dimensions from PDF to calculate optimal DPI that fits within size budget
      */
     public static int calculateSimpleDpi(PdfInfo pdfInfo, boolean verbose) {
-        final int DEFAULT_MAX_DPI = 100;
-        final int MIN_DPI = 75;
-        
+        if (pdfInfo.pageCount() <= 0) {
+            return DEFAULT_MAX_DPI;
+        }
+        return calculateSimpleDpi(pdfInfo.pg0Width(), pdfInfo.pg0Height(), pdfInfo.perPageAverageSize(), verbose);
+    }
+
+    static final int DEFAULT_MAX_DPI = 100;
+    static final int MIN_DPI = 75;
+
+    /**
+     * The same calculation for one page of the given size (points) and byte budget
+     */
+    public static int calculateSimpleDpi(double widthPoints, double heightPoints, long maxBytesPerPage, boolean verbose) {
         // Handle edge cases
-        if (pdfInfo.pg0Width() <= 0 || pdfInfo.pg0Height() <= 0 || pdfInfo.pageCount() <= 0) {
+        if (widthPoints <= 0 || heightPoints <= 0) {
             return DEFAULT_MAX_DPI; // Fallback if dimensions unavailable
         }
         
         // Convert points to inches (1 point = 1/72 inch)
-        double pageWidthInches = pdfInfo.pg0Width() / 72.0;
-        double pageHeightInches = pdfInfo.pg0Height() / 72.0;
-        
-        // Calculate per-page size budget
-        long maxBytesPerPage = pdfInfo.perPageAverageSize();
+        double pageWidthInches = widthPoints / 72.0;
+        double pageHeightInches = heightPoints / 72.0;
         
         // Mathematical relationship for image size:
         // pixels = (widthInches * dpi) * (heightInches * dpi) = pageArea * dpi²
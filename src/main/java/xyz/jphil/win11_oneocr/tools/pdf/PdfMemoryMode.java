@@ -0,0 +1,78 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * How much of a PDF PDFBox keeps on the heap (--pdf-memory).
+ *
+ * - heap: PDFBox's defaults: the file is read through a buffer, scratch data (streams PDFBox
+ *   creates while working) stays on the heap and decoded images are cached with the document
+ * - mixed: scratch data on the heap up to {@value #MIXED_HEAP_MB}MB, then in a temp file; page
+ *   images are not cached past their page
+ * - mapped: the file is memory-mapped off-heap (any size), scratch data goes to temp files and page
+ *   images are not cached; only the parsed object tree lives on the heap, so multi-gigabyte PDFs
+ *   process with a small fixed -Xmx
+ */
+public enum PdfMemoryMode {
+    HEAP, MIXED, MAPPED;
+
+    static final int MIXED_HEAP_MB = 64;
+
+    /**
+     * Mode for a --pdf-memory value
+     * @throws IllegalArgumentException for anything but heap, mixed and mapped
+     */
+    public static PdfMemoryMode parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--pdf-memory must be heap, mixed or mapped: " + value);
+        }
+    }
+
+    /**
+     * Parse the file with this mode's reader and scratch storage
+     */
+    PDDocument load(File file) throws IOException {
+        var document = switch (this) {
+            case HEAP -> Loader.loadPDF(new RandomAccessReadBufferedFile(file), IOUtils.createMemoryOnlyStreamCache());
+            case MIXED -> Loader.loadPDF(new RandomAccessReadBufferedFile(file),
+                MemoryUsageSetting.setupMixed(MIXED_HEAP_MB * 1024L * 1024L).streamCache);
+            case MAPPED -> Loader.loadPDF(new MappedPdfFile(file.toPath()), IOUtils.createTempFileOnlyStreamCache());
+        };
+        if (this != HEAP) {
+            document.setResourceCache(new PageImagesUncached());
+        }
+        return document;
+    }
+
+    /**
+     * Heap a parsed document is estimated to hold, for the document cache's bound: the file size,
+     * or for mixed and mapped, whose file data and scratch are capped or off-heap, at most the mixed cap
+     */
+    long estimatedHeapBytes(long fileSize) {
+        return this == HEAP ? fileSize : Math.min(fileSize, MIXED_HEAP_MB * 1024L * 1024L);
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    // Fonts and colour spaces stay cached; images (a scan's page image is used once) do not
+    private static final class PageImagesUncached extends DefaultResourceCache {
+        @Override
+        public void put(COSObject indirect, PDXObject xobject) {
+        }
+    }
+}
@@ -2,21 +2,23 @@ package xyz.jphil.win11_oneocr.tools.pdf;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.*;
-import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.rendering.*;
+import org.json.JSONException;
 import picocli.CommandLine.*;
 import xyz.jphil.win11_oneocr.*;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import xyz.jphil.win11_oneocr.tools.*;
 import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
 
@@ -38,10 +40,41 @@ public class PdfOcrCommand implements Callable<Integer> {
         return parentCommand != null ? parentCommand.getThreads() : 1;
     }
     
+    private int getRenderHandles() {
+        return parentCommand != null ? parentCommand.getRenderHandles() : getThreads();
+    }
+    
+    private PdfMemoryMode getPdfMemory() {
+        return parentCommand != null ? parentCommand.getPdfMemory() : PdfMemoryMode.HEAP;
+    }
+    
+    private OcrEngine getEngine() throws Exception {
+        return parentCommand != null ? parentCommand.getEngine() : new OneOcrEngine();
+    }
+    
+    private OcrResultCache getResultCache() throws IOException {
+        return parentCommand != null ? parentCommand.getResultCache() : null;
+    }
+    
     // Public setter for FolderOcrCommand to set parent command relationship
     public void setParentCommand(xyz.jphil.win11_oneocr.tools.OcrTool parentCommand) {
         this.parentCommand = parentCommand;
     }
+    
+    // Public setter for FolderOcrCommand to share its OCR sessions across all files of a run
+    public void setSessionManager(OcrSessionManager sessionManager) {
+        this.sharedSessions = sessionManager;
+    }
+    
+    // Public setter for FolderOcrCommand: PDFs processed at once share one preview budget and its encoders
+    public void setPreviewService(PreviewEncodingService previewService) {
+        this.sharedPreviews = previewService;
+    }
+    
+    // Public setter for FolderOcrCommand: PDFs processed at once share one budget of open render documents
+    public void setRenderBudget(Semaphore renderBudget) {
+        this.renderBudget = renderBudget;
+    }
 
     @Parameters(index = "0", description = "Input PDF file")
     private File pdfFile;
@@ -49,9 +82,23 @@ public class PdfOcrCommand implements Callable<Integer> {
     @Option(names = {"-o", "--output-dir"}, description = "Output directory (default: PDF filename directory)")
     private File outputDir;
 
-    @Option(names = {"--image-format"}, description = "Image format for extracted pages (jpg, png, webp, avif)", defaultValue = "webp")
+    @Option(names = {"--image-format"}, description = "Preview image format for extracted pages (jpg, png, webp, none)", defaultValue = "webp")
     private String imageFormat;
 
+    @Option(names = {"--image-quality"}, description = "Preview quality 0-100 for jpg and webp (default: encoder default)", defaultValue = "-1")
+    private int imageQuality;
+
+    @Option(names = {"--webp-method"}, description = "WebP effort 0 (fastest) to 6 (smallest) (default: encoder default)", defaultValue = "-1")
+    private int webpMethod;
+
+    @Option(names = {"--preview-passthrough"}, description = "Use the embedded JPEG/JPEG 2000 of single-image (scanned) pages as their preview, without re-encoding")
+    private boolean previewPassthrough;
+
+    @Option(names = {"--always-render"}, description = "Rasterize every page for OCR, also scanned pages whose embedded image could be read directly")
+    private boolean alwaysRender;
+
+    @Option(names = {"--text-layer"}, description = "Take the text of born-digital pages from the PDF's text layer; such pages skip rendering and OCR (and have no preview)")
+    private boolean useTextLayer;
 
     @Option(names = {"--max-lines"}, description = "Maximum number of text lines to recognize per page", defaultValue = "1000")
     private int maxLines;
@@ -62,26 +109,105 @@ public class PdfOcrCommand implements Callable<Integer> {
     @Option(names = {"--min-confidence"}, description = "Minimum confidence threshold (0.0-1.0)", defaultValue = "0.0")
     private double minConfidence;
 
-    @Option(names = {"--target-dpi"}, description = "Force specific DPI for all pages (bypasses auto-detection)")
+    @Option(names = {"--target-dpi"}, description = "Force specific preview DPI for all pages (bypasses the per-page budget)")
     private Integer userTargetDpi;
+
+    @Option(names = {"--ocr-dpi"}, description = "DPI pages are rendered at for OCR; previews are downscaled from the same rendering (never below the preview DPI, at most a scan's own resolution)", defaultValue = "200")
+    private int ocrDpi;
+
+    @Option(names = {"--max-megapixels"}, description = "Cap on any page's raster; larger pages (fold-outs, posters) get a lower DPI", defaultValue = "25")
+    private double maxMegapixels;
+
+    @Option(names = {"--render-threads"}, description = "Page rendering threads (default: same as --render-handles)", defaultValue = "0")
+    private int renderThreads;
+
+    @Option(names = {"--convert-threads"}, description = "BGRA conversion threads", defaultValue = "1")
+    private int convertThreads;
+
+    @Option(names = {"--encode-threads"}, description = "XHTML and preview image encoding threads", defaultValue = "1")
+    private int encodeThreads;
+
+    @Option(names = {"--preview-memory"}, description = "MB of rendered pages allowed to wait for preview encoding; rendering waits when full", defaultValue = "256")
+    private int previewMemoryMb;
+
+    @Option(names = {"--spill-previews"}, description = "Spill rendered pages to a temp file instead of waiting when --preview-memory is full")
+    private boolean spillPreviews;
+
+    @Option(names = {"--write-threads"}, description = "File writing threads", defaultValue = "1")
+    private int writeThreads;
+
+    @Option(names = {"--queue-depth"}, description = "Pages buffered between pipeline stages (bounds memory)", defaultValue = "2")
+    private int queueDepth;
+
+    @Option(names = {"--pages"}, description = "Pages to process, e.g. 1-50,120,300- (default: all)")
+    private String pageList;
+
+    @Option(names = {"--shard"}, description = "Process shard i of n (every n-th selected page), e.g. 2/8; shards can run in parallel into one output directory and the last to finish merges")
+    private String shard;
+
+    @Option(names = {"--merge"}, description = "Only assemble the combined outputs from pages finished by earlier (e.g. sharded) runs; nothing is OCRed")
+    private boolean mergeOnly;
+
+    @Option(names = {"--verify"}, description = "Re-check every page's files against the checkpoint journal (reads all outputs) instead of trusting it")
+    private boolean verify;
     
     // PDF processing fields
-    private int calculatedTargetDpi = 0;  // User-specified or calculated DPI for preview images
+    private PageResolutionPlanner planner; // Preview and OCR DPI of each page
     private PdfNaming naming;
-    PDFRenderer pdfRenderer;
+    private PreviewEncoder previewEncoder;
+    private PdfMemoryMode memoryMode = PdfMemoryMode.HEAP;
+    private PageScheduler.Source ocrSource = PageScheduler.Source.ANY; // this file, for scheduling its pages' OCR
     PdfInfoUtil.PdfInfo pdfInfo;
+    private PageSelection selection;
+    private final List<Integer> missingPages = new ArrayList<>();
+    private final AtomicInteger passthroughPages = new AtomicInteger();
+    private final AtomicInteger directPages = new AtomicInteger();
+    private final AtomicInteger textLayerPages = new AtomicInteger();
+    private final AtomicInteger cachedPages = new AtomicInteger();
+    private OcrResultCache resultCache; // results of pages recognized before, by pixel content, or null
+    
+    // OCR sessions: shared by the folder command, or owned by this command for a standalone run
+    private OcrSessionManager sharedSessions;
+    private OcrSessionManager sessions;
+    // Preview encoding and render documents: shared by the folder command, or per run (null)
+    private PreviewEncodingService sharedPreviews;
+    private Semaphore renderBudget;
     
     @Override
     public Integer call() throws Exception {
+        sessions = sharedSessions != null ? sharedSessions 
+            : new OcrSessionManager(getEngine(), maxLines, getThreads());
         try {
             if (!pdfFile.exists()) {
                 System.err.println("Error: PDF file does not exist: " + pdfFile);
                 return 1;
             }
 
+            try {
+                previewEncoder = PreviewEncoder.forFormat(imageFormat, imageQuality, webpMethod);
+                memoryMode = getPdfMemory();
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
+            try {
+                resultCache = getResultCache();
+            } catch (IOException e) {
+                System.err.println("Error: Cannot open result cache: " + e.getMessage());
+                return 1;
+            }
+
             // Get PDF information (pages, dimensions, file size)
-            pdfInfo = PdfInfoUtil.getPdfInfo(pdfFile);
+            resetPeakHeap();
+            pdfInfo = PdfInfoUtil.getPdfInfo(pdfFile, memoryMode);
             naming = new PdfNaming(pdfFile.getName(), pdfInfo.pageCount());
+            ocrSource = new PageScheduler.Source(pdfFile.getAbsolutePath(), pdfInfo.pageCount());
+            try {
+                selection = PageSelection.parse(pageList, shard, pdfInfo.pageCount());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return 1;
+            }
 
             // Determine output directory
             Path actualOutputDir = outputDir != null ? 
@@ -98,7 +224,7 @@ public class PdfOcrCommand implements Callable<Integer> {
                 formatBytes(pdfInfo.fileSize()), pdfInfo.pageCount(), formatBytes(pdfInfo.perPageAverageSize())));
 
             // EARLY EXIT: Check if processing is already complete (skip expensive DPI analysis)
-            if (isProcessingComplete(actualOutputDir, pdfFile.getName())) {
+            if (!verify && isProcessingComplete(actualOutputDir, pdfFile.getName())) {
                 if (verbose) {
                     System.err.println("✅ Processing already complete - all pages processed!");
                 }
@@ -111,87 +237,74 @@ public class PdfOcrCommand implements Callable<Integer> {
                 return 0;
             }
 
-            // Step 1: Determine target DPI (simplified - preview images only)
-            if (userTargetDpi != null) {
-                calculatedTargetDpi = Math.max(100, Math.min(300, userTargetDpi)); // Apply quality bounds
-                if (verbose) {
-                    System.err.printf("Using user-specified DPI: %d (bounded to 100-300)%n", calculatedTargetDpi);
-                }
-            } else {
-                calculatedTargetDpi = PdfInfoUtil.calculateSimpleDpi(pdfInfo, verbose);
-                if (verbose) {
-                    System.err.printf("Using calculated DPI: %d (for preview images)%n", calculatedTargetDpi);
+            // Step 1: Resolution policy; each page's DPIs are planned from its own size as it is scheduled
+            if (maxMegapixels <= 0) {
+                System.err.println("Error: --max-megapixels must be positive");
+                return 1;
+            }
+            Integer previewDpi = userTargetDpi != null ? Math.max(100, Math.min(300, userTargetDpi)) : null; // Apply quality bounds
+            planner = new PageResolutionPlanner(previewDpi, pdfInfo.perPageAverageSize(), ocrDpi, maxMegapixels);
+            if (verbose) {
+                if (previewDpi != null) {
+                    System.err.printf("Using user-specified DPI: %d (bounded to 100-300)%n", previewDpi);
+                } else {
+                    System.err.printf("Preview DPI per page from the %s/page budget (%d-%d DPI; first page: %d)%n",
+                        formatBytes(pdfInfo.perPageAverageSize()), PdfInfoUtil.MIN_DPI, PdfInfoUtil.DEFAULT_MAX_DPI,
+                        PdfInfoUtil.calculateSimpleDpi(pdfInfo, false));
                 }
+                System.err.printf("Rendering for OCR at up to %d DPI, at most %.1f megapixels per page; previews downscaled from the same raster%n",
+                    Math.min(PageResolutionPlanner.MAX_OCR_DPI, ocrDpi), maxMegapixels);
             }
 
             // Step 2: Process PDF with progress tracking
-            var progress = new ProgressTracker("PDF OCR Processing", pdfInfo.pageCount(), verbose);
-            
-            progress.start();
-            
-            List<PagedOcrResult> results = (getThreads() == 1) 
-                ? processWithParallelArchitecture(actualOutputDir, progress, log)
-                : processWithMultiThreadedOcr(actualOutputDir, progress, log);
-            
-            // Handle case where no new pages were processed
-            if (results.isEmpty()) {
-                // Check which individual page files exist vs missing
-                List<Integer> missingPages = new ArrayList<>();
-                int existingPages = 0;
-                
-                for (int page = 1; page <= pdfInfo.pageCount(); page++) {
-                    if (allPageFilesExist(pdfFile.getName(), page, actualOutputDir)) {
-                        existingPages++;
-                    } else {
-                        missingPages.add(page);
-                    }
+            int processedPages;
+            ProgressTracker progress;
+            boolean selectionDone = false;
+            if (mergeOnly) {
+                progress = new ProgressTracker("PDF merge", pdfInfo.pageCount(), verbose);
+                progress.start();
+                processedPages = mergeFinishedPages(actualOutputDir, progress, log);
+            } else if (selection.isAll()) {
+                progress = new ProgressTracker("PDF OCR Processing", pdfInfo.pageCount(), verbose);
+                progress.start();
+                // The whole document: merge while processing, as the only merger
+                try (var lock = lockMerge(actualOutputDir)) {
+                    processedPages = processWithPipeline(actualOutputDir, progress, log, selection, true);
                 }
-                
-                if (missingPages.isEmpty()) {
-                    // All individual pages exist - create missing range files using existing logic
-                    log.success("PDF", "All individual pages exist - creating final combined files");
-                    // Continue to the existing final file creation logic below instead of returning early
-                } else {
-                    // Some pages are missing - report the issue clearly
-                    progress.err(String.format("Processing incomplete: %d pages exist, %d pages missing (%s)", 
-                        existingPages, missingPages.size(), 
-                        missingPages.size() <= 10 ? missingPages.toString() : 
-                        missingPages.subList(0, 10) + "... and " + (missingPages.size() - 10) + " more"));
-                    return 1;
+            } else {
+                progress = new ProgressTracker("PDF OCR Processing", selection.count(), verbose);
+                progress.start();
+                processedPages = processWithPipeline(actualOutputDir, progress, log, selection, false);
+                // The run that finishes the document's last pages merges it
+                selectionDone = missingPages.isEmpty();
+                if (selectionDone) {
+                    progress.done();
+                    progress = new ProgressTracker("PDF merge", pdfInfo.pageCount(), verbose).start();
+                    mergeFinishedPages(actualOutputDir, progress, log);
                 }
             }
 
-            log.success("PDF", String.format("Processed %d pages", results.size()));
+            if (selectionDone && !isProcessingComplete(actualOutputDir, pdfFile.getName())) {
+                progress.done();
+                System.out.printf("Processed %d of %d selected pages; %d pages of the document are not finished yet (other shards, or --merge once they are)%n",
+                    processedPages, selection.count(), missingPages.size());
+                return 0;
+            }
 
-            // OCR processing and file generation was already completed in parallel architecture
-            // Create final combined files from the latest merged files
-            if (verbose) {
-                System.err.println("Creating final combined files...");
+            // The merge assembles the combined files once every page is in; otherwise report what is missing
+            if (!isProcessingComplete(actualOutputDir, pdfFile.getName())) {
+                // Pages the checkpoint journal does not have - report the issue clearly
+                int existingPages = (mergeOnly ? pdfInfo.pageCount() : selection.count()) - missingPages.size();
+                progress.err(String.format("Processing incomplete: %d pages exist, %d pages missing (%s)", 
+                    existingPages, missingPages.size(), 
+                    missingPages.size() <= 10 ? missingPages.toString() : 
+                    missingPages.subList(0, 10) + "... and " + (missingPages.size() - 10) + " more"));
+                return 1;
             }
+
+            log.success("PDF", String.format("Processed %d pages", processedPages));
             
             String baseName = pdfFile.getName();
-            
-            // Copy final merged files to expected output names - use TOTAL pages, not just newly processed pages
-            int totalPages = pdfInfo.pageCount();
-            Path finalMergedTxt = actualOutputDir.resolve(naming.range(1, totalPages, "txt"));
-            Path finalMergedXhtml = actualOutputDir.resolve(naming.range(1, totalPages, "xhtml"));
-            Path outputTxt = actualOutputDir.resolve(naming.combined("txt"));
-            Path outputXhtml = actualOutputDir.resolve(naming.combined("xhtml"));
-            
-            
-            // Create range files from individual pages if they don't exist
-            if (!Files.exists(finalMergedTxt) || !Files.exists(finalMergedXhtml)) {
-                createRangeFilesFromIndividualPages(actualOutputDir, baseName, totalPages);
-            }
-            
-            if (Files.exists(finalMergedTxt)) {
-                Files.copy(finalMergedTxt, outputTxt, StandardCopyOption.REPLACE_EXISTING);
-            }
-            if (Files.exists(finalMergedXhtml)) {
-                Files.copy(finalMergedXhtml, outputXhtml, StandardCopyOption.REPLACE_EXISTING);
-            }
-
-            // Size matrix report removed - preview images now use simple calculated DPI
 
             progress.done();
             System.out.println("Combined text file: " + baseName + ".oneocr.txt");
@@ -206,259 +319,526 @@ public class PdfOcrCommand implements Callable<Integer> {
                 e.printStackTrace();
             }
             return 1;
+        } finally {
+            // Parsed once for info and rendering; not kept open past this document
+            PdfDocumentCache.SHARED.closeIdle(pdfFile);
+            if (sessions != sharedSessions) {
+                sessions.close();
+            }
         }
     }
 
 
-    private List<PagedOcrResult> processWithParallelArchitecture(Path outputDir, ProgressTracker progress, LogFormatter log) throws Exception {
-        List<PagedOcrResult> results = new ArrayList<>();
-        
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            PDFRenderer pdfRenderer = new PDFRenderer(document);
-            int totalPages = document.getNumberOfPages();
-            
-            String pdfName = pdfFile.getName();
-            
-            if (verbose) {
-                System.err.printf("Processing %d pages with parallel OCR+WebP generation...%n", totalPages);
+    /**
+     * Per-page state carried through the pipeline stages
+     */
+    private static final class PageWork {
+        final int pageIndex;
+        final int pageNum;
+        final boolean done;          // outputs exist from an earlier run
+        PagedOcrResult rehydrated;   // result of an earlier run, read back instead of re-OCRed
+        CheckpointJournal.PageRecord record; // outputs to journal at commit (null if already journaled)
+        String textSource;           // where the text came from when not OCR (no render, no OCR, no preview)
+        PageResolutionPlanner.Plan plan; // this page's preview and OCR DPI
+        EmbeddedPageImage embedded;  // the page's own image, OCRed and/or copied as the preview
+        String previewExtension;
+        BufferedImage image;
+        BgraBuffer bgra;
+        String srcMD5;               // MD5 of the BGRA pixels, with --result-cache
+        OcrResultCache.Key cacheKey;
+        int width;                   // OCR input size
+        int height;
+        int pageWidth;               // page size in the outputs (the preview's pixels)
+        int pageHeight;
+        OcrResult ocrResult;
+        String xhtml;
+        CompletableFuture<byte[]> pendingPreview;
+        byte[] preview;
+
+        PageWork(int pageIndex, boolean done) {
+            this.pageIndex = pageIndex;
+            this.pageNum = pageIndex + 1;
+            this.done = done;
+        }
+
+        boolean skipsOcr() {
+            return rehydrated != null || textSource != null;
+        }
+
+        void releaseBuffer() {
+            if (bgra != null) {
+                bgra.close();
+                bgra = null;
             }
-            
-            // Initialize parallel processing
-            ExecutorService webpExecutor = Executors.newSingleThreadExecutor();
-            List<String> combinedTextLines = new ArrayList<>();
+        }
+    }
 
-            try {
-                for (int page = 0; page < pdfInfo.pageCount(); page++) {
-                    int pageNum = page + 1;
-                    
-                    // Check if this page is already processed (resumability)
-                    if (allPageFilesExist(pdfName, pageNum, outputDir)) {
-                        progress.inc();
-                        continue;
+    /**
+     * Staged page pipeline: render → convert → OCR → serialize → write, then ordered commit.
+     *
+     * Stages overlap across pages, so the OCR engine keeps working while earlier pages are
+     * encoded and written and later ones rendered. OCR runs on the session manager's worker
+     * threads (thread-local OneOCR sessions). Queues between stages are bounded by --queue-depth,
+     * so at most a few pages are held in memory regardless of the PDF size.
+     * 
+     * Pages are rendered once, at the OCR DPI planned for them (PageResolutionPlanner); the preview is an area-averaged downscale of the same
+     * raster to the preview DPI, and OCR boxes are scaled to it.
+     * Once a page is converted for OCR its preview bitmap is handed to the preview encoding service, which
+     * bounds waiting bitmaps by bytes (--preview-memory) rather than by page count, and either holds
+     * back the converter or spills to disk (--spill-previews) when encoding falls behind.
+     * 
+     * A scanned page (one full-page image) is OCRed from its embedded image at the scan's resolution
+     * rather than rendered (--always-render turns this off); pages with vector content, visible text
+     * or several images are rendered at their planned OCR DPI like any other page, their preview
+     * downscaled from that raster. With --preview-passthrough, a scanned page
+     * stored as JPEG/JPEG 2000 uses that stream as its preview. OCR boxes are scaled to the preview.
+     * With --text-layer, born-digital pages take their words from the PDF's text layer and skip
+     * rendering, OCR and preview; their outputs are marked with textSource.
+     * 
+     * Committed pages are appended to the combined outputs through ProgressiveMerge (constant work
+     * per page); the final combined files are assembled once, after the last page.
+     * 
+     * Pages finished by an earlier run flow through the same pipeline: the render stage reads their
+     * result back from the page sidecar (in parallel, in place of rendering) and the other stages
+     * pass them through, so they are merged in order with full word-level data and no OCR.
+     * Finished pages are known from the checkpoint journal; output folders from before the journal
+     * (or --verify) fall back to one directory listing.
+     *
+     * selection is the pages to process, or null for a merge pass that only reads finished pages back,
+     * up to the first unfinished one. Only a merging run (holding the merge lock) appends to the combined
+     * outputs; runs on part of the document (--pages, --shard) journal their pages in a journal of
+     * their own and skip pages finished by any run.
+     */
+    private int processWithPipeline(Path outputDir, ProgressTracker progress, LogFormatter log,
+                                    PageSelection selection, boolean merging) throws Exception {
+        String pdfName = pdfFile.getName();
+        int renderWorkers = renderThreads > 0 ? renderThreads : getRenderHandles();
+        int ocrThreads = sessions.workerCount();
+        
+        if (verbose) {
+            System.err.printf("Processing %d pages: %d render, %d convert, %d OCR, %d encode, %d write threads (queue depth %d)%n",
+                selection != null ? selection.count() : pdfInfo.pageCount(), renderWorkers, convertThreads, ocrThreads, encodeThreads, writeThreads, queueDepth);
+        }
+        
+        int[] processed = {0};
+        
+        var tag = selection != null ? selection.tag() : null;
+        var journalFile = outputDir.resolve(naming.combined(tag != null ? tag + ".journal" : "journal"));
+        var ownPreviews = sharedPreviews == null
+            ? new PreviewEncodingService(encodeThreads, previewMemoryMb * 1024L * 1024L, spillPreviews) : null;
+        var previews = sharedPreviews != null ? sharedPreviews : ownPreviews;
+        try (ownPreviews;
+             var journal = CheckpointJournal.open(journalFile, otherJournals(outputDir, journalFile));
+             var merge = merging ? ProgressiveMerge.open(outputDir, naming, pdfName) : null;
+             var renderers = new PdfRendererPool(pdfFile, Math.min(renderWorkers, getRenderHandles()),
+                 PdfDocumentCache.SHARED, memoryMode, renderBudget);
+             var pipeline = StagedPipeline.<PageWork>builder("pdf")
+                .queueDepth(queueDepth)
+                .stage("render", renderWorkers, work -> {
+                    if (work.done && (work.rehydrated = rehydrate(journal, outputDir, work)) != null) {
+                        return;
                     }
-                    
-                    // Render page to BufferedImage (in-memory, no disk I/O)
-                    BufferedImage image = pdfRenderer.renderImageWithDPI(page, calculatedTargetDpi, ImageType.RGB);
-                    
-                    // Main Thread: OCR Processing
-                    OcrResult ocrResult;
+                    if (useTextLayer && textLayer(renderers, work)) {
+                        return;
+                    }
+                    boolean copy = previewPassthrough && previewEncoder.enabled();
+                    if (copy || !alwaysRender) {
+                        work.embedded = embeddedImage(renderers, work.pageIndex, copy, !alwaysRender);
+                    }
+                    var embedded = work.embedded;
+                    boolean copied = embedded != null && embedded.content() != null;
+                    if (copied) {
+                        work.preview = embedded.content();
+                        passthroughPages.incrementAndGet();
+                    }
+                    work.previewExtension = copied ? embedded.extension() : previewEncoder.extension();
+                    var plan = work.plan = embedded != null ? planner.plan(embedded)
+                        : renderers.withDocument(document -> planner.plan(document.getPage(work.pageIndex)));
+                    if (embedded != null && embedded.pixels() != null) {
+                        work.image = planner.fit(embedded.pixels());
+                        directPages.incrementAndGet();
+                    } else {
+                        work.image = renderers.render(work.pageIndex, plan.ocrDpi());
+                    }
+                    if (verbose && plan.capped()) {
+                        System.err.printf("Page %d: over %.1f megapixels, rendered at %.0f DPI (preview %.0f DPI)%n",
+                            work.pageNum, maxMegapixels, plan.ocrDpi(), plan.previewDpi());
+                    }
+                    work.width = work.image.getWidth();
+                    work.height = work.image.getHeight();
+                    // The preview is the copied image, or the page at the preview DPI
+                    work.pageWidth = copied ? embedded.width() : embedded != null ? embedded.renderedWidth(plan.previewDpi()) : plan.previewSize(work.width);
+                    work.pageHeight = copied ? embedded.height() : embedded != null ? embedded.renderedHeight(plan.previewDpi()) : plan.previewSize(work.height);
+                })
+                .stage("convert", convertThreads, work -> {
+                    if (work.skipsOcr()) return;
+                    work.bgra = sessions.acquireBuffer(BgraConverter.bgraSize(work.image));
+                    BgraConverter.convert(work.image, work.bgra.segment());
+                    if (resultCache != null) {
+                        // Same pixels, same result: a page recognized before (in any PDF) is not OCRed again
+                        work.srcMD5 = OcrResultCache.md5(work.bgra.segment());
+                        work.cacheKey = resultCache.key(work.srcMD5, maxLines, work.width, work.height);
+                    }
+                    if (previewEncoder.enabled() && work.preview == null) {
+                        // Derived from the OCR raster (or scan), never rendered a second time
+                        var preview = ImageScaler.areaAverage(work.image, work.pageWidth, work.pageHeight);
+                        work.pendingPreview = previews.submit(preview, previewEncoder::encode); // may wait for the byte budget
+                    }
+                    work.image = null;
+                    work.embedded = null;
+                })
+                .stage("ocr", ocrThreads, work -> {
+                    if (work.skipsOcr()) return;
+                    // Queued on the shared OCR workers (one session each, kept for the run), with other files' pages
                     try {
-                        // Convert image to BGRA format for OCR API
-                        byte[] bgraData = OcrTool.convertToBGRA(image);
-                        
-                        // Initialize OCR API (will be moved outside loop later)
-                        try (var ocrApi = new OneOcrApi()) {
-                            var initOptions = ocrApi.createInitOptions();
-                            var pipeline = ocrApi.createPipeline(initOptions);
-                            var processOptions = ocrApi.createProcessOptions(maxLines);
-                            
-                            ocrResult = ocrApi.recognizeImage(pipeline, processOptions, 
-                                image.getWidth(), image.getHeight(), bgraData);
-                                
-                            processOptions.close();
-                            pipeline.close();
-                            initOptions.close();
+                        var cached = work.cacheKey != null ? resultCache.get(work.cacheKey) : null;
+                        if (cached != null) {
+                            work.ocrResult = cached.result();
+                            cachedPages.incrementAndGet();
+                            return;
+                        }
+                        work.ocrResult = sessions.call(ocrSource, session -> session.recognize(work.width, work.height, work.bgra.segment()));
+                        if (work.cacheKey != null) {
+                            resultCache.put(work.cacheKey, new OcrResultCache.Entry(work.ocrResult, work.width, work.height));
                         }
-                        combinedTextLines.add(ocrResult.text());
-                    } catch (Exception e) {
-                        progress.err(String.format("Page %d OCR failed: %s", pageNum, e.getMessage()));
-                        ocrResult = new OcrResult("", 0.0, List.of());
-                        combinedTextLines.add("");
+                    } finally {
+                        work.releaseBuffer();
                     }
-                    
-                    // Create PagedOcrResult using proper constructor
-                    String imageName = naming.page(pageNum, "webp");
-                    PageImage pageImage = new PageImage(pageNum, outputDir.resolve(imageName), 
-                        image.getWidth(), image.getHeight());
-                    PageOcrResult pageOcrResult = new PageOcrResult(pageNum, ocrResult, pageImage);
-                    results.add(PagedOcrResult.from(pageOcrResult));
-                    
-                    progress.inc();
-                    
-                    // Background Thread: WebP Generation
-                    final BufferedImage imageForWebP = image; // Final for lambda
-                    Future<?> webpFuture = webpExecutor.submit(() -> {
+                })
+                .stage("serialize", encodeThreads, work -> {
+                    if (work.rehydrated != null) return;
+                    if (minConfidence > 0.0 && work.textSource == null) {
+                        work.ocrResult = filterByConfidence(work.ocrResult, minConfidence);
+                    }
+                    if (work.width != work.pageWidth || work.height != work.pageHeight) {
+                        // OCRed at another resolution than the preview's
+                        work.ocrResult = OcrResults.scale(work.ocrResult,
+                            (double) work.pageWidth / work.width, (double) work.pageHeight / work.height);
+                        work.width = work.pageWidth;
+                        work.height = work.pageHeight;
+                    }
+                    work.xhtml = OcrToSemanticXHtml.toXHtml(work.ocrResult, previewName(work.pageNum, work.previewExtension),
+                        work.width, work.height, work.textSource, work.srcMD5);
+                })
+                .stage("write", writeThreads, work -> {
+                    if (work.rehydrated != null) return;
+                    var artifacts = new ArrayList<CheckpointJournal.Artifact>();
+                    if (work.pendingPreview != null) {
                         try {
-                            Path webpFile = outputDir.resolve(naming.page(pageNum, "webp"));
-                            atomicWriteWebP(webpFile, imageForWebP);
-                        } catch (IOException e) {
-                            System.err.printf("WebP generation failed for page %d: %s%n", pageNum, e.getMessage());
+                            work.preview = work.pendingPreview.get();
+                        } catch (java.util.concurrent.ExecutionException e) {
+                            throw e.getCause() instanceof Exception cause ? cause : e;
                         }
-                    });
+                        work.pendingPreview = null;
+                    }
+                    if (work.preview != null) {
+                        atomicWriteBytes(outputDir.resolve(naming.page(work.pageNum, work.previewExtension)), work.preview);
+                        artifacts.add(CheckpointJournal.Artifact.of(work.previewExtension, work.preview));
+                        work.preview = null;
+                    }
+                    byte[] txt = work.ocrResult.text().getBytes(StandardCharsets.UTF_8);
+                    byte[] json = PageSidecar.toJson(new PagedOcrResult(work.pageNum, work.ocrResult,
+                        previewName(work.pageNum, work.previewExtension), work.width, work.height, work.textSource, work.srcMD5))
+                        .getBytes(StandardCharsets.UTF_8);
+                    byte[] xhtml = work.xhtml.getBytes(StandardCharsets.UTF_8);
+                    atomicWriteBytes(outputDir.resolve(naming.page(work.pageNum, "txt")), txt);
+                    // Sidecar before the page XHTML, which marks the page as complete
+                    atomicWriteBytes(outputDir.resolve(naming.page(work.pageNum, "json")), json);
+                    atomicWriteBytes(outputDir.resolve(naming.page(work.pageNum, "xhtml")), xhtml);
+                    artifacts.add(CheckpointJournal.Artifact.of("txt", txt));
+                    artifacts.add(CheckpointJournal.Artifact.of("json", json));
+                    artifacts.add(CheckpointJournal.Artifact.of("xhtml", xhtml));
+                    work.record = new CheckpointJournal.PageRecord(work.pageNum, List.copyOf(artifacts));
+                    work.xhtml = null;
+                })
+                .commit((work, failure) -> {
+                    work.releaseBuffer();
+                    if (failure != null) {
+                        progress.err(String.format("Page %d failed: %s", work.pageNum, failure.getMessage()));
+                        return;
+                    }
                     
-                    // Write OCR results (atomic)
-                    try {
-                        Path txtFile = outputDir.resolve(naming.page(pageNum, "txt"));
-                        Path xhtmlFile = outputDir.resolve(naming.page(pageNum, "xhtml"));
-                        
-                        atomicWriteString(txtFile, ocrResult.text());
-                        
-                        String xhtmlContent = OcrToSemanticXHtml.toXHtml(
-                            ocrResult, imageName, image.getWidth(), image.getHeight());
-                        
-                        atomicWriteString(xhtmlFile, xhtmlContent);
-                        
-                    } catch (IOException e) {
-                        System.err.printf("Failed to write OCR files for page %d: %s%n", pageNum, e.getMessage());
+                    PagedOcrResult page;
+                    if (work.rehydrated != null) {
+                        page = work.rehydrated;
+                    } else {
+                        page = new PagedOcrResult(work.pageNum, work.ocrResult, previewName(work.pageNum, work.previewExtension),
+                            work.width, work.height, work.textSource, work.srcMD5);
+                        processed[0]++;
                     }
                     
-                    // Update merged files progressively
+                    // Journal the page, then append it to the combined outputs (pages arrive here in order)
                     try {
-                        Path mergedTxtPath = outputDir.resolve(naming.range(1, pageNum, "txt"));
-                        Path mergedXhtmlPath = outputDir.resolve(naming.range(1, pageNum, "xhtml"));
-                        
-                        String combinedText = String.join("\n", combinedTextLines);
-                        atomicWriteString(mergedTxtPath, combinedText);
-                        
-                        String combinedXhtml = OcrToSemanticXHtml.combineMultipleResults(results, pdfName);
-                        atomicWriteString(mergedXhtmlPath, combinedXhtml);
-                        
-                        // Clean up previous range file
-                        if (pageNum > 1) {
-                            Files.deleteIfExists(outputDir.resolve(naming.range(1, pageNum - 1, "txt")));
-                            Files.deleteIfExists(outputDir.resolve(naming.range(1, pageNum - 1, "xhtml")));
+                        if (work.record != null) {
+                            journal.record(work.record);
+                        }
+                        if (merge != null && merge.pagesMerged() == work.pageNum - 1) {
+                            merge.append(page);
                         }
-                        
                     } catch (IOException e) {
-                        System.err.printf("Failed to update merged files for page %d: %s%n", pageNum, e.getMessage());
+                        System.err.printf("Failed to merge page %d: %s%n", work.pageNum, e.getMessage());
                     }
                     
-                    // Wait for WebP completion before proceeding
-                    try {
-                        webpFuture.get();
-                    } catch (Exception e) {
-                        System.err.printf("WebP thread error for page %d: %s%n", pageNum, e.getMessage());
-                    }
-                    
-                    // Progress reporting is handled by ProgressTracker - don't interfere with progress bar
+                    progress.inc();
+                })
+                .start()) {
+            
+            // Only folders the journal does not cover yet are listed (one directory read, not a stat per page)
+            Set<Integer> listedPages = !journal.existed() || verify ? scanExistingPages(outputDir) : Set.of();
+            
+            for (int page = 0; page < pdfInfo.pageCount(); page++) {
+                // Already in the combined outputs (resumability)
+                if (merge != null && page < merge.pagesMerged()) {
+                    progress.inc();
+                    continue;
                 }
-                
-            } finally {
-                // Ensure WebP executor is properly shut down
-                webpExecutor.shutdown();
-                try {
-                    if (!webpExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
-                        webpExecutor.shutdownNow();
-                    }
-                } catch (InterruptedException e) {
-                    webpExecutor.shutdownNow();
-                    Thread.currentThread().interrupt();
+                boolean journaled = isJournaled(journal, page + 1);
+                boolean done = journaled || listedPages.contains(page + 1);
+                if (selection == null) {
+                    if (!done) break; // merge pass: the combined outputs continue from here next time
+                } else if (!selection.contains(page + 1)) {
+                    continue;
+                } else if (merge == null && journaled && !verify) {
+                    progress.inc(); // finished by this or another run, and merged by whoever merges
+                    continue;
                 }
+                // blocks while the pipeline is full
+                pipeline.submit(new PageWork(page, done));
             }
-        }
-        
-        return results;
-    }
-
-    private List<PageOcrResult> processAllImages(List<PageImage> pageImages) throws Exception {
-        List<PageOcrResult> results = new ArrayList<>();
-        
-        // Initialize OCR once for all images
-        try (var ocrApi = new OneOcrApi()) {
-            var initOptions = ocrApi.createInitOptions();
-            var pipeline = ocrApi.createPipeline(initOptions);
-            var processOptions = ocrApi.createProcessOptions(maxLines);
-
-            System.out.printf("Processing %d pages with OCR...%n", pageImages.size());
+            pipeline.finish();
             
-            Instant startTime = Instant.now();
+            if (verbose) {
+                System.err.print(pipeline.report());
+                System.err.print(previews.report());
+                if (previewPassthrough) {
+                    System.err.printf("  previews   %d copied from the PDF without re-encoding%n", passthroughPages.get());
+                }
+                System.err.printf("  ocr input  %d pages from their text layer (no OCR), %d from their embedded image, %d rendered%n",
+                    textLayerPages.get(), directPages.get(), processed[0] - textLayerPages.get() - directPages.get());
+                if (resultCache != null) {
+                    System.err.printf("  ocr cache  %d pages taken from the result cache (%d entries, %s)%n",
+                        cachedPages.get(), resultCache.entries(), formatBytes(resultCache.sizeBytes()));
+                }
+                System.err.printf("  heap       peak %s of %s max (--pdf-memory %s)%n",
+                    formatBytes(peakHeap()), formatBytes(Runtime.getRuntime().maxMemory()), memoryMode.label());
+            }
             
-            for (int i = 0; i < pageImages.size(); i++) {
-                PageImage pageImage = pageImages.get(i);
-                Instant pageStartTime = Instant.now();
-                
-                // Load image and convert to BGRA
-                BufferedImage image = ImageIO.read(pageImage.imagePath().toFile());
-                byte[] bgraData = OcrTool.convertToBGRA(image);
-                
-                // Perform OCR
-                OcrResult result = ocrApi.recognizeImage(pipeline, processOptions, 
-                    image.getWidth(), image.getHeight(), bgraData);
-                
-                // Filter by confidence if specified
-                if (minConfidence > 0.0) {
-                    result = filterByConfidence(result, minConfidence);
+            missingPages.clear();
+            for (int page = 1; page <= pdfInfo.pageCount(); page++) {
+                if ((selection == null || selection.contains(page)) && journal.page(page) == null) {
+                    missingPages.add(page);
                 }
-                
-                results.add(new PageOcrResult(pageImage.pageNumber(), result, pageImage));
-                
-                // Progress reporting
-                Instant pageEndTime = Instant.now();
-                Duration pageProcessingTime = Duration.between(pageStartTime, pageEndTime);
-                Duration totalElapsed = Duration.between(startTime, pageEndTime);
-                
-                // Calculate ETA
-                double avgTimePerPage = totalElapsed.toMillis() / (double)(i + 1);
-                int remainingPages = pageImages.size() - (i + 1);
-                Duration eta = Duration.ofMillis((long)(avgTimePerPage * remainingPages));
-                
-                // Show progress
-                double progressPercent = ((double)(i + 1) / pageImages.size()) * 100;
-                System.out.printf("  [%3.0f%%] Page %d/%d (%d words, %.1fs) - ETA: %s%n", 
-                    progressPercent,
-                    i + 1, 
-                    pageImages.size(),
-                    result.lines().stream().mapToInt(l -> l.words().size()).sum(),
-                    pageProcessingTime.toMillis() / 1000.0,
-                    formatDuration(eta));
             }
             
-            Duration totalTime = Duration.between(startTime, Instant.now());
-            System.out.printf("OCR processing completed in %s (avg %.1fs/page)%n", 
-                formatDuration(totalTime),
-                totalTime.toMillis() / 1000.0 / pageImages.size());
-
-            // Cleanup
-            processOptions.close();
-            pipeline.close();
-            initOptions.close();
+            // Assemble the final files once
+            if (merge != null && merge.pagesMerged() == pdfInfo.pageCount()) {
+                if (verbose) {
+                    System.err.println("Creating final combined files...");
+                }
+                merge.finish();
+            }
         }
         
-        return results;
+        return processed[0];
+    }
+    
+    /**
+     * Merge pass under the merge lock: append the pages finished by any run (e.g. all shards) to the
+     * combined outputs and complete them when every page is in; unfinished pages are left missing
+     */
+    private int mergeFinishedPages(Path outputDir, ProgressTracker progress, LogFormatter log) throws Exception {
+        try (var lock = lockMerge(outputDir)) {
+            if (isProcessingComplete(outputDir, pdfFile.getName())) {
+                missingPages.clear();
+                return 0; // merged by another run meanwhile
+            }
+            return processWithPipeline(outputDir, progress, log, null, true);
+        }
     }
 
-    private void combineTxtResults(List<PageOcrResult> results, Path outputFile) throws Exception {
-        StringBuilder combined = new StringBuilder();
-        
-        for (PageOcrResult result : results) {
-            String text = result.ocrResult().text().trim();
-            if (!text.isEmpty()) {
-                combined.append("=== Page ").append(result.pageNumber()).append(" ===\n");
-                combined.append(text);
-                if (!text.endsWith("\n")) {
-                    combined.append("\n");
+    private ProgressiveMerge.Lock lockMerge(Path outputDir) throws IOException {
+        return ProgressiveMerge.lock(outputDir, naming, () -> {
+            if (verbose) {
+                System.err.println("Waiting for another process merging " + pdfFile.getName() + "...");
+            }
+        });
+    }
+
+    /**
+     * Journals of other runs on this document in outputDir (shards, page selections, the whole-document run)
+     */
+    private List<Path> otherJournals(Path outputDir, Path own) throws IOException {
+        String prefix = naming.combined("");
+        try (var files = Files.list(outputDir)) {
+            return files.filter(file -> !file.equals(own))
+                .filter(file -> {
+                    var name = file.getFileName().toString();
+                    return name.startsWith(prefix) && name.endsWith(".journal");
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    /**
+     * Result of a page finished by an earlier run, from its sidecar; null when the page has to be
+     * processed again. A journaled page is trusted and only its sidecar (which is read anyway) is
+     * checked; with --verify, or for pages found by the directory listing, every output is read
+     * and checked, and the latter are journaled. Pages written before sidecars only recover their text.
+     */
+    private PagedOcrResult rehydrate(CheckpointJournal journal, Path outputDir, PageWork work) throws IOException {
+        int page = work.pageNum;
+        var record = journal.page(page);
+        try {
+            if (record != null && !verify) {
+                var sidecar = record.artifact("json");
+                if (sidecar == null) {
+                    return textOnly(page, Files.readAllBytes(outputDir.resolve(naming.page(page, "txt"))));
+                }
+                byte[] json = Files.readAllBytes(outputDir.resolve(naming.page(page, "json")));
+                if (!sidecar.matches(json)) {
+                    throw new IOException("sidecar does not match the journal");
                 }
-                combined.append("\n");
+                return PageSidecar.fromJson(new String(json, StandardCharsets.UTF_8));
+            }
+
+            // A journaled page must match its record; a listed one is journaled with what is on disk
+            var extensions = new ArrayList<String>();
+            if (record != null) {
+                record.artifacts().forEach(artifact -> extensions.add(artifact.extension()));
+            } else {
+                var preview = existingPreview(outputDir, page);
+                if (preview != null) extensions.add(preview);
+                else if (previewEncoder.enabled()) throw new IOException("no preview for page " + page);
+                extensions.add("txt");
+                // Pages written before sidecars existed have none
+                if (Files.exists(outputDir.resolve(naming.page(page, "json")))) extensions.add("json");
+                extensions.add("xhtml");
             }
+            var artifacts = new ArrayList<CheckpointJournal.Artifact>();
+            byte[] txt = null, json = null;
+            for (var extension : extensions) {
+                byte[] content = Files.readAllBytes(outputDir.resolve(naming.page(page, extension)));
+                if (record != null && !record.artifact(extension).matches(content)) {
+                    throw new IOException(naming.page(page, extension) + " does not match the journal");
+                }
+                artifacts.add(CheckpointJournal.Artifact.of(extension, content));
+                if (extension.equals("txt")) txt = content;
+                if (extension.equals("json")) json = content;
+            }
+            if (record == null) {
+                work.record = new CheckpointJournal.PageRecord(page, List.copyOf(artifacts));
+            }
+            return json != null ? PageSidecar.fromJson(new String(json, StandardCharsets.UTF_8)) : textOnly(page, txt);
+        } catch (IOException | JSONException e) {
+            System.err.printf("Page %d will be processed again: %s%n", page, e.getMessage());
+            journal.retract(page);
+            work.record = null;
+            return null;
         }
-        
-        Files.writeString(outputFile, combined.toString());
-        
-        if (verbose) {
-            System.err.printf("Combined text written to: %s (%d characters)%n", 
-                outputFile.getFileName(), combined.length());
+    }
+
+    private PagedOcrResult textOnly(int page, byte[] txt) {
+        var text = new String(txt, StandardCharsets.UTF_8);
+        return new PagedOcrResult(page, new OcrResult(text, 0.0, List.of()), previewName(page, previewEncoder.extension()), 0, 0);
+    }
+
+    /**
+     * Name the page XHTML refers to: the preview file, or the PDF page when previews are off
+     */
+    private String previewName(int page, String extension) {
+        return extension != null ? naming.page(page, extension) : pdfFile.getName() + "#page=" + page;
+    }
+
+    /**
+     * Take the page's text from the PDF text layer when it qualifies; false to OCR the page as usual
+     */
+    private boolean textLayer(PdfRendererPool renderers, PageWork work) throws InterruptedException {
+        PdfTextLayer.Page layer;
+        try {
+            layer = renderers.withDocument(document -> {
+                work.plan = planner.plan(document.getPage(work.pageIndex));
+                return PdfTextLayer.extract(document, work.pageIndex, work.plan.previewDpi());
+            });
+        } catch (IOException | RuntimeException e) {
+            if (verbose) {
+                System.err.printf("Page %d: text layer not readable (%s), OCRing instead%n", work.pageNum, e.getMessage());
+            }
+            return false;
         }
+        if (layer == null) {
+            return false;
+        }
+        work.textSource = PdfTextLayer.SOURCE;
+        work.ocrResult = layer.ocrResult();
+        work.width = work.pageWidth = layer.width();
+        work.height = work.pageHeight = layer.height();
+        textLayerPages.incrementAndGet();
+        return true;
     }
 
-    private void combineXhtmlResults(List<PageOcrResult> results, Path outputFile) throws Exception {
-        if (results.isEmpty()) {
-            return;
+    /**
+     * The page's single full-page image, or null to render the page as usual
+     */
+    private EmbeddedPageImage embeddedImage(PdfRendererPool renderers, int pageIndex, boolean copy, boolean decode) throws InterruptedException {
+        try {
+            return renderers.withDocument(document -> EmbeddedPageImage.find(document, pageIndex, copy, decode));
+        } catch (IOException | RuntimeException e) {
+            if (verbose) {
+                System.err.printf("Page %d: embedded image not usable (%s), rendering instead%n", pageIndex + 1, e.getMessage());
+            }
+            return null;
         }
+    }
 
-        // Use enhanced XHTML merger
-        String combinedXhtml = OcrToSemanticXHtml.combineMultipleResults(
-            results.stream()
-                .map(PagedOcrResult::from)
-                .toList(),
-            pdfFile.getName()
-        );
-        
-        Files.writeString(outputFile, combinedXhtml);
-        
-        if (verbose) {
-            System.err.printf("Combined XHTML written to: %s (%d bytes)%n", 
-                outputFile.getFileName(), combinedXhtml.length());
+    /**
+     * Preview extensions this run accepts: the --image-format one, and with passthrough the embedded image formats
+     */
+    private List<String> previewExtensions() {
+        if (!previewEncoder.enabled()) {
+            return List.of();
+        }
+        var extensions = new ArrayList<>(List.of(previewEncoder.extension()));
+        if (previewPassthrough) {
+            EmbeddedPageImage.EXTENSIONS.stream().filter(e -> !extensions.contains(e)).forEach(extensions::add);
+        }
+        return extensions;
+    }
+
+    private String existingPreview(Path outputDir, int page) {
+        return previewExtensions().stream()
+            .filter(extension -> Files.exists(outputDir.resolve(naming.page(page, extension))))
+            .findFirst().orElse(null);
+    }
+
+    /**
+     * Journaled with every output this run would write (a preview in another format does not count).
+     * Text-layer pages have no preview, so on resume they are extracted again, which takes milliseconds.
+     */
+    private boolean isJournaled(CheckpointJournal journal, int page) {
+        var record = journal.page(page);
+        return record != null && (!previewEncoder.enabled()
+            || previewExtensions().stream().anyMatch(extension -> record.artifact(extension) != null));
+    }
+
+    /**
+     * Pages whose outputs are on disk, found with one directory listing; only listed pages are stat'ed
+     */
+    private Set<Integer> scanExistingPages(Path outputDir) throws IOException {
+        Set<String> names;
+        try (var files = Files.list(outputDir)) {
+            names = new HashSet<>(files.map(file -> file.getFileName().toString()).toList());
+        }
+        var pages = new HashSet<Integer>();
+        for (int page = 1; page <= pdfInfo.pageCount(); page++) {
+            int p = page;
+            if (names.contains(naming.page(page, "xhtml"))
+                    && (!previewEncoder.enabled() || previewExtensions().stream().anyMatch(e -> names.contains(naming.page(p, e))))
+                    && names.contains(naming.page(page, "txt")) && allPageFilesExist(pdfFile.getName(), page, outputDir)) {
+                pages.add(page);
+            }
         }
+        return pages;
     }
 
     private OcrResult filterByConfidence(OcrResult result, double minConfidence) {
@@ -490,17 +870,24 @@ public class PdfOcrCommand implements Callable<Integer> {
         return new OcrResult(filteredFullText, result.textAngle(), filteredLines);
     }
 
-    private String formatDuration(Duration duration) {
-        long seconds = duration.getSeconds();
-        if (seconds < 60) {
-            return seconds + "s";
-        } else if (seconds < 3600) {
-            return String.format("%dm %ds", seconds / 60, seconds % 60);
-        } else {
-            return String.format("%dh %dm %ds", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+    private static void resetPeakHeap() {
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
         }
     }
 
+    // Sum of the heap pools' peaks since resetPeakHeap(), an upper bound of the heap actually used at once
+    private static long peakHeap() {
+        long peak = 0;
+        for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
 
     private String formatBytes(long bytes) {
         if (bytes < 1024) return bytes + "B";
@@ -521,26 +908,21 @@ public class PdfOcrCommand implements Callable<Integer> {
     }
     
     /**
-     * Atomic file write using temp+rename pattern
+     * Atomic binary file write using temp+rename pattern. The content is forced to disk before the
+     * rename, so a page the journal records is never left empty or torn by an OS crash (the journal
+     * forces the directory, and with it the rename, before the record).
      */
-    private void atomicWriteString(Path outputPath, String content) throws IOException {
+    private void atomicWriteBytes(Path outputPath, byte[] content) throws IOException {
         Path tempFile = outputPath.resolveSibling(outputPath.getFileName() + ".tmp");
         try {
-            Files.writeString(tempFile, content);
-            Files.move(tempFile, outputPath, StandardCopyOption.ATOMIC_MOVE);
-        } catch (Exception e) {
-            Files.deleteIfExists(tempFile);
-            throw e;
-        }
-    }
-    
-    /**
-     * Atomic WebP file write using temp+rename pattern
-     */
-    private void atomicWriteWebP(Path outputPath, BufferedImage image) throws IOException {
-        Path tempFile = outputPath.resolveSibling(outputPath.getFileName() + ".tmp");
-        try {
-            ImageIO.write(image, "webp", tempFile.toFile());
+            try (var channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
             Files.move(tempFile, outputPath, StandardCopyOption.ATOMIC_MOVE);
         } catch (Exception e) {
             Files.deleteIfExists(tempFile);
@@ -552,24 +934,25 @@ public class PdfOcrCommand implements Callable<Integer> {
      * Check if all page files exist and are non-empty
      */
     private boolean allPageFilesExist(String pdfName, int pageNum, Path outputDir) {
-        Path webpFile = outputDir.resolve(naming.page(pageNum, "webp"));
+        var preview = existingPreview(outputDir, pageNum);
+        Path previewFile = previewEncoder.enabled() ? outputDir.resolve(naming.page(pageNum, preview != null ? preview : previewEncoder.extension())) : null;
         Path txtFile = outputDir.resolve(naming.page(pageNum, "txt"));
         Path xhtmlFile = outputDir.resolve(naming.page(pageNum, "xhtml"));
         
         try {
-            boolean webpExists = Files.exists(webpFile);
-            long webpSize = webpExists ? Files.size(webpFile) : 0;
+            boolean previewExists = previewFile == null || Files.exists(previewFile);
+            long previewSize = previewFile == null ? 1 : previewExists ? Files.size(previewFile) : 0;
             boolean txtExists = Files.exists(txtFile);
             boolean xhtmlExists = Files.exists(xhtmlFile);
             long xhtmlSize = xhtmlExists ? Files.size(xhtmlFile) : 0;
             
-            boolean webpOk = webpExists && webpSize > 0;
+            boolean previewOk = previewExists && previewSize > 0;
             boolean txtOk = txtExists;
             boolean xhtmlOk = xhtmlExists && xhtmlSize > 0;
-            boolean allOk = webpOk && txtOk && xhtmlOk;
+            boolean allOk = previewOk && txtOk && xhtmlOk;
             
             
-            // WebP must exist and have content (image preview)
+            // Preview must exist and have content (unless previews are off)
             // TXT only needs to exist (empty pages = 0 bytes, which is valid)
             // XHTML must exist and have content (even empty pages have XHTML structure)
             return allOk;
@@ -583,309 +966,19 @@ public class PdfOcrCommand implements Callable<Integer> {
      * Check if entire PDF processing is already complete
      */
     private boolean isProcessingComplete(Path outputDir, String pdfName) {
-        Path finalTxtFile = outputDir.resolve(naming.range(1, pdfInfo.pageCount(), "txt"));
-        Path finalXhtmlFile = outputDir.resolve(naming.range(1, pdfInfo.pageCount(), "xhtml"));
-        
+        // Combined files are only written once every page is merged; range files are from older versions
+        return filesComplete(outputDir.resolve(naming.combined("txt")), outputDir.resolve(naming.combined("xhtml")))
+            || filesComplete(outputDir.resolve(naming.range(1, pdfInfo.pageCount(), "txt")),
+                outputDir.resolve(naming.range(1, pdfInfo.pageCount(), "xhtml")));
+    }
+    
+    private boolean filesComplete(Path txtFile, Path xhtmlFile) {
         try {
-            return Files.exists(finalTxtFile) && Files.size(finalTxtFile) > 0 &&
-                   Files.exists(finalXhtmlFile) && Files.size(finalXhtmlFile) > 0;
+            return Files.exists(txtFile) && Files.exists(xhtmlFile) && Files.size(xhtmlFile) > 0;
         } catch (IOException e) {
             return false;
         }
     }
 
-    private int analyzeNativeDpi(PDDocument document, int pageIndex) {
-        try {
-            PDPage page = document.getPage(pageIndex);
-            PDResources resources = page.getResources();
-            
-            if (resources == null) {
-                return 150; // Default for text-only pages
-            }
-            
-            // Get page dimensions in points (1/72 inch)
-            float pageWidthInches = page.getBBox().getWidth() / 72f;
-            float pageHeightInches = page.getBBox().getHeight() / 72f;
-            
-            int maxDpi = 150; // Default minimum for text clarity
-            
-            // Analyze all XObject images on the page
-            for (var name : resources.getXObjectNames()) {
-                PDXObject xObject = resources.getXObject(name);
-                if (xObject instanceof PDImageXObject imageXObject) {
-                    // Calculate effective DPI based on image size vs display size
-                    int imageWidth = imageXObject.getWidth();
-                    int imageHeight = imageXObject.getHeight();
-                    
-                    // Estimate DPI (assuming image covers most of the page)
-                    int dpiX = Math.round(imageWidth / pageWidthInches);
-                    int dpiY = Math.round(imageHeight / pageHeightInches);
-                    int imageDpi = Math.max(dpiX, dpiY);
-                    
-                    maxDpi = Math.max(maxDpi, imageDpi);
-                    
-                    if (verbose) {
-                        System.err.printf("  Found image: %dx%d → ~%d DPI%n", 
-                            imageWidth, imageHeight, imageDpi);
-                    }
-                }
-            }
-            
-            // Cap at reasonable maximum
-            return Math.min(maxDpi, 300);
-            
-        } catch (Exception e) {
-            if (verbose) {
-                System.err.println("  Warning: Could not analyze native DPI: " + e.getMessage());
-            }
-            return 200; // Safe fallback
-        }
-    }
-
-
-    /**
-     * EXPERIMENTAL Multi-threaded OCR processing - distributes pages across multiple OCR worker threads
-     * 
-     * ⚠️ THREADING LIMITATION WARNING ⚠️
-     * The native Windows 11 OneOCR library has thread safety issues that can cause
-     * "Failed to recognize image data" errors when using multiple threads.
-     * 
-     * RECOMMENDATION: Use --threads 1 for reliable OCR processing.
-     * Multi-threading provides minimal performance benefit for OCR operations since:
-     * - OCR model loading is the main bottleneck (done once)  
-     * - Native OCR execution is already optimized
-     * - File I/O is not the limiting factor
-     * 
-     * If you must use multi-threading, expect some page failures and be prepared
-     * to re-run failed pages with --threads 1.
-     */
-    private List<PagedOcrResult> processWithMultiThreadedOcr(Path outputDir, ProgressTracker progress, LogFormatter log) throws Exception {
-        if (verbose) {
-            System.err.printf("Processing %d pages with %d OCR threads...%n", pdfInfo.pageCount(), getThreads());
-        }
-        
-        // Initialize PDF renderer (thread-safe for reading)
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            this.pdfRenderer = new PDFRenderer(document);
-            
-            // Thread-safe result collection
-            ConcurrentHashMap<Integer, PagedOcrResult> results = new ConcurrentHashMap<>();
-            
-            // Work queue for page assignments
-            BlockingQueue<Integer> pageQueue = new LinkedBlockingQueue<>();
-            for (int page = 0; page < pdfInfo.pageCount(); page++) {
-                pageQueue.offer(page);
-            }
-            
-            // CRITICAL FIX: OneOCR requires thread-local initialization!
-            // Initialize OCR instances INSIDE worker threads, not in main thread.
-            // (Confirmed by ThreadInitializationTest: main thread init → worker thread use = 0% success)
-        
-        // Create OCR worker threads
-        ExecutorService ocrExecutor = Executors.newFixedThreadPool(getThreads());
-        ExecutorService webpExecutor = Executors.newCachedThreadPool();
-        
-        List<Future<Void>> ocrTasks = new ArrayList<>();
-        
-        // Start OCR worker threads
-        for (int threadId = 0; threadId < getThreads(); threadId++) {
-            final int workerId = threadId;
-            
-            Future<Void> task = ocrExecutor.submit(() -> {
-                String pdfName = pdfFile.getName();
-                
-                // Initialize OCR INSIDE worker thread (thread-local requirement)
-                try (var api = new OneOcrApi()) {
-                    var initOptions = api.createInitOptions();
-                    var pipeline = api.createPipeline(initOptions);
-                    var processOptions = api.createProcessOptions(maxLines);
-                    
-                    try {
-                        // Process pages from the queue using thread-local OCR instance
-                        Integer page;
-                        while ((page = pageQueue.poll()) != null) {
-                            int pageNum = page + 1;
-                            
-                            try {
-                                // Check if already processed (resumability)
-                                if (allPageFilesExist(pdfName, pageNum, outputDir)) {
-                                    progress.inc();
-                                    continue;
-                                }
-                                
-                                // Render page to image (thread-safe PDFBox operation)
-                                BufferedImage image;
-                                synchronized (pdfRenderer) {
-                                    image = pdfRenderer.renderImageWithDPI(page, calculatedTargetDpi, ImageType.RGB);
-                                }
-                                
-                                // OCR processing using thread-local instance (no cross-thread sharing)
-                                byte[] bgraData = OcrTool.convertToBGRA(image);
-                                OcrResult ocrResult = api.recognizeImage(pipeline, processOptions, 
-                                    image.getWidth(), image.getHeight(), bgraData);
-                            
-                            // Create PageImage with proper WebP path
-                            String imageName = naming.page(pageNum, "webp");
-                            Path webpPath = outputDir.resolve(imageName);
-                            PageImage pageImage = new PageImage(pageNum, webpPath, image.getWidth(), image.getHeight());
-                            
-                            // Create result object
-                            PagedOcrResult pagedResult = PagedOcrResult.from(
-                                new PageOcrResult(pageNum, ocrResult, pageImage));
-                            results.put(pageNum, pagedResult);
-                            
-                            // Background WebP generation (optional)
-                            final BufferedImage imageForWebP = image;
-                            webpExecutor.submit(() -> {
-                                try {
-                                    generateWebPForPage(pageNum, imageForWebP, outputDir, pdfName);
-                                } catch (Exception e) {
-                                    if (verbose) {
-                                        System.err.printf("WebP generation failed for page %d: %s%n", pageNum, e.getMessage());
-                                    }
-                                }
-                            });
-                            
-                            // Write OCR files
-                            writeOcrFilesForPage(pageNum, ocrResult, image, outputDir, pdfName);
-                            
-                            // Update progress (thread-safe)
-                            progress.inc();
-                            
-                        } catch (Exception e) {
-                            progress.err(String.format("Page %d failed: %s", pageNum, e.getMessage()));
-                        }
-                    }
-                    
-                    } catch (Exception e) {
-                        log.error("OCR", "Worker " + workerId + " failed: " + e.getMessage());
-                    } finally {
-                        // Cleanup OCR resources within worker thread  
-                        try {
-                            processOptions.close();
-                            pipeline.close();
-                            initOptions.close();
-                        } catch (Exception e) {
-                            if (verbose) {
-                                System.err.printf("Failed to cleanup OCR resources in worker %d: %s%n", workerId, e.getMessage());
-                            }
-                        }
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("OCR", "Worker " + workerId + " OCR setup failed: " + e.getMessage());
-                }
-                
-                return null;
-            });
-            ocrTasks.add(task);
-        }
-        
-        // Wait for all OCR tasks to complete
-        try {
-            for (Future<Void> task : ocrTasks) {
-                task.get(); // Wait for completion
-            }
-        } finally {
-            ocrExecutor.shutdown();
-            webpExecutor.shutdown();
-            
-            // OCR resources are cleaned up within each worker thread (thread-local lifecycle)
-            
-            // Ensure thread pool cleanup
-            try {
-                if (!ocrExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
-                    ocrExecutor.shutdownNow();
-                }
-                if (!webpExecutor.awaitTermination(60, TimeUnit.SECONDS)) {
-                    webpExecutor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
-        
-        // Convert results to ordered list
-        List<PagedOcrResult> orderedResults = new ArrayList<>();
-        for (int pageNum = 1; pageNum <= pdfInfo.pageCount(); pageNum++) {
-            PagedOcrResult result = results.get(pageNum);
-            if (result != null) {
-                orderedResults.add(result);
-            }
-        }
-        
-        return orderedResults;
-        } // End of try-with-resources for PDDocument
-    }
-
-    /**
-     * Generate WebP image for a specific page
-     */
-    private void generateWebPForPage(int pageNum, BufferedImage image, Path outputDir, String pdfName) throws IOException {
-        Path webpFile = outputDir.resolve(naming.page(pageNum, "webp"));
-        atomicWriteWebP(webpFile, image);
-    }
-    
-    /**
-     * Write OCR text and XHTML files for a specific page  
-     */
-    private void writeOcrFilesForPage(int pageNum, OcrResult ocrResult, BufferedImage image, Path outputDir, String pdfName) throws IOException {
-        Path txtFile = outputDir.resolve(naming.page(pageNum, "txt"));
-        Path xhtmlFile = outputDir.resolve(naming.page(pageNum, "xhtml"));
-        
-        atomicWriteString(txtFile, ocrResult.text());
-        
-        String imageName = naming.page(pageNum, "webp");
-        String xhtmlContent = OcrToSemanticXHtml.toXHtml(
-            ocrResult, imageName, image.getWidth(), image.getHeight());
-        
-        atomicWriteString(xhtmlFile, xhtmlContent);
-    }
-    
-    /**
-     * Create range files by combining existing individual page files
-     */
-    private void createRangeFilesFromIndividualPages(Path outputDir, String pdfName, int totalPages) throws IOException {
-        // Combine all individual TXT files into final range file
-        List<String> allTextLines = new ArrayList<>();
-        for (int page = 1; page <= totalPages; page++) {
-            Path individualTxtFile = outputDir.resolve(naming.page(page, "txt"));
-            try {
-                if (Files.exists(individualTxtFile)) {
-                    String pageText = Files.readString(individualTxtFile, StandardCharsets.UTF_8);
-                    allTextLines.add(pageText);
-                } else {
-                    allTextLines.add(""); // Empty page
-                }
-            } catch (IOException e) {
-                allTextLines.add(""); // Failed to read, treat as empty
-            }
-        }
-        
-        // Create final range TXT file
-        Path finalRangeTxt = outputDir.resolve(naming.range(1, totalPages, "txt"));
-        String combinedText = String.join("\n", allTextLines);
-        atomicWriteString(finalRangeTxt, combinedText);
-        
-        // Create final range XHTML file by reading all individual XHTML files
-        List<PagedOcrResult> allPageResults = new ArrayList<>();
-        for (int page = 1; page <= totalPages; page++) {
-            Path individualXhtmlFile = outputDir.resolve(naming.page(page, "xhtml"));
-            if (Files.exists(individualXhtmlFile)) {
-                // For existing pages, create a placeholder result (we don't need full OCR data for final combination)
-                OcrResult pageOcrResult = new OcrResult(allTextLines.get(page - 1), 0.0, List.of());
-                String imageName = naming.page(page, "webp");
-                Path imagePath = outputDir.resolve(imageName);
-                PageImage pageImage = new PageImage(page, imagePath, 0, 0); // Width/height not needed for final combination
-                PageOcrResult pageResult = new PageOcrResult(page, pageOcrResult, pageImage);
-                allPageResults.add(PagedOcrResult.from(pageResult));
-            }
-        }
-        
-        String combinedXhtml = OcrToSemanticXHtml.combineMultipleResults(allPageResults, pdfName);
-        Path finalRangeXhtml = outputDir.resolve(naming.range(1, totalPages, "xhtml"));
-        atomicWriteString(finalRangeXhtml, combinedXhtml);
-    }
-
 
 }
\ No newline at end of file
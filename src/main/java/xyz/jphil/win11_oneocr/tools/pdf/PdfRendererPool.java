@@ -0,0 +1,204 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of independent PDDocument/PDFRenderer handles for one PDF.
+ *
+ * PDFBox documents are not safe for concurrent rendering, so sharing one renderer forces
+ * every page through a single lock. Each handle here is a separate document of the file, leased
+ * from the {@link PdfDocumentCache} (so the document PdfInfoUtil parsed is reused rather than loaded
+ * again, and handles stay parsed for the next run on the file), which lets up to maxHandles pages
+ * rasterize in parallel. Handles are leased lazily on first demand, so a run never holds more
+ * documents than it actually renders concurrently; close() returns them to the cache.
+ *
+ * Pools of several files rendered at once (a folder run) can share a budget of open documents: a
+ * pool waits for a slot for its first handle and only opens more while slots are free, otherwise
+ * its renders wait for its own handles. Slots are returned on close().
+ *
+ * <pre>
+ * try (var renderers = new PdfRendererPool(pdfFile, 4)) {
+ *     BufferedImage image = renderers.render(pageIndex, dpi);   // safe from any thread
+ * }
+ * </pre>
+ */
+public class PdfRendererPool implements AutoCloseable {
+
+    private final File pdfFile;
+    private final PdfDocumentCache cache;
+    private final PdfMemoryMode memoryMode;
+    private final int maxHandles;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<Handle> idle = new LinkedBlockingDeque<>();
+    private final List<Handle> opened = new ArrayList<>();
+    private final AtomicInteger openedCount = new AtomicInteger(0);
+    private final Semaphore budget; // documents open across pools, or null
+    private int budgeted;           // slots of the budget this pool holds (guarded by opened)
+    private volatile boolean closed;
+
+    private record Handle(PdfDocumentCache.Lease lease, PDDocument document, PDFRenderer renderer) {}
+
+    /**
+     * Work on a pooled document, e.g. inspecting a page's content instead of rendering it
+     */
+    @FunctionalInterface
+    public interface DocumentTask<T> {
+        T apply(PDDocument document) throws IOException;
+    }
+
+    public PdfRendererPool(File pdfFile, int maxHandles) {
+        this(pdfFile, maxHandles, PdfMemoryMode.HEAP);
+    }
+
+    public PdfRendererPool(File pdfFile, int maxHandles, PdfMemoryMode memoryMode) {
+        this(pdfFile, maxHandles, PdfDocumentCache.SHARED, memoryMode);
+    }
+
+    public PdfRendererPool(File pdfFile, int maxHandles, PdfDocumentCache cache, PdfMemoryMode memoryMode) {
+        this(pdfFile, maxHandles, cache, memoryMode, null);
+    }
+
+    /**
+     * Pool whose open documents also count against a budget shared with other pools (null for none)
+     */
+    public PdfRendererPool(File pdfFile, int maxHandles, PdfDocumentCache cache, PdfMemoryMode memoryMode, Semaphore budget) {
+        if (maxHandles < 1) {
+            throw new IllegalArgumentException("At least one render handle is required: " + maxHandles);
+        }
+        this.pdfFile = pdfFile;
+        this.cache = cache;
+        this.memoryMode = memoryMode;
+        this.maxHandles = maxHandles;
+        this.permits = new Semaphore(maxHandles);
+        this.budget = budget;
+    }
+
+    /**
+     * Render a page (0-based) at the given DPI on a handle of its own, blocking while all handles are busy
+     */
+    public BufferedImage render(int pageIndex, float dpi) throws IOException, InterruptedException {
+        return render(pageIndex, dpi, ImageType.RGB);
+    }
+
+    public BufferedImage render(int pageIndex, float dpi, ImageType imageType) throws IOException, InterruptedException {
+        permits.acquire();
+        try {
+            var handle = borrow();
+            try {
+                return handle.renderer().renderImageWithDPI(pageIndex, dpi, imageType);
+            } finally {
+                idle.offerFirst(handle);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Run a task on a handle of its own, like render() (the document must not be kept beyond the task)
+     */
+    public <T> T withDocument(DocumentTask<T> task) throws IOException, InterruptedException {
+        permits.acquire();
+        try {
+            var handle = borrow();
+            try {
+                return task.apply(handle.document());
+            } finally {
+                idle.offerFirst(handle);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Handles opened so far (never more than maxHandles)
+     */
+    public int openedHandles() {
+        return openedCount.get();
+    }
+
+    public int maxHandles() {
+        return maxHandles;
+    }
+
+    // Caller holds a permit, so either an idle handle exists or fewer than maxHandles are open
+    private Handle borrow() throws IOException, InterruptedException {
+        var handle = idle.pollFirst();
+        if (handle != null) {
+            return handle;
+        }
+        if (!reserveBudget()) {
+            return idle.takeFirst(); // the shared budget is spent: wait for one of this file's handles
+        }
+        PdfDocumentCache.Lease lease;
+        try {
+            lease = cache.acquire(pdfFile, memoryMode);
+        } catch (IOException | RuntimeException e) {
+            releaseBudget(1);
+            throw e;
+        }
+        synchronized (opened) {
+            if (closed) {
+                lease.close();
+                releaseBudget(1);
+                throw new IllegalStateException("Renderer pool is closed");
+            }
+            handle = new Handle(lease, lease.document(), new PDFRenderer(lease.document()));
+            opened.add(handle);
+            openedCount.incrementAndGet();
+            return handle;
+        }
+    }
+
+    // The first handle waits for a slot (other files finish); more are opened only while slots are free
+    private boolean reserveBudget() throws InterruptedException {
+        if (budget == null) {
+            return true;
+        }
+        if (!budget.tryAcquire()) {
+            synchronized (opened) {
+                if (budgeted > 0) {
+                    return false;
+                }
+            }
+            budget.acquire(); // not under the lock, so close() and other borrowers are not held up
+        }
+        synchronized (opened) {
+            budgeted++;
+        }
+        return true;
+    }
+
+    private void releaseBudget(int slots) {
+        if (budget == null) return;
+        synchronized (opened) {
+            budgeted -= slots;
+            budget.release(slots);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (opened) {
+            closed = true;
+            for (var handle : opened) {
+                handle.lease().close();
+            }
+            opened.clear();
+            idle.clear();
+            releaseBudget(budgeted);
+        }
+    }
+}
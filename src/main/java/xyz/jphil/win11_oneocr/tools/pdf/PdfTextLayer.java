@@ -0,0 +1,201 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+import xyz.jphil.win11_oneocr.BoundingBox;
+import xyz.jphil.win11_oneocr.OcrLine;
+import xyz.jphil.win11_oneocr.OcrResult;
+import xyz.jphil.win11_oneocr.OcrWord;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static xyz.jphil.win11_oneocr.OcrWord.ocrWord;
+
+/**
+ * Text of a born-digital page read from the PDF's own text layer, in the shape OCR produces.
+ *
+ * A page qualifies when its visible text is long enough and readable (fonts with broken or missing
+ * Unicode mappings extract as control, replacement or private-use characters) and images cover at
+ * most a quarter of it, since text inside images would otherwise be lost. Invisible text, such as the
+ * OCR layer of a scan, does not count. Words and lines come from PDFTextStripper's text positions,
+ * with boxes in pixels of the page rendered at the given DPI and confidence 1.
+ */
+public class PdfTextLayer {
+
+    /**
+     * Provenance recorded for pages whose text came from the text layer (the textSource attribute)
+     */
+    public static final String SOURCE = "pdfTextLayer";
+
+    static final int MIN_CHARACTERS = 20;
+    static final double MIN_READABLE_RATIO = 0.95;
+    static final double MAX_IMAGE_COVERAGE = 0.25;
+
+    /**
+     * The page's text with its size in pixels at the DPI the boxes are scaled to
+     */
+    public record Page(OcrResult ocrResult, int width, int height) {}
+
+    /**
+     * Text layer of the page (0-based), or null when the page has to be OCRed
+     */
+    public static Page extract(PDDocument document, int pageIndex, float dpi) throws IOException {
+        var page = document.getPage(pageIndex);
+        var images = new ImageCoverage(page);
+        images.processPage(page);
+        if (images.coverage() > MAX_IMAGE_COVERAGE) {
+            return null;
+        }
+
+        float scale = dpi / 72f;
+        var stripper = new WordCollector(scale);
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(pageIndex + 1);
+        stripper.setEndPage(pageIndex + 1);
+        stripper.writeText(document, Writer.nullWriter());
+        stripper.endLine();
+        if (stripper.characters < MIN_CHARACTERS || stripper.readable < stripper.characters * MIN_READABLE_RATIO) {
+            return null;
+        }
+
+        var lines = stripper.lines;
+        var text = String.join("\n", lines.stream().map(OcrLine::text).toList());
+        boolean sideways = page.getRotation() % 180 != 0;
+        var box = page.getCropBox();
+        float width = sideways ? box.getHeight() : box.getWidth();
+        float height = sideways ? box.getWidth() : box.getHeight();
+        return new Page(new OcrResult(text, 0.0, List.copyOf(lines)),
+            (int) Math.max(Math.floor(width * scale), 1), (int) Math.max(Math.floor(height * scale), 1));
+    }
+
+    static boolean isReadable(int codePoint) {
+        int type = Character.getType(codePoint);
+        return codePoint != 0xFFFD && !Character.isISOControl(codePoint)
+            && type != Character.PRIVATE_USE && type != Character.UNASSIGNED && type != Character.SURROGATE;
+    }
+
+    /**
+     * Collects visible glyphs into words (split at whitespace and at the stripper's word gaps) and lines
+     */
+    private static final class WordCollector extends PDFTextStripper {
+
+        final float scale;
+        final List<OcrLine> lines = new ArrayList<>();
+        final List<OcrWord> lineWords = new ArrayList<>();
+        final List<TextPosition> word = new ArrayList<>();
+        int characters;
+        int readable;
+
+        WordCollector(float scale) {
+            this.scale = scale;
+        }
+
+        @Override
+        protected void processTextPosition(TextPosition text) {
+            var mode = getGraphicsState().getTextState().getRenderingMode();
+            if (mode.isFill() || mode.isStroke()) {
+                super.processTextPosition(text);
+            }
+        }
+
+        @Override
+        protected void writeString(String text, List<TextPosition> textPositions) {
+            for (var position : textPositions) {
+                var unicode = position.getUnicode();
+                if (unicode == null || unicode.isBlank()) {
+                    endWord();
+                    continue;
+                }
+                unicode.codePoints().forEach(c -> {
+                    characters++;
+                    if (isReadable(c)) readable++;
+                });
+                word.add(position);
+            }
+            endWord();
+        }
+
+        @Override
+        protected void writeLineSeparator() {
+            endLine();
+        }
+
+        void endWord() {
+            if (word.isEmpty()) return;
+            var text = new StringBuilder();
+            float left = Float.MAX_VALUE, top = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+            for (var position : word) {
+                text.append(position.getUnicode());
+                float height = position.getHeight() > 0 ? position.getHeight() : position.getFontSizeInPt();
+                left = Math.min(left, position.getX());
+                right = Math.max(right, position.getX() + position.getWidth());
+                top = Math.min(top, position.getY() - height);
+                bottom = Math.max(bottom, position.getY());
+            }
+            lineWords.add(ocrWord(text.toString(), box(left, top, right, bottom), 1.0, ""));
+            word.clear();
+        }
+
+        void endLine() {
+            endWord();
+            if (lineWords.isEmpty()) return;
+            double left = Double.MAX_VALUE, top = Double.MAX_VALUE, right = -Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+            var text = new StringBuilder();
+            for (var word : lineWords) {
+                if (!text.isEmpty()) text.append(' ');
+                text.append(word.text());
+                var b = word.boundingBox();
+                left = Math.min(left, b.x1());
+                top = Math.min(top, b.y1());
+                right = Math.max(right, b.x3());
+                bottom = Math.max(bottom, b.y3());
+            }
+            lines.add(new OcrLine(text.toString(), new BoundingBox(left, top, right, top, right, bottom, left, bottom),
+                List.copyOf(lineWords)));
+            lineWords.clear();
+        }
+
+        // Page points (top-left origin, as displayed) to pixels, clockwise from the top left like OCR boxes
+        private BoundingBox box(float left, float top, float right, float bottom) {
+            double x1 = left * scale, y1 = top * scale, x2 = right * scale, y2 = bottom * scale;
+            return new BoundingBox(x1, y1, x2, y1, x2, y2, x1, y2);
+        }
+    }
+
+    /**
+     * Fraction of the crop box painted with images (overlapping images count twice)
+     */
+    private static final class ImageCoverage extends PageContentEngine {
+
+        double area;
+
+        ImageCoverage(PDPage page) {
+            super(page);
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+            var ctm = getGraphicsState().getCurrentTransformationMatrix();
+            var bounds = ctm.createAffineTransform().createTransformedShape(new Rectangle2D.Double(0, 0, 1, 1)).getBounds2D();
+            var box = getPage().getCropBox();
+            double w = Math.min(bounds.getMaxX(), box.getUpperRightX()) - Math.max(bounds.getMinX(), box.getLowerLeftX());
+            double h = Math.min(bounds.getMaxY(), box.getUpperRightY()) - Math.max(bounds.getMinY(), box.getLowerLeftY());
+            if (w > 0 && h > 0) {
+                area += w * h;
+            }
+        }
+
+        double coverage() {
+            var box = getPage().getCropBox();
+            double page = (double) box.getWidth() * box.getHeight();
+            return page > 0 ? area / page : 0;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.json.JSONObject;
+import xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+
+/**
+ * Append-only merge of page results into the combined TXT/XHTML outputs.
+ *
+ * Pages are appended in order to two partial files: name.oneocr.txt.partial, and
+ * name.oneocr.xhtml.partial which is streamed by a {@link StreamingCombinedXhtmlWriter} (header first,
+ * document counts patched in at the end). A small progress marker (name.oneocr.progress.json) records
+ * the writer state and text length, so the work per page is constant no matter how long the document
+ * is. finish() completes both files and renames them to their final names; nothing is re-read or copied.
+ *
+ * The marker only ever records bytes already forced to disk: both partial files are forced before it
+ * is rewritten, in batches like the checkpoint journal (every {@value CheckpointJournal#FORCE_EVERY}
+ * pages or {@value CheckpointJournal#FORCE_INTERVAL_MS} ms, and on close) rather than per page.
+ * On restart the marker is read back and the partial files are truncated to the recorded sizes, so
+ * pages appended after it (half-appended, or lost in an OS crash) are dropped and appended again.
+ *
+ * Several processes may work on one document (--pages, --shard); only the holder of the merge
+ * lock (name.oneocr.merge.lock) may open the merge, so the partial files have one writer.
+ */
+public class ProgressiveMerge implements AutoCloseable {
+
+    private final Path outputDir;
+    private final PdfNaming naming;
+    private final String documentName;
+    private final Path txtPartial;
+    private final Path xhtmlPartial;
+    private final Path marker;
+
+    private FileChannel txt;
+    private StreamingCombinedXhtmlWriter xhtml;
+
+    // Persisted in the marker, in batches
+    private int pagesMerged;
+    private long txtBytes;
+    private int markedPages;
+    private long lastMarker = System.currentTimeMillis();
+    // An append failed part-way: the state is not written to the marker again
+    private boolean broken;
+
+    private ProgressiveMerge(Path outputDir, PdfNaming naming, String documentName) {
+        this.outputDir = outputDir;
+        this.naming = naming;
+        this.documentName = documentName;
+        this.txtPartial = outputDir.resolve(naming.combined("txt.partial"));
+        this.xhtmlPartial = outputDir.resolve(naming.combined("xhtml.partial"));
+        this.marker = outputDir.resolve(naming.combined("progress.json"));
+    }
+
+    /**
+     * Exclusive right to merge a document, across processes; released on close
+     */
+    public static final class Lock implements AutoCloseable {
+        private final ReentrantLock local;
+        private final FileChannel channel;
+        private final FileLock lock;
+
+        private Lock(ReentrantLock local, FileChannel channel, FileLock lock) {
+            this.local = local;
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                try {
+                    channel.close();
+                } finally {
+                    local.unlock();
+                }
+            }
+        }
+    }
+
+    // File locks are held per process, so runs within this process take turns first
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Take the document's merge lock, running onWait first if another run holds it
+     */
+    public static Lock lock(Path outputDir, PdfNaming naming, Runnable onWait) throws IOException {
+        var file = outputDir.resolve(naming.combined("merge.lock")).toAbsolutePath().normalize();
+        var local = LOCAL_LOCKS.computeIfAbsent(file, f -> new ReentrantLock());
+        boolean waited = !local.tryLock();
+        if (waited) {
+            onWait.run();
+            local.lock();
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            var lock = channel.tryLock();
+            if (lock == null) {
+                if (!waited) onWait.run();
+                lock = channel.lock();
+            }
+            return new Lock(local, channel, lock);
+        } catch (IOException | RuntimeException e) {
+            try {
+                if (channel != null) channel.close();
+            } finally {
+                local.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Open the merge for a document, resuming from the progress marker when one is present
+     */
+    public static ProgressiveMerge open(Path outputDir, PdfNaming naming, String documentName) throws IOException {
+        var merge = new ProgressiveMerge(outputDir, naming, documentName);
+        merge.resume();
+        return merge;
+    }
+
+    private void resume() throws IOException {
+        StreamingCombinedXhtmlWriter.State state = null;
+        if (Files.exists(marker)) {
+            try {
+                var json = new JSONObject(Files.readString(marker, StandardCharsets.UTF_8));
+                var recorded = new StreamingCombinedXhtmlWriter.State(
+                    json.getInt("pagesMerged"), json.getInt("nextWordIndex"), json.getInt("totalSegments"),
+                    json.getDouble("confidenceSum"), json.getLong("xhtmlBytes"), json.getLong("metadataSlotOffset"));
+                long recordedTxt = json.getLong("txtBytes");
+                if (Files.exists(txtPartial) && Files.size(txtPartial) >= recordedTxt
+                        && Files.exists(xhtmlPartial) && Files.size(xhtmlPartial) >= recorded.bytesWritten()) {
+                    state = recorded;
+                    pagesMerged = recorded.pagesWritten();
+                    markedPages = pagesMerged;
+                    txtBytes = recordedTxt;
+                }
+            } catch (Exception e) {
+                // Unreadable marker: start the merge over
+            }
+        }
+
+        txt = FileChannel.open(txtPartial, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drop anything appended after the last recorded page
+        txt.truncate(txtBytes).position(txtBytes);
+        xhtml = state != null
+            ? StreamingCombinedXhtmlWriter.resume(xhtmlPartial, documentName, 1, state)
+            : StreamingCombinedXhtmlWriter.create(xhtmlPartial, documentName, 1);
+    }
+
+    /**
+     * Pages merged so far; the next appended page must be pagesMerged() + 1
+     */
+    public int pagesMerged() {
+        return pagesMerged;
+    }
+
+    /**
+     * Append the next page in document order
+     */
+    public void append(PagedOcrResult page) throws IOException {
+        if (page.pageNumber() != pagesMerged + 1) {
+            throw new IllegalStateException("Page " + page.pageNumber() + " appended out of order, expected " + (pagesMerged + 1));
+        }
+        var text = pagesMerged == 0 ? page.ocrResult().text() : "\n" + page.ocrResult().text();
+        broken = true;
+        txtBytes += write(txt, text);
+        try {
+            xhtml.accept(page);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging page " + page.pageNumber(), e);
+        }
+        pagesMerged++;
+        broken = false;
+        if (pagesMerged - markedPages >= CheckpointJournal.FORCE_EVERY
+                || System.currentTimeMillis() - lastMarker >= CheckpointJournal.FORCE_INTERVAL_MS) {
+            writeMarker();
+        }
+    }
+
+    /**
+     * Complete name.oneocr.txt and name.oneocr.xhtml from the partial files and remove the marker
+     */
+    public void finish() throws IOException {
+        xhtml.finish();
+        closeChannels();
+
+        Files.move(txtPartial, outputDir.resolve(naming.combined("txt")),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(xhtmlPartial, outputDir.resolve(naming.combined("xhtml")),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(marker);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (txt != null && txt.isOpen() && !broken && pagesMerged > markedPages) {
+                writeMarker();
+            }
+        } finally {
+            closeChannels();
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        try {
+            if (txt != null) txt.close();
+        } finally {
+            if (xhtml != null) xhtml.close();
+        }
+    }
+
+    // Forces the appended pages first, so the marker never claims bytes a crash could lose
+    private void writeMarker() throws IOException {
+        txt.force(false);
+        xhtml.force();
+        var state = xhtml.state();
+        var json = new JSONObject()
+            .put("pagesMerged", state.pagesWritten())
+            .put("nextWordIndex", state.nextWordIndex())
+            .put("totalSegments", state.totalSegments())
+            .put("confidenceSum", state.confidenceSum())
+            .put("xhtmlBytes", state.bytesWritten())
+            .put("metadataSlotOffset", state.metadataSlotOffset())
+            .put("txtBytes", txtBytes);
+        Path temp = marker.resolveSibling(marker.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, json.toString());
+            channel.force(false);
+        }
+        Files.move(temp, marker, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        markedPages = pagesMerged;
+        lastMarker = System.currentTimeMillis();
+    }
+
+    private static long write(FileChannel channel, String content) throws IOException {
+        var buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,66 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.MemorySegment;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the original per-pixel getRGB conversion against BgraConverter
+ * (heap and off-heap destinations) on an A4 page rendered at 300 DPI.
+ *
+ * Run from the IDE (main method) or after test-compile:
+ * java -cp target/test-classes:target/classes:[test classpath] xyz.jphil.win11_oneocr.tools.BgraConversionBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BgraConversionBenchmark {
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB", "TYPE_INT_ARGB", "TYPE_4BYTE_ABGR", "TYPE_BYTE_GRAY"})
+    public String imageType;
+
+    private BufferedImage image;
+    private byte[] pooled;
+    private NativeBgraBufferPool.Buffer nativeBuffer;
+
+    @Setup
+    public void setup() throws Exception {
+        int type = BufferedImage.class.getField(imageType).getInt(null);
+        image = BgraConverterTest.randomImage(type, 2480, 3508, 42);
+        pooled = new byte[BgraConverter.bgraSize(image)];
+        nativeBuffer = new NativeBgraBufferPool(0).acquire(BgraConverter.bgraSize(image));
+    }
+
+    @TearDown
+    public void tearDown() {
+        nativeBuffer.close();
+    }
+
+    @Benchmark
+    public byte[] perPixelGetRgb() {
+        return BgraConverterTest.referenceBgra(image);
+    }
+
+    @Benchmark
+    public byte[] rasterDirectPooled() {
+        return BgraConverter.convert(image, pooled);
+    }
+
+    @Benchmark
+    public MemorySegment rasterDirectNative() {
+        return BgraConverter.convert(image, nativeBuffer.segment());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(BgraConversionBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
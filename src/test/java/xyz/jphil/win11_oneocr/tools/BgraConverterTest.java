@@ -0,0 +1,101 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Raster-direct BGRA conversion must match the per-pixel getRGB reference for every image type
+ */
+public class BgraConverterTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_3BYTE_BGR,
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_BYTE_BINARY,   // fallback path
+        BufferedImage.TYPE_USHORT_565_RGB // fallback path
+    };
+
+    /**
+     * The original per-pixel conversion (reference behaviour)
+     */
+    static byte[] referenceBgra(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] bgraData = new byte[width * height * 4];
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                bgraData[index++] = (byte) (rgb & 0xFF);
+                bgraData[index++] = (byte) ((rgb >> 8) & 0xFF);
+                bgraData[index++] = (byte) ((rgb >> 16) & 0xFF);
+                bgraData[index++] = (byte) ((rgb >> 24) & 0xFF);
+            }
+        }
+        return bgraData;
+    }
+
+    static BufferedImage randomImage(int type, int width, int height, long seed) {
+        var image = new BufferedImage(width, height, type);
+        var random = new Random(seed);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void matchesReferenceForAllTypes() {
+        for (int type : TYPES) {
+            var image = randomImage(type, 37, 23, type);
+            assertArrayEquals(referenceBgra(image), OcrTool.convertToBGRA(image), "Image type " + type);
+        }
+    }
+
+    @Test
+    void matchesReferenceForSubImages() {
+        for (int type : TYPES) {
+            var sub = randomImage(type, 50, 40, type).getSubimage(7, 5, 31, 17);
+            assertArrayEquals(referenceBgra(sub), OcrTool.convertToBGRA(sub), "Sub-image of type " + type);
+        }
+    }
+
+    @Test
+    void pooledBuffersAreReused() {
+        var pool = new BgraBufferPool(2);
+        var image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 20, 10, 1);
+
+        var first = BgraConverter.convert(image, pool.acquire(BgraConverter.bgraSize(image)));
+        pool.release(first);
+        var second = BgraConverter.convert(image, pool.acquire(BgraConverter.bgraSize(image)));
+
+        assertSame(first, second);
+        assertEquals(1, pool.hits());
+        assertEquals(1, pool.misses());
+        assertArrayEquals(referenceBgra(image), second);
+    }
+
+    @Test
+    void poolStaysBounded() {
+        var pool = new BgraBufferPool(2);
+        for (int i = 0; i < 5; i++) {
+            pool.release(new byte[16]);
+        }
+        assertEquals(2, pool.pooledBuffers());
+
+        // A new page size displaces an idle buffer of the old size
+        pool.release(new byte[32]);
+        assertEquals(2, pool.pooledBuffers());
+        assertEquals(32, pool.acquire(32).length);
+        assertEquals(1, pool.hits());
+    }
+}
@@ -0,0 +1,73 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Area-averaged previews keep the source's tone at any ratio instead of sampling it
+ */
+public class ImageScalerTest {
+
+    @Test
+    void finePatternAveragesToGray() {
+        // One-pixel checkerboard: point sampling would give solid black or white
+        var source = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 400; x++) {
+                source.setRGB(x, y, (x + y) % 2 == 0 ? 0xFFFFFF : 0x000000);
+            }
+        }
+        var scaled = ImageScaler.areaAverage(source, 200, 150);
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+        for (int y = 0; y < 150; y += 7) {
+            for (int x = 0; x < 200; x += 7) {
+                assertEquals(0x808080, scaled.getRGB(x, y) & 0xFFFFFF, 0x010101);
+            }
+        }
+    }
+
+    @Test
+    void anyRatioKeepsUniformColourAndMean() {
+        var uniform = new BufferedImage(1653, 2338, BufferedImage.TYPE_INT_RGB);
+        var g = uniform.createGraphics();
+        g.setColor(new Color(0x3C7AB4));
+        g.fillRect(0, 0, 1653, 2338);
+        g.dispose();
+        // 200 to 75 DPI
+        var scaled = ImageScaler.areaAverage(uniform, 619, 876);
+        assertEquals(619, scaled.getWidth());
+        assertEquals(876, scaled.getHeight());
+        for (int y = 0; y < 876; y += 13) {
+            for (int x = 0; x < 619; x += 13) {
+                assertEquals(0x3C7AB4, scaled.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+
+        var random = new Random(7);
+        var gray = new BufferedImage(333, 251, BufferedImage.TYPE_BYTE_GRAY);
+        var samples = new int[333 * 251];
+        for (int i = 0; i < samples.length; i++) samples[i] = random.nextInt(256);
+        gray.getRaster().setSamples(0, 0, 333, 251, 0, samples);
+        var grayScaled = ImageScaler.areaAverage(gray, 100, 77);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, grayScaled.getType());
+        assertEquals(mean(gray), mean(grayScaled), 0.5);
+    }
+
+    @Test
+    void sameSizeIsReturnedAsIs() {
+        var source = new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR);
+        assertSame(source, ImageScaler.areaAverage(source, 10, 10));
+    }
+
+    private static double mean(BufferedImage gray) {
+        var samples = gray.getRaster().getSamples(0, 0, gray.getWidth(), gray.getHeight(), 0, (int[]) null);
+        long sum = 0;
+        for (int s : samples) sum += s;
+        return (double) sum / samples.length;
+    }
+}
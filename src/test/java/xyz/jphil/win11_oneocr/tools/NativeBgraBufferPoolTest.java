@@ -0,0 +1,197 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+import xyz.jphil.win11_oneocr.OcrResult;
+
+import java.awt.image.BufferedImage;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Page buffers: conversion correctness, pooling, and zero per-page heap churn on the native path
+ * and on the heap path of engines without native buffer support
+ */
+public class NativeBgraBufferPoolTest {
+
+    private static final int[] TYPES = {
+        BufferedImage.TYPE_3BYTE_BGR,
+        BufferedImage.TYPE_INT_RGB,
+        BufferedImage.TYPE_INT_ARGB,
+        BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_BYTE_GRAY,
+        BufferedImage.TYPE_BYTE_BINARY
+    };
+
+    /**
+     * Session that consumes native buffers without copying them
+     */
+    private static class NativeSession implements OcrSession {
+        private static final OcrResult RESULT = new OcrResult("", 0.0, List.of());
+        long checksum;
+
+        @Override
+        public OcrResult recognize(int width, int height, byte[] bgraData) {
+            throw new AssertionError("Heap path must not be used");
+        }
+
+        @Override
+        public OcrResult recognize(int width, int height, MemorySegment bgraData) {
+            checksum += bgraData.get(ValueLayout.JAVA_BYTE, bgraData.byteSize() - 1);
+            return RESULT;
+        }
+
+        @Override
+        public boolean acceptsNativeBuffers() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Session that only takes heap arrays (like OneOCR)
+     */
+    private static class HeapSession implements OcrSession {
+        private static final OcrResult RESULT = new OcrResult("", 0.0, List.of());
+        final Set<byte[]> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        @Override
+        public OcrResult recognize(int width, int height, byte[] bgraData) {
+            assertEquals(width * height * 4, bgraData.length);
+            arrays.add(bgraData);
+            return RESULT;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void segmentConversionMatchesReference() {
+        var pool = new NativeBgraBufferPool(1 << 20);
+        for (int type : TYPES) {
+            for (var image : List.of(
+                    BgraConverterTest.randomImage(type, 37, 23, type),
+                    BgraConverterTest.randomImage(type, 50, 40, type).getSubimage(7, 5, 31, 17))) {
+                try (var buffer = pool.acquire(BgraConverter.bgraSize(image))) {
+                    var converted = BgraConverter.convert(image, buffer.segment()).toArray(ValueLayout.JAVA_BYTE);
+                    assertArrayEquals(BgraConverterTest.referenceBgra(image), converted, "Image type " + type);
+                }
+            }
+        }
+    }
+
+    @Test
+    void buffersAreBucketedAndReused() {
+        var pool = new NativeBgraBufferPool(1 << 24);
+        MemorySegment first;
+        try (var buffer = pool.acquire(100_000)) {
+            first = buffer.segment();
+            assertEquals(100_000, first.byteSize());
+        }
+        // A slightly different page size falls into the same 128KB size class
+        try (var buffer = pool.acquire(120_000)) {
+            assertEquals(first.address(), buffer.segment().address());
+        }
+        assertEquals(1, pool.hits());
+        assertEquals(1, pool.misses());
+        assertEquals(128 * 1024, pool.allocatedBytes());
+
+        pool.trim();
+        assertEquals(0, pool.allocatedBytes());
+        assertEquals(0, pool.idleBytes());
+    }
+
+    @Test
+    void idleBytesStayBounded() {
+        var pool = new NativeBgraBufferPool(128 * 1024);
+        var a = pool.acquire(128 * 1024);
+        var b = pool.acquire(128 * 1024);
+        a.close();
+        b.close(); // exceeds the idle cap, freed immediately
+        assertEquals(128 * 1024, pool.idleBytes());
+        assertEquals(128 * 1024, pool.allocatedBytes());
+    }
+
+    @Test
+    void recognizingPagesDoesNotAllocatePageBuffersOnHeap() throws Exception {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationTracking(threadBean);
+
+        int types = TYPES.length - 1; // all raster-direct types
+        var pages = new BufferedImage[types];
+        for (int i = 0; i < types; i++) {
+            pages[i] = new BufferedImage(1240, 1754, TYPES[i]); // A4 at 150 DPI, ~8.7MB as BGRA
+        }
+        long pageBytes = BgraConverter.bgraSize(pages[0]);
+
+        try (var session = new NativeSession()) {
+            // Warm up: fill the pool and let the JIT settle
+            for (int i = 0; i < 3; i++) {
+                for (var page : pages) session.recognize(page);
+            }
+
+            int pageCount = 0;
+            long before = threadBean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 10; i++) {
+                for (var page : pages) {
+                    session.recognize(page);
+                    pageCount++;
+                }
+            }
+            long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+            // Only small lease objects remain; a single heap page buffer would be ~8.7MB
+            assertTrue(allocated < pageBytes / 100,
+                "Allocated " + allocated + " bytes on heap for " + pageCount + " pages");
+        }
+    }
+
+    @Test
+    void heapOnlySessionsGetPooledArraysWithoutACopy() throws Exception {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationTracking(threadBean);
+
+        var page = new BufferedImage(1240, 1754, BufferedImage.TYPE_3BYTE_BGR);
+        long pageBytes = BgraConverter.bgraSize(page);
+        try (var session = new HeapSession()) {
+            for (int i = 0; i < 3; i++) session.recognize(page);
+
+            long before = threadBean.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 20; i++) {
+                session.recognize(page);
+            }
+            long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+            assertTrue(allocated < pageBytes / 100, "Allocated " + allocated + " bytes on heap for 20 pages");
+            assertEquals(1, session.arrays.size(), "the engine reads the pooled array it was converted into");
+        }
+
+        // Sessions of such an engine hand out heap buffers to callers converting pages themselves
+        try (var sessions = new OcrSessionManager(new SyntheticOcrEngine(0, 1, 1) {
+                @Override
+                public boolean acceptsNativeBuffers() {
+                    return false;
+                }
+            }, 1000, 1);
+             var buffer = sessions.acquireBuffer(pageBytes)) {
+            assertFalse(buffer.segment().isNative());
+            assertEquals(pageBytes, buffer.segment().byteSize());
+        }
+    }
+
+    private static void assumeAllocationTracking(com.sun.management.ThreadMXBean threadBean) {
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+}
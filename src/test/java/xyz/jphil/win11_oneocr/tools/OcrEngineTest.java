@@ -0,0 +1,67 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Engine SPI: spec parsing, synthetic determinism and replay of recorded .oneocr.json results
+ */
+public class OcrEngineTest {
+
+    @Test
+    void specSelectsEngine() throws Exception {
+        assertInstanceOf(OneOcrEngine.class, OcrEngine.fromSpec("oneocr"));
+        assertInstanceOf(SyntheticOcrEngine.class, OcrEngine.fromSpec("synthetic"));
+        assertInstanceOf(SyntheticOcrEngine.class, OcrEngine.fromSpec("synthetic:5:8:20"));
+        assertThrows(IllegalArgumentException.class, () -> OcrEngine.fromSpec("tesseract"));
+        assertThrows(IllegalArgumentException.class, () -> OcrEngine.fromSpec("synthetic:fast"));
+    }
+
+    @Test
+    void syntheticIsDeterministicAndHonoursDensity() throws Exception {
+        var engine = new SyntheticOcrEngine(0, 6, 12);
+        var pixels = new byte[200 * 100 * 4];
+        pixels[123] = 7;
+
+        try (var a = engine.openSession(1000); var b = engine.openSession(1000)) {
+            var first = a.recognize(200, 100, pixels);
+            var second = b.recognize(200, 100, pixels);
+            assertEquals(first, second, "Same image must produce the same result");
+            assertEquals(12, first.lines().size());
+            assertEquals(72, first.wordsCount());
+        }
+        try (var limited = engine.openSession(5)) {
+            assertEquals(5, limited.recognize(200, 100, pixels).lines().size());
+        }
+    }
+
+    @Test
+    void replayServesRecordedResultsInOrder(@TempDir Path dir) throws Exception {
+        var synthetic = new SyntheticOcrEngine(0, 3, 4);
+        var recorded = synthetic.generate(100, 50, null, 1000);
+        Files.writeString(dir.resolve("a.jpg.oneocr.json"), CompactJsonSerializer.toCompactJson(recorded, "a.jpg", 100, 50));
+        Files.writeString(dir.resolve("b.jpg.oneocr.json"), CompactJsonSerializer.toCompactJson(OcrResults.empty(), "b.jpg", 100, 50));
+
+        var engine = (ReplayOcrEngine) OcrEngine.fromSpec("replay:" + dir);
+        assertEquals(2, engine.recordingsCount());
+
+        try (var session = engine.openSession(1000)) {
+            var first = session.recognize(100, 50, (byte[]) null);
+            assertEquals(recorded.text(), first.text());
+            assertEquals(12, first.wordsCount());
+            assertEquals(0, session.recognize(100, 50, (byte[]) null).wordsCount());
+
+            // Cycles back to the first recording, rescaled to the requested size
+            var scaled = session.recognize(200, 100, (byte[]) null);
+            var original = recorded.lines().get(0).words().get(0).boundingBox();
+            var doubled = scaled.lines().get(0).words().get(0).boundingBox();
+            assertEquals(original.x1() * 2, doubled.x1(), 0.001);
+            assertEquals(original.y4() * 2, doubled.y4(), 0.001);
+        }
+    }
+}
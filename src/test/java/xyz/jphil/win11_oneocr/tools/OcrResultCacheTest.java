@@ -0,0 +1,163 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfNaming;
+import xyz.jphil.win11_oneocr.tools.pdf.TestPdfs;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Results are found again by content across cache instances, runs and folders; the least
+ * recently used are evicted past the size limit
+ */
+public class OcrResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resultsRoundTripAndOptionsMustMatch() throws Exception {
+        var result = new SyntheticOcrEngine(0, 4, 6).generate(320, 200, null, 1000);
+        var md5 = OcrResultCache.md5("scan".getBytes());
+        assertEquals(32, md5.length());
+
+        var cache = OcrResultCache.open(tempDir, 1 << 20, "synthetic:0:4:6");
+        assertNull(cache.get(cache.key(md5, 1000)));
+        cache.put(cache.key(md5, 1000), new OcrResultCache.Entry(result, 320, 200));
+        assertEquals(new OcrResultCache.Entry(result, 320, 200), cache.get(cache.key(md5, 1000)));
+        assertNull(cache.get(cache.key(md5, 5)), "other maxLines");
+        assertNull(cache.get(cache.key(md5, 1000, 320, 200)), "pixels of the same hash are another input");
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+
+        var reopened = OcrResultCache.open(tempDir, 1 << 20, "synthetic:0:4:6");
+        assertEquals(1, reopened.entries());
+        assertEquals(cache.sizeBytes(), reopened.sizeBytes());
+        assertEquals(result, reopened.get(reopened.key(md5, 1000)).result());
+        var otherEngine = OcrResultCache.open(tempDir, 1 << 20, "oneocr");
+        assertNull(otherEngine.get(otherEngine.key(md5, 1000)));
+    }
+
+    @Test
+    void leastRecentlyUsedAreEvicted() throws Exception {
+        var result = new SyntheticOcrEngine(0, 4, 6).generate(320, 200, null, 1000);
+        var entry = new OcrResultCache.Entry(result, 320, 200);
+        var probe = OcrResultCache.open(tempDir.resolve("probe"), Long.MAX_VALUE, "synthetic");
+        probe.put(probe.key(OcrResultCache.md5(new byte[1]), 1000), entry);
+        long entrySize = probe.sizeBytes();
+
+        var dir = tempDir.resolve("cache");
+        var cache = OcrResultCache.open(dir, entrySize * 5 / 2, "synthetic");
+        var a = cache.key(OcrResultCache.md5("a".getBytes()), 1000);
+        var b = cache.key(OcrResultCache.md5("b".getBytes()), 1000);
+        var c = cache.key(OcrResultCache.md5("c".getBytes()), 1000);
+        cache.put(a, entry);
+        Thread.sleep(5);
+        cache.put(b, entry);
+        Thread.sleep(5);
+        assertNotNull(cache.get(a));
+        Thread.sleep(5);
+        cache.put(c, entry);
+
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get(b), "least recently used");
+        assertNotNull(cache.get(a));
+        assertNotNull(cache.get(c));
+        assertEquals(2 * entrySize, cache.sizeBytes());
+        assertEquals(2, OcrResultCache.open(dir, Long.MAX_VALUE, "synthetic").entries());
+    }
+
+    @Test
+    void copiesInOtherFoldersAreNotRecognizedAgain() throws Exception {
+        var cacheDir = tempDir.resolve("cache");
+        var first = Files.createDirectories(tempDir.resolve("2023"));
+        var second = Files.createDirectories(tempDir.resolve("2024"));
+        for (int i = 0; i < 3; i++) {
+            image(first.resolve("scan" + i + ".png"), new Color(40 * i, 0, 0));
+        }
+        Files.copy(first.resolve("scan1.png"), second.resolve("copy.png"));
+        image(second.resolve("new.png"), Color.BLUE);
+
+        var tool = new OcrTool();
+        assertEquals(0, new CommandLine(tool).execute("--engine", "synthetic:0", "--result-cache", cacheDir.toString(),
+            "folder", first.toString()));
+        assertEquals(3, tool.getResultCache().stores());
+
+        tool = new OcrTool();
+        assertEquals(0, new CommandLine(tool).execute("--engine", "synthetic:0", "--result-cache", cacheDir.toString(),
+            "folder", second.toString()));
+        assertEquals(1, tool.getResultCache().hits());
+        assertEquals(1, tool.getResultCache().stores(), "only the new image");
+        assertEquals(Files.readString(first.resolve("scan1.png.oneocr.txt")), Files.readString(second.resolve("copy.png.oneocr.txt")));
+    }
+
+    @Test
+    void outputsFromCachedResultsCarrySrcMD5() throws Exception {
+        var cacheDir = tempDir.resolve("cache");
+        var image = image(tempDir.resolve("receipt.png"), Color.WHITE);
+        var md5 = OcrResultCache.md5(Files.readAllBytes(image));
+        for (int run = 0; run < 2; run++) {
+            var tool = new OcrTool();
+            assertEquals(0, new CommandLine(tool).execute("--engine", "synthetic:0", "--result-cache", cacheDir.toString(),
+                image.toString(), "--xhtml", tempDir.resolve("receipt" + run + ".xhtml").toString()));
+            assertEquals(run, tool.getResultCache().hits());
+        }
+        var uncached = Files.readString(tempDir.resolve("receipt0.xhtml"));
+        var cached = Files.readString(tempDir.resolve("receipt1.xhtml"));
+        assertTrue(cached.contains("srcMD5=\"" + md5 + "\""));
+        assertEquals(content(uncached), content(cached));
+
+        // PDF pages are found by their pixels, also in another copy of the PDF
+        var pdf = TestPdfs.generate(tempDir.resolve("a.pdf"), 3);
+        Files.copy(pdf, tempDir.resolve("b.pdf"));
+        var pageHits = new ArrayList<Long>();
+        for (var name : List.of("a.pdf", "b.pdf")) {
+            var tool = new OcrTool();
+            assertEquals(0, new CommandLine(tool).execute("--engine", "synthetic:0", "--result-cache", cacheDir.toString(),
+                "pdf", tempDir.resolve(name).toString(), "--image-format", "none"));
+            pageHits.add(tool.getResultCache().hits());
+        }
+        assertEquals(3, pageHits.get(1));
+        var naming = new PdfNaming("b.pdf", 3);
+        var out = tempDir.resolve("b.pdf.oneocr");
+        var page = Files.readString(out.resolve(naming.page(1, "xhtml")));
+        assertTrue(page.contains("srcMD5=\""), "page XHTML records the MD5 of the page raster");
+        var combined = Files.readString(out.resolve(naming.combined("xhtml")));
+        assertEquals(3, srcMD5Count(combined), "every page section of the combined document from cache hits");
+
+        // Pages restored from their sidecars keep it too
+        Files.delete(out.resolve(naming.combined("xhtml")));
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0",
+            "pdf", tempDir.resolve("b.pdf").toString(), "--image-format", "none"));
+        assertEquals(StreamingCombinedXhtmlWriterTest.comparable(combined),
+            StreamingCombinedXhtmlWriterTest.comparable(Files.readString(out.resolve(naming.combined("xhtml")))));
+    }
+
+    private static int srcMD5Count(String xhtml) {
+        return xhtml.split("srcMD5=\"", -1).length - 1;
+    }
+
+    private static String content(String xhtml) {
+        return xhtml.substring(xhtml.indexOf("<div class=\"ocrContent\""));
+    }
+
+    private static Path image(Path file, Color color) throws Exception {
+        var image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 64, 32);
+        g.dispose();
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,152 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+import xyz.jphil.win11_oneocr.OcrResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lifecycle and reuse of OCR sessions, using a stub engine so it runs without the native OneOCR library
+ */
+public class OcrSessionManagerTest {
+
+    /**
+     * Stub session that enforces the OneOCR thread-confinement rule
+     */
+    static class StubSession implements OcrSession {
+        final Thread owner = Thread.currentThread();
+        final AtomicInteger recognitions = new AtomicInteger(0);
+        volatile Thread closedBy;
+
+        @Override
+        public OcrResult recognize(int width, int height, byte[] bgraData) {
+            if (Thread.currentThread() != owner) {
+                throw new IllegalStateException("Session used outside its initializing thread");
+            }
+            recognitions.incrementAndGet();
+            return new OcrResult("", 0.0, List.of());
+        }
+
+        @Override
+        public void close() {
+            closedBy = Thread.currentThread();
+        }
+    }
+
+    @Test
+    void sameThreadReusesOneSession() throws Exception {
+        var opened = new ArrayList<StubSession>();
+        try (var sessions = new OcrSessionManager(() -> {
+            var s = new StubSession();
+            opened.add(s);
+            return s;
+        }, 1)) {
+            for (int i = 0; i < 10; i++) {
+                sessions.session().recognize(1, 1, new byte[4]);
+            }
+            assertEquals(1, sessions.sessionsOpened());
+            assertEquals(10, sessions.borrows());
+            assertEquals(10, opened.get(0).recognitions.get());
+        }
+        assertNotNull(opened.get(0).closedBy, "Session should be closed with the manager");
+    }
+
+    @Test
+    void workersKeepOneSessionPerThreadAndCloseOnOwnThread() throws Exception {
+        var opened = ConcurrentHashMap.<StubSession>newKeySet();
+        var sessions = new OcrSessionManager(() -> {
+            var s = new StubSession();
+            opened.add(s);
+            return s;
+        }, 3);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(sessions.workers().submit(() -> {
+                sessions.session().recognize(1, 1, new byte[4]);
+                return null;
+            }));
+        }
+        for (var task : tasks) {
+            task.get(); // fails if a session crossed threads
+        }
+
+        assertTrue(sessions.sessionsOpened() <= 3, "At most one session per worker thread");
+        assertEquals(30, opened.stream().mapToInt(s -> s.recognitions.get()).sum());
+
+        sessions.close();
+        assertEquals(sessions.sessionsOpened(), sessions.sessionsClosed());
+        assertEquals(0, sessions.activeSessions());
+        for (var session : opened) {
+            assertSame(session.owner, session.closedBy, "Worker sessions must be closed on their own thread");
+        }
+    }
+
+    @Test
+    void stuckWorkerSessionIsLeakedNotClosedCrossThread() throws Exception {
+        var opened = ConcurrentHashMap.<StubSession>newKeySet();
+        var sessions = new OcrSessionManager(() -> {
+            var s = new StubSession();
+            opened.add(s);
+            return s;
+        }, 1);
+        sessions.drainMillis = 50;
+        sessions.joinMillis = 50;
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        sessions.workers().submit(() -> {
+            sessions.session();
+            started.countDown();
+            while (release.getCount() > 0) { // a recognition that ignores interrupts
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // keeps going
+                }
+            }
+            return null;
+        });
+        started.await();
+
+        sessions.close();
+        assertEquals(1, sessions.sessionsLeaked());
+        assertEquals(0, sessions.sessionsClosed());
+        var session = opened.iterator().next();
+        assertNull(session.closedBy, "not closed off its own thread");
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (session.closedBy == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertSame(session.owner, session.closedBy, "closed by the worker once it exits");
+    }
+
+    @Test
+    void closedManagerRejectsBorrows() {
+        var sessions = new OcrSessionManager(StubSession::new, 1);
+        sessions.close();
+        assertThrows(IllegalStateException.class, sessions::session);
+    }
+
+    @Test
+    void releaseOpensFreshSessionOnNextBorrow() throws Exception {
+        Set<OcrSession> seen = ConcurrentHashMap.newKeySet();
+        try (var sessions = new OcrSessionManager(StubSession::new, 1)) {
+            seen.add(sessions.session());
+            sessions.release();
+            seen.add(sessions.session());
+            assertEquals(2, seen.size());
+            assertEquals(2, sessions.sessionsOpened());
+            assertEquals(1, sessions.sessionsClosed());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Waiting pages of several files are handed to the workers in policy order
+ */
+public class PageSchedulerTest {
+
+    private static final PageScheduler.Source BIG = new PageScheduler.Source("big.pdf", 3000);
+    private static final PageScheduler.Source SMALL = new PageScheduler.Source("receipt.jpg", 1);
+    private static final PageScheduler.Source OTHER = new PageScheduler.Source("letter.pdf", 2);
+
+    @Test
+    void policiesOrderWaitingPages() throws Exception {
+        assertEquals(List.of("big.pdf", "big.pdf", "big.pdf", "receipt.jpg", "letter.pdf", "letter.pdf"),
+            order(PageScheduler.Policy.FIFO));
+        assertEquals(List.of("receipt.jpg", "letter.pdf", "letter.pdf", "big.pdf", "big.pdf", "big.pdf"),
+            order(PageScheduler.Policy.SMALLEST));
+        assertEquals(List.of("big.pdf", "receipt.jpg", "letter.pdf", "big.pdf", "letter.pdf", "big.pdf"),
+            order(PageScheduler.Policy.ROUND_ROBIN));
+
+        assertEquals(PageScheduler.Policy.ROUND_ROBIN, PageScheduler.Policy.parse("round-robin"));
+        assertThrows(IllegalArgumentException.class, () -> PageScheduler.Policy.parse("lifo"));
+    }
+
+    @Test
+    void lateFilesJoinTheCurrentRound() throws Exception {
+        var scheduler = new PageScheduler(PageScheduler.Policy.ROUND_ROBIN);
+        var pool = scheduler.newPool(1, Thread::new);
+        try {
+            // The big file has been served for a while before the small one arrives
+            for (int i = 0; i < 5; i++) {
+                scheduler.submit(pool, BIG, () -> null).get();
+            }
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            pool.submit(() -> {
+                started.countDown();
+                release.await();
+                return null;
+            });
+            started.await();
+
+            var order = Collections.synchronizedList(new ArrayList<String>());
+            var tasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < 3; i++) {
+                tasks.add(scheduler.submit(pool, BIG, () -> order.add(BIG.name())));
+            }
+            for (int i = 0; i < 3; i++) {
+                tasks.add(scheduler.submit(pool, SMALL, () -> order.add(SMALL.name())));
+            }
+            release.countDown();
+            for (var task : tasks) {
+                task.get();
+            }
+            // Alternates instead of first running all of the newcomer's pages for the rounds it missed
+            assertEquals(List.of("receipt.jpg", "big.pdf", "receipt.jpg", "big.pdf", "receipt.jpg", "big.pdf"), order);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sessionsRunScheduledPagesOnTheirWorkers() throws Exception {
+        try (var sessions = new OcrSessionManager(OcrSessionManagerTest.StubSession::new, 2, PageScheduler.Policy.SMALLEST)) {
+            var results = new ArrayList<Future<Integer>>();
+            var pool = Executors.newFixedThreadPool(4);
+            try {
+                for (int i = 0; i < 20; i++) {
+                    var source = i % 2 == 0 ? BIG : SMALL;
+                    results.add(pool.submit(() -> sessions.call(source, session -> {
+                        session.recognize(1, 1, new byte[4]); // fails off the session's own thread
+                        return 1;
+                    })));
+                }
+                for (var result : results) {
+                    assertEquals(1, result.get());
+                }
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(2, sessions.sessionsOpened());
+            assertEquals(PageScheduler.Policy.SMALLEST, sessions.policy());
+        }
+    }
+
+    @Test
+    void plainRunnablesAreQueuedLikeAnyOtherTask() throws Exception {
+        var scheduler = new PageScheduler(PageScheduler.Policy.ROUND_ROBIN);
+        var pool = scheduler.newPool(1, Thread::new);
+        try {
+            var ran = new CountDownLatch(3);
+            for (int i = 0; i < 3; i++) {
+                pool.execute(ran::countDown);
+            }
+            scheduler.submit(pool, SMALL, () -> null).get();
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Queue pages of three files behind a busy single worker, then record the order they run in
+    private static List<String> order(PageScheduler.Policy policy) throws Exception {
+        var scheduler = new PageScheduler(policy);
+        var pool = scheduler.newPool(1, Thread::new);
+        try {
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            pool.submit(() -> {
+                started.countDown();
+                release.await();
+                return null;
+            });
+            started.await();
+
+            var order = Collections.synchronizedList(new ArrayList<String>());
+            var tasks = new ArrayList<Future<?>>();
+            for (var source : List.of(BIG, BIG, BIG, SMALL, OTHER, OTHER)) {
+                tasks.add(scheduler.submit(pool, source, () -> order.add(source.name())));
+            }
+            release.countDown();
+            for (var task : tasks) {
+                task.get();
+            }
+            return order;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every --image-format produces a readable preview of the page, or none at all
+ */
+public class PreviewEncoderTest {
+
+    private static BufferedImage page() {
+        var image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.fillRect(0, 0, 320, 240);
+        g.setColor(java.awt.Color.BLACK);
+        g.drawString("preview", 40, 120);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void formatsEncodeReadablePreviews() throws Exception {
+        for (var format : new String[] {"jpg", "jpeg", "png", "webp"}) {
+            var encoder = PreviewEncoder.forFormat(format, -1, -1);
+            var decoded = ImageIO.read(new ByteArrayInputStream(encoder.encode(page())));
+            assertNotNull(decoded, format);
+            assertEquals(320, decoded.getWidth(), format);
+            assertEquals(240, decoded.getHeight(), format);
+        }
+        assertEquals("jpg", PreviewEncoder.forFormat("JPEG", -1, -1).extension());
+    }
+
+    @Test
+    void qualityChangesTheEncoding() throws Exception {
+        var low = PreviewEncoder.forFormat("jpg", 10, -1).encode(page());
+        var high = PreviewEncoder.forFormat("jpg", 95, -1).encode(page());
+        assertTrue(low.length < high.length);
+
+        var fast = PreviewEncoder.forFormat("webp", 60, 0).encode(page());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(fast)));
+    }
+
+    @Test
+    void noneWritesNothing() {
+        var none = PreviewEncoder.forFormat("none", -1, -1);
+        assertFalse(none.enabled());
+        assertNull(none.extension());
+        assertThrows(IllegalArgumentException.class, () -> PreviewEncoder.forFormat("avif", -1, -1));
+    }
+}
@@ -0,0 +1,135 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Waiting bitmaps stay within the byte budget; spilled pages encode to the same result
+ */
+public class PreviewEncodingServiceTest {
+
+    private static BufferedImage page(int seed) {
+        var image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 31 + y * 17 + seed * 101) & 0xFFFFFF);
+            }
+        }
+        return image;
+    }
+
+    // Stands in for WebP: every pixel, so a lossy spill round trip would show
+    private static byte[] pixels(BufferedImage image) {
+        var out = ByteBuffer.allocate(image.getWidth() * image.getHeight() * 4);
+        for (int rgb : image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth())) {
+            out.putInt(rgb & 0xFFFFFF);
+        }
+        return out.array();
+    }
+
+    private static void await(CountDownLatch gate) throws InterruptedIOException {
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Test
+    void slowEncoderHoldsBackTheProducer() throws Exception {
+        long pageBytes = PreviewEncodingService.pixelBytes(page(0));
+        var gate = new CountDownLatch(1);
+        try (var service = new PreviewEncodingService(2, 3 * pageBytes, false, image -> {
+            await(gate);
+            return pixels(image);
+        })) {
+            var futures = Collections.synchronizedList(new ArrayList<CompletableFuture<byte[]>>());
+            var producer = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 10; i++) futures.add(service.submit(page(i)));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            producer.start();
+            producer.join(500);
+            assertTrue(producer.isAlive(), "producer should be waiting for the encoders");
+            assertEquals(3, futures.size());
+
+            gate.countDown();
+            producer.join();
+            for (int i = 0; i < 10; i++) {
+                assertArrayEquals(pixels(page(i)), futures.get(i).get());
+            }
+            assertTrue(service.peakInFlightBytes() <= 3 * pageBytes);
+            assertEquals(0, service.spilled());
+        }
+    }
+
+    @Test
+    void spilledPagesEncodeIdentically() throws Exception {
+        long pageBytes = PreviewEncodingService.pixelBytes(page(0));
+        var gate = new CountDownLatch(1);
+        try (var service = new PreviewEncodingService(1, 2 * pageBytes, true, image -> {
+            await(gate);
+            return pixels(image);
+        })) {
+            var futures = new ArrayList<CompletableFuture<byte[]>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(service.submit(page(i))); // never blocks with spilling on
+            }
+            assertEquals(6, service.spilled());
+            assertEquals(6, service.pendingSpillFiles());
+
+            gate.countDown();
+            for (int i = 0; i < 8; i++) {
+                assertTrue(Arrays.equals(pixels(page(i)), futures.get(i).get()), "page " + i);
+            }
+            assertEquals(8, service.encoded());
+            assertEquals(0, service.pendingSpillFiles());
+            assertTrue(service.peakInFlightBytes() <= 2 * pageBytes);
+        }
+    }
+
+    @Test
+    void spilledPagesComeBackAsTheirOwnType() throws Exception {
+        var gray = new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_GRAY);
+        var data = ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 7);
+        }
+        var gate = new CountDownLatch(1);
+        try (var service = new PreviewEncodingService(1, PreviewEncodingService.pixelBytes(gray), true, image -> {
+            await(gate);
+            var raw = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            var out = Arrays.copyOf(raw, raw.length + 1);
+            out[raw.length] = (byte) image.getType();
+            return out;
+        })) {
+            var futures = new ArrayList<CompletableFuture<byte[]>>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(service.submit(gray));
+            }
+            assertEquals(2, service.spilled());
+
+            gate.countDown();
+            var expected = Arrays.copyOf(data, data.length + 1);
+            expected[data.length] = (byte) BufferedImage.TYPE_BYTE_GRAY;
+            for (var future : futures) {
+                assertArrayEquals(expected, future.get(), "gray previews do not depend on memory pressure");
+            }
+        }
+        assertFalse(PreviewEncodingService.spillable(gray.getSubimage(10, 10, 50, 50)), "sub-images wait for the budget");
+    }
+}
@@ -0,0 +1,116 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ordering, back-pressure and failure handling of the staged pipeline
+ */
+public class StagedPipelineTest {
+
+    private static void sleepRandomly(int maxMillis) throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(maxMillis + 1));
+    }
+
+    @Test
+    void commitsInSubmissionOrderWithBoundedMemory() throws Exception {
+        var committed = new ArrayList<Integer>();
+        var live = new AtomicInteger(0);
+        var peakLive = new AtomicInteger(0);
+        var ocrThreads = ConcurrentHashMap.<String>newKeySet();
+        var ocrExecutor = Executors.newFixedThreadPool(3, r -> new Thread(r, "test-ocr"));
+
+        try (var pipeline = StagedPipeline.<Integer>builder("test")
+                .queueDepth(2)
+                .stage("produce", 2, item -> {
+                    peakLive.accumulateAndGet(live.incrementAndGet(), Math::max);
+                    sleepRandomly(3);
+                })
+                .stage("ocr", 3, ocrExecutor, item -> {
+                    ocrThreads.add(Thread.currentThread().getName());
+                    sleepRandomly(5);
+                })
+                .stage("write", 1, item -> sleepRandomly(1))
+                .commit((item, failure) -> {
+                    assertNull(failure);
+                    committed.add(item);
+                    live.decrementAndGet();
+                })
+                .start()) {
+
+            for (int i = 0; i < 200; i++) {
+                pipeline.submit(i);
+            }
+            pipeline.finish();
+
+            assertEquals(200, pipeline.committed());
+            assertTrue(peakLive.get() <= pipeline.maxInFlight(),
+                "Peak " + peakLive.get() + " items in memory, limit " + pipeline.maxInFlight());
+        } finally {
+            ocrExecutor.shutdown();
+        }
+
+        var expected = new ArrayList<Integer>();
+        for (int i = 0; i < 200; i++) expected.add(i);
+        assertEquals(expected, committed);
+        assertEquals(Set.of("test-ocr"), ocrThreads); // OCR stage stays on the supplied threads
+    }
+
+    @Test
+    void failedItemsSkipLaterStagesAndAreCommittedInOrder() throws Exception {
+        var written = ConcurrentHashMap.<Integer>newKeySet();
+        var outcomes = new ArrayList<String>();
+
+        try (var pipeline = StagedPipeline.<Integer>builder("test")
+                .stage("ocr", 2, item -> {
+                    if (item % 3 == 0) throw new IllegalStateException("bad page " + item);
+                })
+                .stage("write", 1, written::add)
+                .commit((item, failure) -> outcomes.add(failure == null ? "ok" : failure.getMessage()))
+                .start()) {
+            for (int i = 0; i < 6; i++) {
+                pipeline.submit(i);
+            }
+            pipeline.finish();
+        }
+
+        assertEquals(List.of("bad page 0", "ok", "ok", "bad page 3", "ok", "ok"), outcomes);
+        assertEquals(Set.of(1, 2, 4, 5), written);
+    }
+
+    @Test
+    void errorsAreCommittedLikeExceptions() throws Exception {
+        var outcomes = new ArrayList<String>();
+
+        try (var pipeline = StagedPipeline.<Integer>builder("test")
+                .queueDepth(1)
+                .stage("render", 1, item -> {
+                    if (item == 1) throw new OutOfMemoryError("page too large");
+                })
+                .stage("write", 1, item -> {})
+                .commit((item, failure) -> {
+                    outcomes.add(failure == null ? "ok" : failure.getMessage());
+                    if (item == 3) throw new AssertionError("committer broke");
+                })
+                .start()) {
+            // More items than fit in flight: a lost permit would block submit() or finish()
+            for (int i = 0; i < 3 * pipeline.maxInFlight(); i++) {
+                pipeline.submit(i);
+            }
+            var failure = assertThrows(AssertionError.class, pipeline::finish);
+            assertEquals("committer broke", failure.getMessage());
+            assertEquals(3 * pipeline.maxInFlight(), pipeline.committed());
+        }
+
+        assertEquals(List.of("ok", "page too large", "ok", "ok"), outcomes.subList(0, 4));
+    }
+}
@@ -0,0 +1,142 @@
+package xyz.jphil.win11_oneocr.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+
+/**
+ * Streaming combined XHTML: same document as the one-shot combine, written with flat heap
+ */
+public class StreamingCombinedXhtmlWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Drop what legitimately differs between two renderings of a document: its generation date
+     */
+    public static String comparable(String xhtml) {
+        return xhtml.replaceFirst("<meta name=\"date\" content=\"[^\"]*\"", "<meta name=\"date\"");
+    }
+
+    /**
+     * A streamed document as the one-shot combine renders it: without the unused bytes of the metadata slot
+     */
+    public static String withoutSlotPadding(String streamed) {
+        int slotAt = streamed.indexOf("<meta name=\"pagesCount\"");
+        int slotEnd = slotAt + StreamingCombinedXhtmlWriter.METADATA_SLOT_BYTES; // the metadata is ASCII
+        assertTrue(slotAt >= 0 && streamed.charAt(slotEnd - 1) == ' ', "metadata slot not found");
+        return streamed.substring(0, slotAt) + streamed.substring(slotAt, slotEnd).replaceFirst(" +$", "")
+            + streamed.substring(slotEnd);
+    }
+
+    static PagedOcrResult page(OcrSession session, int pageNumber) throws Exception {
+        var result = session.recognize(400 + pageNumber, 600, new byte[] {(byte) pageNumber});
+        return new PagedOcrResult(pageNumber, result, "doc.pdf.pg" + pageNumber + ".webp", 400 + pageNumber, 600);
+    }
+
+    @Test
+    void outOfOrderPagesProduceTheOneShotDocument() throws Exception {
+        var pages = new ArrayList<PagedOcrResult>();
+        try (var session = new SyntheticOcrEngine(0, 5, 4).openSession(0)) {
+            for (int p = 1; p <= 40; p++) pages.add(page(session, p));
+        }
+        var file = tempDir.resolve("doc.xhtml");
+
+        // Four workers take pages in order but finish them in random order; at most 3 wait for an earlier page
+        var random = new Random(7);
+        var executor = Executors.newFixedThreadPool(4);
+        try (var writer = StreamingCombinedXhtmlWriter.create(file, "doc.pdf", 3)) {
+            var futures = new ArrayList<Future<?>>();
+            for (var page : pages) {
+                int delay = random.nextInt(4);
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(delay);
+                    writer.accept(page);
+                    return null;
+                }));
+            }
+            for (var future : futures) future.get();
+            writer.finish();
+
+            assertEquals(40, writer.pagesWritten());
+            assertTrue(writer.peakBuffered() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(comparable(OcrToSemanticXHtml.combineMultipleResults(pages, "doc.pdf")),
+            comparable(withoutSlotPadding(Files.readString(file))));
+    }
+
+    @Test
+    void heapStaysFlatOn5000Pages() throws Exception {
+        var memory = ManagementFactory.getMemoryMXBean();
+        var file = tempDir.resolve("book.xhtml");
+        long heapAt500 = 0;
+
+        try (var session = new SyntheticOcrEngine(0, 10, 30).openSession(0);
+             var writer = StreamingCombinedXhtmlWriter.create(file, "book.pdf", 4)) {
+            for (int p = 1; p <= 5000; p++) {
+                writer.accept(page(session, p));
+                if (p == 500) {
+                    heapAt500 = usedHeapAfterGc(memory);
+                }
+            }
+            writer.finish();
+        }
+        long heapAt5000 = usedHeapAfterGc(memory);
+        long fileSize = Files.size(file);
+
+        // The document is far larger than any growth we allow; building it in memory would fail this
+        assertTrue(fileSize > 100L * 1024 * 1024, "Output only " + fileSize + " bytes");
+        assertTrue(heapAt5000 - heapAt500 < 16L * 1024 * 1024,
+            String.format("Heap grew from %d to %d bytes while writing %d bytes", heapAt500, heapAt5000, fileSize));
+        assertTrue(Files.readString(file).contains("<meta name=\"pagesCount\" content=\"5000\""));
+    }
+
+    private static long usedHeapAfterGc(java.lang.management.MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    @Test
+    void resumeDiscardsUnrecordedBytes() throws Exception {
+        var pages = new ArrayList<PagedOcrResult>();
+        try (var session = new SyntheticOcrEngine(0, 3, 2).openSession(0)) {
+            for (int p = 1; p <= 4; p++) pages.add(page(session, p));
+        }
+        var file = tempDir.resolve("doc.xhtml");
+
+        StreamingCombinedXhtmlWriter.State state;
+        try (var writer = StreamingCombinedXhtmlWriter.create(file, "doc.pdf", 1)) {
+            writer.accept(pages.get(0));
+            writer.accept(pages.get(1));
+            state = writer.state();
+            writer.accept(pages.get(2)); // written, but never recorded
+        }
+
+        try (var writer = StreamingCombinedXhtmlWriter.resume(file, "doc.pdf", 1, state)) {
+            writer.accept(pages.get(2));
+            writer.accept(pages.get(3));
+            writer.finish();
+        }
+
+        assertEquals(comparable(OcrToSemanticXHtml.combineMultipleResults(List.copyOf(pages), "doc.pdf")),
+            comparable(withoutSlotPadding(Files.readString(file))));
+    }
+}
@@ -0,0 +1,56 @@
+package xyz.jphil.win11_oneocr.tools.folder;
+
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+import xyz.jphil.win11_oneocr.tools.pdf.TestPdfs;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Wall-clock time of a folder run (images and a PDF) on the synthetic engine as --threads grows;
+ * FolderConcurrencyTest checks the scheduling, this shows what it buys.
+ *
+ * Run after test-compile:
+ * java -cp target/test-classes:target/classes:[test classpath] xyz.jphil.win11_oneocr.tools.folder.FolderConcurrencyBenchmark [images] [latencyMs] [maxThreads]
+ */
+public class FolderConcurrencyBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int images = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int latencyMs = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        System.out.printf("%d images + 2 PDF pages, %dms per recognition, %d cores%n",
+            images, latencyMs, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %12s %12s%n", "threads", "ms", "speedup");
+
+        long serialMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            var dir = folder(images);
+            long start = System.nanoTime();
+            int exitCode = new CommandLine(new OcrTool()).execute(
+                "--engine", "synthetic:" + latencyMs, "--threads", String.valueOf(threads), "folder", dir.toString());
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (exitCode != 0) {
+                throw new IllegalStateException("Folder run failed with exit code " + exitCode);
+            }
+            if (threads == 1) {
+                serialMillis = millis;
+            }
+            System.out.printf("%-8d %12d %12.2f%n", threads, millis, (double) serialMillis / Math.max(1, millis));
+        }
+    }
+
+    private static Path folder(int images) throws Exception {
+        var dir = Files.createTempDirectory("folder-benchmark");
+        var image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < images; i++) {
+            ImageIO.write(image, "png", dir.resolve("receipt-" + i + ".png").toFile());
+        }
+        TestPdfs.generate(dir.resolve("doc.pdf"), 2);
+        return dir;
+    }
+}
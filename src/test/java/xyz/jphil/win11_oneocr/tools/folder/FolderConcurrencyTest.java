@@ -0,0 +1,60 @@
+package xyz.jphil.win11_oneocr.tools.folder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+import xyz.jphil.win11_oneocr.tools.SyntheticOcrEngine;
+import xyz.jphil.win11_oneocr.tools.pdf.TestPdfs;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Folder runs process several files at once, all OCR going through the shared workers
+ */
+public class FolderConcurrencyTest {
+
+    private static final int IMAGES = 24;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void ocrRunsOnTheThreadsWorkersAtOnce() throws Exception {
+        for (int threads : new int[] {1, 4}) {
+            var dir = folder("threads-" + threads);
+            var engine = ocr(dir, threads);
+
+            for (int i = 0; i < IMAGES; i++) {
+                assertTrue(Files.exists(dir.resolve("receipt-" + i + ".png.oneocr.txt")), "receipt-" + i);
+            }
+            assertTrue(Files.exists(dir.resolve("doc.pdf.oneocr").resolve("doc.pdf.oneocr.txt")));
+            // 26 recognitions of 100ms queued by 2x --threads files: every worker busy at once, never more
+            assertEquals(threads, engine.peakConcurrentCalls(), "recognitions at once with --threads " + threads);
+            assertEquals(threads, engine.sessionsOpened(), "one session per worker, PDFs included");
+        }
+    }
+
+    private Path folder(String name) throws Exception {
+        var dir = Files.createDirectories(tempDir.resolve(name));
+        var image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < IMAGES; i++) {
+            ImageIO.write(image, "png", dir.resolve("receipt-" + i + ".png").toFile());
+        }
+        TestPdfs.generate(dir.resolve("doc.pdf"), 2);
+        return dir;
+    }
+
+    private static SyntheticOcrEngine ocr(Path dir, int threads) throws Exception {
+        var tool = new OcrTool();
+        int exitCode = new CommandLine(tool).execute(
+            "--engine", "synthetic:100", "--threads", String.valueOf(threads), "folder", dir.toString());
+        assertEquals(0, exitCode);
+        return (SyntheticOcrEngine) tool.getEngine();
+    }
+}
@@ -0,0 +1,121 @@
+package xyz.jphil.win11_oneocr.tools.folder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.jphil.win11_oneocr.tools.pdf.TestPdfs;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Folder reruns skip inputs the manifest records as unchanged; --force processes them again
+ */
+public class OutputManifestTest {
+
+    private static final FileTime LONG_AGO = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void entriesSurviveReopenAndTornTailIsDropped() throws Exception {
+        var input = Files.createDirectories(tempDir.resolve("in"));
+        var scan = Files.writeString(input.resolve("scan one.png"), "pixels");
+        try (var manifest = OutputManifest.open(tempDir, input)) {
+            manifest.record(scan, 6, 1000, 0x1234abcd);
+            assertTrue(manifest.unchanged(scan, 6, 1000));
+        }
+        Files.writeString(tempDir.resolve(OutputManifest.FILE_NAME), "7 2000 ff", StandardOpenOption.APPEND);
+
+        try (var manifest = OutputManifest.open(tempDir, input)) {
+            assertEquals(1, manifest.size());
+            assertEquals(new OutputManifest.Entry(6, 1000, 0x1234abcd, OutputManifest.TOOL_VERSION, "scan one.png"),
+                manifest.entry(scan));
+            assertFalse(manifest.unchanged(scan, 6, 2000), "touched");
+            assertTrue(manifest.sameContent(scan, 6, 0x1234abcd), "but same content");
+            assertFalse(manifest.unchanged(input.resolve("other.png"), 6, 1000));
+            manifest.record(scan, 6, 2000, 0x1234abcd);
+        }
+        try (var manifest = OutputManifest.open(tempDir, input)) {
+            assertTrue(manifest.unchanged(scan, 6, 2000), "later lines win");
+        }
+        assertEquals(2, Files.readAllLines(tempDir.resolve(OutputManifest.FILE_NAME)).size());
+    }
+
+    @Test
+    void rerunsProcessOnlyChangedFiles() throws Exception {
+        var input = Files.createDirectories(tempDir.resolve("receipts"));
+        var images = new ArrayList<Path>();
+        for (int i = 0; i < 4; i++) {
+            images.add(image(input.resolve("r" + i + ".png"), Color.WHITE));
+        }
+        TestPdfs.generate(input.resolve("doc.pdf"), 2);
+        assertEquals(0, ocr(input));
+        var outputs = new ArrayList<Path>();
+        for (var image : images) {
+            outputs.add(input.resolve(image.getFileName() + ".oneocr.txt"));
+        }
+        var pdfOutput = input.resolve("doc.pdf.oneocr").resolve("doc.pdf.oneocr.txt");
+
+        // Unchanged: nothing is written again
+        age(outputs);
+        age(List.of(pdfOutput));
+        assertEquals(0, ocr(input));
+        assertEquals(List.of(false, false, false, false), written(outputs));
+        assertEquals(LONG_AGO, Files.getLastModifiedTime(pdfOutput));
+
+        // A new image in place of r1 and a touched r2: only r1 is OCRed again
+        image(images.get(1), Color.BLACK);
+        Files.setLastModifiedTime(images.get(2), FileTime.from(Instant.now().plusSeconds(60)));
+        assertEquals(0, ocr(input));
+        assertEquals(List.of(false, true, false, false), written(outputs));
+
+        // A deleted output is produced again
+        age(outputs);
+        Files.delete(outputs.get(3));
+        assertEquals(0, ocr(input));
+        assertEquals(List.of(false, false, false, true), written(outputs));
+
+        age(outputs);
+        assertEquals(0, ocr(input, "--force"));
+        assertEquals(List.of(true, true, true, true), written(outputs));
+    }
+
+    private static Path image(Path file, Color color) throws Exception {
+        var image = new BufferedImage(48, 24, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 48, 24);
+        g.dispose();
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static void age(List<Path> files) throws Exception {
+        for (var file : files) {
+            Files.setLastModifiedTime(file, LONG_AGO);
+        }
+    }
+
+    private static List<Boolean> written(List<Path> outputs) throws Exception {
+        var written = new ArrayList<Boolean>();
+        for (var output : outputs) {
+            written.add(!Files.getLastModifiedTime(output).equals(LONG_AGO));
+        }
+        return written;
+    }
+
+    private static int ocr(Path folder, String... options) {
+        return TestPdfs.runOcr("synthetic:0", List.of("folder", folder.toString()), options);
+    }
+}
@@ -0,0 +1,78 @@
+package xyz.jphil.win11_oneocr.tools.folder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.jphil.win11_oneocr.tools.pdf.PdfMemoryMode;
+import xyz.jphil.win11_oneocr.tools.pdf.TestPdfs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Files are queued as the walk finds them; PDF page counts arrive afterwards and correct the totals
+ */
+public class ScopeDiscoveryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void filesStreamInWalkOrderAndPageCountsFollow() throws Exception {
+        Files.createDirectories(tempDir.resolve("b/deep"));
+        Files.write(tempDir.resolve("a.png"), new byte[10]);
+        TestPdfs.generate(tempDir.resolve("b/deep/long.pdf"), 7);
+        TestPdfs.generate(tempDir.resolve("b/short.pdf"), 2);
+        Files.writeString(tempDir.resolve("b/notes.txt"), "not processed");
+        Files.write(tempDir.resolve("c.jpg"), new byte[10]);
+
+        var processor = new FileProcessor(tempDir, true, false);
+        var streamed = new ArrayList<Path>();
+        var stats = processor.discoverFiles(streamed::add);
+        assertEquals(processor.discoverFiles(), streamed);
+        assertEquals(List.of("a.png", "long.pdf", "short.pdf", "c.jpg"),
+            streamed.stream().map(file -> file.getFileName().toString()).toList());
+        assertEquals(2, stats.imageFiles());
+        assertEquals(2, stats.pdfFiles());
+        assertEquals(2, new FileProcessor(tempDir, false, false).discoverFiles().size(), "top level only");
+
+        var queue = new WorkQueue();
+        new ScopeDiscoveryTask(queue, processor, PdfMemoryMode.HEAP, null, false).run();
+        assertTrue(queue.isDiscoveryComplete());
+        assertEquals(4, queue.getTotalFiles());
+
+        // Small PDFs are estimated at one page until counted
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (queue.getPageCountReliability() < 1.0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1.0, queue.getPageCountReliability());
+        assertEquals(1 + 7 + 2 + 1, queue.getTotalPages());
+        assertEquals(1 + 7 + 2 + 1, queue.getProgressMetrics().totalPages());
+
+        var taken = new ArrayList<WorkItem>();
+        WorkItem item;
+        while ((item = queue.nextWork()) != null) {
+            taken.add(item);
+        }
+        assertEquals(streamed, taken.stream().map(WorkItem::filePath).toList());
+        assertTrue(queue.isStarted(taken.get(1)));
+    }
+
+    @Test
+    void pdfsTakenBeforeTheirCountKeepTheEstimate() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 3);
+        var queue = new WorkQueue();
+        var item = new WorkItem(pdf, FileProcessor.FileType.PDF, Files.size(pdf), 1, false);
+        queue.addWork(item);
+        assertSame(item, queue.nextWork());
+
+        assertTrue(queue.isStarted(item), "the page count is skipped: processing parses the PDF anyway");
+        queue.resolvePageCount(item, 3);
+        assertEquals(3, queue.getTotalPages());
+        assertEquals(1.0, queue.getPageCountReliability());
+    }
+}
@@ -0,0 +1,80 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Journal records survive restarts; torn and corrupted lines are ignored
+ */
+public class CheckpointJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static CheckpointJournal.PageRecord page(int page) {
+        return new CheckpointJournal.PageRecord(page, List.of(
+            CheckpointJournal.Artifact.of("txt", ("page " + page).getBytes(StandardCharsets.UTF_8)),
+            CheckpointJournal.Artifact.of("xhtml", ("<section>" + page + "</section>").getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void recordsSurviveReopenAndTornTailIsDropped() throws Exception {
+        var file = tempDir.resolve("doc.pdf.oneocr.journal");
+        try (var journal = CheckpointJournal.open(file)) {
+            assertFalse(journal.existed());
+            for (int p = 1; p <= 3; p++) journal.record(page(p));
+        }
+        // A crash in the middle of the next record
+        Files.writeString(file, "4 txt:6:1f2e", StandardOpenOption.APPEND);
+
+        try (var journal = CheckpointJournal.open(file)) {
+            assertTrue(journal.existed());
+            assertEquals(3, journal.completedPages());
+            assertEquals(page(2), journal.page(2));
+            assertNull(journal.page(4));
+            journal.record(page(4));
+        }
+
+        try (var journal = CheckpointJournal.open(file)) {
+            assertEquals(4, journal.completedPages());
+            assertEquals(page(4), journal.page(4));
+        }
+        assertEquals(4, Files.readAllLines(file).size());
+    }
+
+    @Test
+    void corruptedAndRetractedPagesAreNotComplete() throws Exception {
+        var file = tempDir.resolve("doc.pdf.oneocr.journal");
+        try (var journal = CheckpointJournal.open(file)) {
+            for (int p = 1; p <= 3; p++) journal.record(page(p));
+            journal.retract(3);
+            assertNull(journal.page(3));
+        }
+        // Flip the size of page 1's txt; the line checksum no longer matches
+        var lines = Files.readAllLines(file);
+        lines.set(0, lines.get(0).replace("txt:6:", "txt:7:"));
+        Files.write(file, lines);
+
+        try (var journal = CheckpointJournal.open(file)) {
+            assertNull(journal.page(1));
+            assertNotNull(journal.page(2));
+            assertNull(journal.page(3));
+        }
+    }
+
+    @Test
+    void artifactMatchesOnlyIdenticalContent() {
+        var artifact = CheckpointJournal.Artifact.of("txt", "abc".getBytes(StandardCharsets.UTF_8));
+        assertTrue(artifact.matches("abc".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(artifact.matches("abd".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(artifact.matches("abcd".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,163 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Single-image pages hand out their embedded JPEG unchanged; anything else is rendered
+ */
+public class EmbeddedPageImageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void scannedPageYieldsTheEmbeddedJpeg() throws Exception {
+        var pdf = TestPdfs.scanned(tempDir.resolve("scan.pdf"), 2, 620);
+        try (var document = Loader.loadPDF(pdf.toFile())) {
+            var image = EmbeddedPageImage.find(document, 1, true, false);
+            assertNotNull(image);
+            assertEquals("jpg", image.extension());
+            assertEquals(620, image.width());
+            assertEquals(877, image.height());
+            assertArrayEquals(TestPdfs.scan(2, 620, 877), image.content());
+            assertNull(image.pixels());
+        }
+    }
+
+    @Test
+    void turnedScanIsDecodedAsDisplayed() throws Exception {
+        // Portrait scan with a red top-left corner on a page shown in landscape (/Rotate 90)
+        var scan = new BufferedImage(200, 300, BufferedImage.TYPE_INT_RGB);
+        var g = scan.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 200, 300);
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, 40, 40);
+        g.dispose();
+        var pdf = tempDir.resolve("turned.pdf");
+        try (var document = new PDDocument()) {
+            var page = new PDPage(new PDRectangle(200, 300));
+            page.setRotation(90);
+            document.addPage(page);
+            try (var content = new PDPageContentStream(document, page)) {
+                content.drawImage(LosslessFactory.createFromImage(document, scan), 0, 0, 200, 300);
+            }
+            document.save(pdf.toFile());
+        }
+
+        try (var document = Loader.loadPDF(pdf.toFile())) {
+            var image = EmbeddedPageImage.find(document, 0, true, true);
+            assertNotNull(image);
+            assertNull(image.content(), "only JPEG/JPEG 2000 streams are copied");
+            assertEquals(300, image.width());
+            assertEquals(200, image.height());
+            assertEquals(300, image.renderedWidth(72));
+            assertEquals(200, image.renderedHeight(72));
+
+            // Same orientation as the rendered page: the corner ends up top right
+            var rendered = new PDFRenderer(document).renderImageWithDPI(0, 72);
+            assertEquals(Color.RED.getRGB(), rendered.getRGB(280, 20));
+            assertEquals(Color.RED.getRGB(), image.pixels().getRGB(280, 20) | 0xFF000000);
+            assertEquals(Color.WHITE.getRGB(), image.pixels().getRGB(20, 20) | 0xFF000000);
+        }
+    }
+
+    @Test
+    void otherPagesAreRendered() throws Exception {
+        var text = TestPdfs.generate(tempDir.resolve("text.pdf"), 1);
+        try (var document = Loader.loadPDF(text.toFile())) {
+            assertNull(EmbeddedPageImage.find(document, 0, true, true));
+        }
+
+        // A scan placed with a margin, and a scan with a visible caption
+        var framed = tempDir.resolve("framed.pdf");
+        try (var document = new PDDocument()) {
+            var box = PDRectangle.A4;
+            for (int p = 0; p < 2; p++) {
+                var page = new PDPage(box);
+                document.addPage(page);
+                var image = JPEGFactory.createFromByteArray(document, TestPdfs.scan(1, 400, 566));
+                try (var content = new PDPageContentStream(document, page)) {
+                    if (p == 0) {
+                        content.drawImage(image, 36, 36, box.getWidth() - 72, box.getHeight() - 72);
+                    } else {
+                        content.drawImage(image, 0, 0, box.getWidth(), box.getHeight());
+                        content.addRect(10, 10, 50, 20);
+                        content.fill();
+                    }
+                }
+            }
+            document.save(framed.toFile());
+        }
+        try (var document = Loader.loadPDF(framed.toFile())) {
+            assertNull(EmbeddedPageImage.find(document, 0, true, true));
+            assertNull(EmbeddedPageImage.find(document, 1, true, true));
+        }
+    }
+
+    @Test
+    void passthroughPreviewKeepsNativeSize() throws Exception {
+        var pdf = TestPdfs.scanned(tempDir.resolve("scan.pdf"), 3, 620);
+        var naming = new PdfNaming("scan.pdf", 3);
+        var out = tempDir.resolve("scan.pdf.oneocr");
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0:6:8",
+            "pdf", pdf.toString(), "--preview-passthrough"));
+
+        assertArrayEquals(TestPdfs.scan(3, 620, 877), Files.readAllBytes(out.resolve(naming.page(3, "jpg"))));
+        assertFalse(Files.exists(out.resolve(naming.page(3, "webp"))));
+        var xhtml = Files.readString(out.resolve(naming.combined("xhtml")));
+        assertTrue(xhtml.contains("srcName=\"scan.pdf.pg2.jpg\""));
+        assertTrue(xhtml.contains("imgWidth=\"620\""), "page size should be the scan's, not the rendering's");
+        assertTrue(xhtml.contains("imgHeight=\"877\""));
+
+        // A resumed run accepts the copied previews
+        var written = Files.getLastModifiedTime(out.resolve(naming.page(1, "jpg")));
+        Files.delete(out.resolve(naming.combined("xhtml")));
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0:6:8",
+            "pdf", pdf.toString(), "--preview-passthrough"));
+        assertEquals(written, Files.getLastModifiedTime(out.resolve(naming.page(1, "jpg"))));
+    }
+
+    @Test
+    void scannedPagesAreNotRenderedForOcr() throws Exception {
+        var pdf = TestPdfs.scanned(tempDir.resolve("scan.pdf"), 2, 620);
+        var naming = new PdfNaming("scan.pdf", 2);
+        var out = tempDir.resolve("scan.pdf.oneocr");
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0:6:8",
+            "pdf", pdf.toString(), "--target-dpi", "100"));
+        var direct = Files.readString(out.resolve(naming.combined("xhtml")));
+
+        // Boxes land in the preview's pixels, as if the page had been rendered at the preview DPI
+        assertTrue(direct.contains("imgWidth=\"826\""));
+        assertTrue(direct.contains("imgHeight=\"1169\""));
+        var preview = ImageIO.read(out.resolve(naming.page(1, "webp")).toFile());
+        assertEquals(826, preview.getWidth());
+        assertEquals(1169, preview.getHeight());
+
+        var renderedOut = tempDir.resolve("rendered");
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0:6:8",
+            "pdf", pdf.toString(), "--target-dpi", "100", "--always-render", "-o", renderedOut.toString()));
+        var rendered = Files.readString(renderedOut.resolve(naming.combined("xhtml")));
+        assertTrue(rendered.contains("imgWidth=\"826\""));
+        assertTrue(rendered.contains("imgHeight=\"1169\""));
+    }
+}
@@ -0,0 +1,103 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Each page gets DPIs for its own size and content, within the megapixel cap
+ */
+public class PageResolutionPlannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void previewDpiFollowsEachPageSize() {
+        // 1.2 MB per page: an A4 page gets ~90 DPI, an A3 fold-out the minimum, a receipt the maximum
+        var planner = new PageResolutionPlanner(null, 1_175_000, 200, 25);
+        var a4 = planner.plan(PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight(), 0);
+        var a3 = planner.plan(PDRectangle.A3.getWidth(), PDRectangle.A3.getHeight(), 0);
+        var receipt = planner.plan(230, 400, 0);
+        assertTrue(a3.previewDpi() < a4.previewDpi() && a4.previewDpi() < receipt.previewDpi());
+        assertEquals(PdfInfoUtil.MIN_DPI, a3.previewDpi());
+        assertEquals(PdfInfoUtil.DEFAULT_MAX_DPI, receipt.previewDpi());
+        assertEquals(200, a3.ocrDpi());
+        assertFalse(a3.capped());
+
+        // A fixed preview DPI applies everywhere
+        assertEquals(150, new PageResolutionPlanner(150, 120_000, 200, 25).plan(230, 400, 0).previewDpi());
+    }
+
+    @Test
+    void pagesStayWithinTheMegapixelCap() {
+        var planner = new PageResolutionPlanner(300, 0, 400, 25);
+        var a0 = planner.plan(2384, 3370, 0);
+        assertTrue(a0.capped());
+        assertTrue(a0.previewDpi() <= a0.ocrDpi());
+        long width = (long) Math.floor(2384 * a0.ocrDpi() / 72);
+        long height = (long) Math.floor(3370 * a0.ocrDpi() / 72);
+        assertTrue(width * height <= 25_000_000, width + "x" + height);
+        assertTrue(width * height > 24_000_000, "the cap is used, not undershot");
+        assertFalse(planner.plan(PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight(), 0).capped()); // 15.5 MP at 400 DPI
+
+        // Decoded scans over the cap are scaled down
+        var scan = new BufferedImage(8000, 6000, BufferedImage.TYPE_BYTE_GRAY);
+        var fitted = planner.fit(scan);
+        assertTrue((long) fitted.getWidth() * fitted.getHeight() <= 25_000_000);
+        assertEquals(8000.0 / 6000, (double) fitted.getWidth() / fitted.getHeight(), 0.01);
+        var small = new BufferedImage(800, 600, BufferedImage.TYPE_BYTE_GRAY);
+        assertSame(small, planner.fit(small));
+    }
+
+    @Test
+    void scansAreNotRenderedAboveTheirResolution() {
+        var planner = new PageResolutionPlanner(null, 120_000, 300, 25);
+        var scan150 = planner.plan(PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight(), 150);
+        assertEquals(150, scan150.ocrDpi());
+        // ... but never below the preview DPI
+        assertEquals(scan150.previewDpi(), planner.plan(PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight(), 50).ocrDpi());
+    }
+
+    @Test
+    void mixedPageSizesAreRenderedPerPage() throws Exception {
+        var pdf = tempDir.resolve("mixed.pdf");
+        try (var document = new PDDocument()) {
+            var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (var size : new PDRectangle[] {PDRectangle.A4, PDRectangle.A3, new PDRectangle(230, 400)}) {
+                var page = new PDPage(size);
+                document.addPage(page);
+                try (var content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 12);
+                    content.newLineAtOffset(20, size.getHeight() - 40);
+                    content.showText("Total 12.50");
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+        var naming = new PdfNaming("mixed.pdf", 3);
+        var out = tempDir.resolve("mixed.pdf.oneocr");
+        // A4 at 200 DPI is 3.9 MP; a 2 MP cap lowers A4 and A3 but leaves the receipt at 200 DPI
+        assertEquals(0, new CommandLine(new OcrTool()).execute("--engine", "synthetic:0:6:8",
+            "pdf", pdf.toString(), "--target-dpi", "100", "--max-megapixels", "2"));
+
+        assertTrue(Files.readString(out.resolve(naming.page(1, "xhtml"))).contains("imgWidth=\"826\""));
+        assertTrue(Files.readString(out.resolve(naming.page(2, "xhtml"))).contains("imgWidth=\"1169\""));
+        assertTrue(Files.readString(out.resolve(naming.page(3, "xhtml"))).contains("imgWidth=\"319\""));
+    }
+}
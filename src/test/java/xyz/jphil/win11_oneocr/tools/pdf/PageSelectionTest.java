@@ -0,0 +1,124 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriterTest.comparable;
+
+/**
+ * Page lists and shards split a document across runs; whichever finishes it (or --merge) assembles it
+ */
+public class PageSelectionTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pageListsAndShardsAreDeterministic() {
+        var selection = PageSelection.parse("1-3, 7,9-", null, 10);
+        assertEquals(List.of(1, 2, 3, 7, 9, 10), pages(selection, 10));
+        assertEquals(List.of(1, 2), pages(PageSelection.parse("-2", null, 10), 10));
+        assertEquals(List.of(8, 9, 10), pages(PageSelection.parse("8-20", null, 10), 10));
+
+        // Every n-th selected page; the shards cover the selection exactly once
+        assertEquals(List.of(2, 9), pages(PageSelection.parse("1-3,7,9-", "2/3", 10), 10));
+        var covered = new ArrayList<Integer>();
+        for (int shard = 1; shard <= 4; shard++) {
+            covered.addAll(pages(PageSelection.parse(null, shard + "/4", 10), 10));
+        }
+        assertEquals(IntStream.rangeClosed(1, 10).boxed().toList(), covered.stream().sorted().toList());
+
+        assertEquals("shard-2of4", PageSelection.parse(null, "2/4", 10).tag());
+        assertNull(PageSelection.parse("1-", "1/1", 10).tag(), "the whole document");
+        assertNotEquals(PageSelection.parse("1-3", null, 10).tag(), PageSelection.parse("1-4", null, 10).tag());
+
+        for (var bad : new String[] {"0", "5-3", "x", "1,,2", "11"}) {
+            assertThrows(IllegalArgumentException.class, () -> PageSelection.parse(bad, null, 10), bad);
+        }
+        for (var bad : new String[] {"3/2", "0/2", "1", "a/b"}) {
+            assertThrows(IllegalArgumentException.class, () -> PageSelection.parse(null, bad, 10), bad);
+        }
+    }
+
+    @Test
+    void parallelShardsProduceTheWholeDocument() throws Exception {
+        var whole = tempDir.resolve("whole");
+        var sharded = tempDir.resolve("sharded");
+        Files.createDirectories(whole);
+        Files.createDirectories(sharded);
+        TestPdfs.generate(whole.resolve("doc.pdf"), 7);
+        Files.copy(whole.resolve("doc.pdf"), sharded.resolve("doc.pdf"));
+        var naming = new PdfNaming("doc.pdf", 7);
+        assertEquals(0, ocr(whole.resolve("doc.pdf")));
+
+        var pool = Executors.newFixedThreadPool(3);
+        try {
+            var runs = new ArrayList<Future<Integer>>();
+            for (int shard = 1; shard <= 3; shard++) {
+                var spec = shard + "/3";
+                runs.add(pool.submit(() -> ocr(sharded.resolve("doc.pdf"), "--shard", spec)));
+            }
+            for (var run : runs) {
+                assertEquals(0, run.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        var wholeOut = whole.resolve("doc.pdf.oneocr");
+        var shardedOut = sharded.resolve("doc.pdf.oneocr");
+        assertEquals(Files.readString(wholeOut.resolve(naming.combined("txt"))),
+            Files.readString(shardedOut.resolve(naming.combined("txt"))));
+        assertEquals(comparable(Files.readString(wholeOut.resolve(naming.combined("xhtml")))),
+            comparable(Files.readString(shardedOut.resolve(naming.combined("xhtml")))));
+        assertTrue(Files.exists(shardedOut.resolve(naming.combined("shard-2of3.journal"))));
+    }
+
+    @Test
+    void partialRunsWaitForAnExplicitMerge() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 5);
+        var naming = new PdfNaming("doc.pdf", 5);
+        var out = tempDir.resolve("doc.pdf.oneocr");
+
+        assertEquals(0, ocr(pdf, "--pages", "1-3"));
+        assertTrue(Files.exists(out.resolve(naming.page(3, "xhtml"))));
+        assertFalse(Files.exists(out.resolve(naming.page(4, "xhtml"))));
+        assertFalse(Files.exists(out.resolve(naming.combined("xhtml"))));
+        assertEquals(1, ocr(pdf, "--merge"), "pages 4-5 are missing");
+
+        assertEquals(0, ocr(pdf, "--pages", "4-"));
+        // Merged by the run that finished the last pages
+        var pageTexts = new ArrayList<String>();
+        for (int page = 1; page <= 5; page++) {
+            pageTexts.add(Files.readString(out.resolve(naming.page(page, "txt"))));
+        }
+        assertEquals(String.join("\n", pageTexts), Files.readString(out.resolve(naming.combined("txt"))));
+        var merged = Files.readString(out.resolve(naming.combined("xhtml")));
+        assertTrue(merged.contains("doc.pdf.pg1.webp") && merged.contains("doc.pdf.pg5.webp"));
+
+        // An explicit merge rebuilds lost combined outputs without OCR
+        Files.delete(out.resolve(naming.combined("xhtml")));
+        Files.delete(out.resolve(naming.combined("txt")));
+        var written = Files.getLastModifiedTime(out.resolve(naming.page(2, "json")));
+        assertEquals(0, ocr(pdf, "--merge"));
+        assertEquals(comparable(merged), comparable(Files.readString(out.resolve(naming.combined("xhtml")))));
+        assertEquals(written, Files.getLastModifiedTime(out.resolve(naming.page(2, "json"))));
+    }
+
+    private static List<Integer> pages(PageSelection selection, int pageCount) {
+        return IntStream.rangeClosed(1, pageCount).filter(selection::contains).boxed().toList();
+    }
+
+    private static int ocr(Path pdf, String... options) {
+        return TestPdfs.runOcr("synthetic:0:6:8", List.of("pdf", pdf.toString()), options);
+    }
+}
@@ -0,0 +1,106 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A PDF is parsed once and its documents are reused, exclusively, until evicted or the file changes
+ */
+public class PdfDocumentCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void returnedDocumentsAreReused() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 2).toFile();
+        var cache = new PdfDocumentCache(4, Long.MAX_VALUE);
+
+        var first = cache.acquire(pdf);
+        var document = first.document();
+        // Leases are exclusive: a second one at the same time gets a document of its own
+        try (var second = cache.acquire(pdf)) {
+            assertNotSame(document, second.document());
+        }
+        first.close();
+        assertEquals(2, cache.loads());
+
+        try (var again = cache.acquire(pdf)) {
+            assertSame(document, again.document(), "most recently returned document first");
+            assertEquals(2, again.document().getNumberOfPages());
+        }
+        assertEquals(2, cache.loads());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void changedFilesAreLoadedAfresh() throws Exception {
+        var file = TestPdfs.generate(tempDir.resolve("doc.pdf"), 2);
+        var cache = new PdfDocumentCache(4, Long.MAX_VALUE);
+        PDDocument old;
+        try (var lease = cache.acquire(file.toFile())) {
+            old = lease.document();
+        }
+
+        TestPdfs.generate(file, 3);
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+        try (var lease = cache.acquire(file.toFile())) {
+            assertEquals(3, lease.document().getNumberOfPages());
+        }
+        assertTrue(old.getDocument().isClosed(), "the outdated document is closed");
+        assertEquals(1, cache.idleDocuments());
+    }
+
+    @Test
+    void idleDocumentsAreEvictedByCountAndSize() throws Exception {
+        var a = TestPdfs.generate(tempDir.resolve("a.pdf"), 1).toFile();
+        var b = TestPdfs.generate(tempDir.resolve("b.pdf"), 1).toFile();
+        var c = TestPdfs.generate(tempDir.resolve("c.pdf"), 1).toFile();
+
+        var byCount = new PdfDocumentCache(2, Long.MAX_VALUE);
+        PDDocument oldest;
+        try (var lease = byCount.acquire(a)) {
+            oldest = lease.document();
+        }
+        byCount.acquire(b).close();
+        byCount.acquire(c).close();
+        assertEquals(2, byCount.idleDocuments());
+        assertTrue(oldest.getDocument().isClosed(), "least recently used goes first");
+
+        // Room for about one document: returning the second closes the first
+        var bySize = new PdfDocumentCache(10, a.length() + a.length() / 2);
+        bySize.acquire(a).close();
+        bySize.acquire(b).close();
+        assertEquals(1, bySize.idleDocuments());
+        assertEquals(0, bySize.hits());
+        bySize.acquire(b).close();
+        assertEquals(1, bySize.hits());
+    }
+
+    @Test
+    void infoAndRenderingShareOneParse() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("shared.pdf"), 3).toFile();
+        long loads = PdfDocumentCache.SHARED.loads();
+
+        assertEquals(3, PdfInfoUtil.getPdfInfo(pdf).pageCount());
+        assertEquals(3, PdfInfoUtil.getPdfInfo(pdf).pageCount());
+        try (var renderers = new PdfRendererPool(pdf, 1)) {
+            assertNotNull(renderers.render(2, 36));
+        }
+        assertEquals(loads + 1, PdfDocumentCache.SHARED.loads());
+
+        PdfDocumentCache.SHARED.closeIdle(pdf);
+        try (var lease = PdfDocumentCache.SHARED.acquire(pdf)) {
+            assertEquals(loads + 2, PdfDocumentCache.SHARED.loads(), "closed once done with");
+        }
+        PdfDocumentCache.SHARED.closeIdle(pdf);
+    }
+}
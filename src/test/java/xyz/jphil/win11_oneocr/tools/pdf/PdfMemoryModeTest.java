@@ -0,0 +1,107 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every --pdf-memory mode reads the same document; mapped reads the file through an off-heap mapping
+ */
+public class PdfMemoryModeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mappedFileReadsLikeTheFile() throws Exception {
+        var bytes = new byte[100_000];
+        new Random(7).nextBytes(bytes);
+        var file = Files.write(tempDir.resolve("data.bin"), bytes);
+
+        var mapped = new MappedPdfFile(file);
+        assertEquals(bytes.length, mapped.length());
+        assertEquals(bytes[0] & 0xFF, mapped.read());
+        mapped.seek(50_000);
+        var chunk = new byte[1000];
+        assertEquals(1000, mapped.read(chunk, 0, 1000));
+        assertArrayEquals(Arrays.copyOfRange(bytes, 50_000, 51_000), chunk);
+
+        // Reads stop at the end
+        mapped.seek(bytes.length - 10);
+        assertEquals(10, mapped.read(chunk, 0, 1000));
+        assertTrue(mapped.isEOF());
+        assertEquals(-1, mapped.read());
+
+        try (var view = mapped.createView(1000, 16)) {
+            var viewed = new byte[32];
+            assertEquals(16, view.read(viewed, 0, 32));
+            assertArrayEquals(Arrays.copyOfRange(bytes, 1000, 1016), Arrays.copyOf(viewed, 16));
+        }
+
+        mapped.close();
+        assertTrue(mapped.isClosed());
+        assertThrows(IOException.class, mapped::read);
+    }
+
+    @Test
+    void everyModeRendersTheSamePages() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 2).toFile();
+        var cache = new PdfDocumentCache(8, Long.MAX_VALUE);
+
+        int[] expected = null;
+        for (var mode : PdfMemoryMode.values()) {
+            try (var renderers = new PdfRendererPool(pdf, 1, cache, mode)) {
+                var pixels = pixels(renderers.render(1, 50));
+                if (expected == null) {
+                    expected = pixels;
+                } else {
+                    assertArrayEquals(expected, pixels, mode.label());
+                }
+            }
+        }
+        // One document per mode, none of them outdated by the others
+        assertEquals(3, cache.idleDocuments());
+        try (var lease = cache.acquire(pdf, PdfMemoryMode.MAPPED)) {
+            assertEquals(2, lease.document().getNumberOfPages());
+        }
+        assertEquals(3, cache.loads());
+        cache.clear();
+
+        assertEquals(PdfMemoryMode.MIXED, PdfMemoryMode.parse(" Mixed"));
+        assertThrows(IllegalArgumentException.class, () -> PdfMemoryMode.parse("disk"));
+    }
+
+    @Test
+    void mappedRunsProduceTheSameOutput() throws Exception {
+        var heapDir = Files.createDirectories(tempDir.resolve("heap"));
+        var mappedDir = Files.createDirectories(tempDir.resolve("mapped"));
+        var heapPdf = TestPdfs.scanned(heapDir.resolve("scan.pdf"), 3, 600);
+        var mappedPdf = Files.copy(heapPdf, mappedDir.resolve("scan.pdf"));
+        var naming = new PdfNaming("scan.pdf", 3);
+
+        assertEquals(0, ocr("heap", heapPdf));
+        assertEquals(0, ocr("mapped", mappedPdf));
+        assertEquals(Files.readString(heapDir.resolve("scan.pdf.oneocr").resolve(naming.combined("txt"))),
+            Files.readString(mappedDir.resolve("scan.pdf.oneocr").resolve(naming.combined("txt"))));
+        assertArrayEquals(Files.readAllBytes(heapDir.resolve("scan.pdf.oneocr").resolve(naming.page(2, "webp"))),
+            Files.readAllBytes(mappedDir.resolve("scan.pdf.oneocr").resolve(naming.page(2, "webp"))));
+
+        assertEquals(1, ocr("disk", mappedPdf));
+    }
+
+    private static int ocr(String memoryMode, Path pdf) {
+        return TestPdfs.runOcr("synthetic:0:6:8", "--pdf-memory", memoryMode, "pdf", pdf.toString());
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
@@ -0,0 +1,101 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel rendering through pooled document handles
+ */
+public class PdfRendererPoolTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parallelRenderingMatchesSingleRendererAndStaysBounded() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("sample.pdf"), 12).toFile();
+
+        var expected = new ArrayList<BufferedImage>();
+        try (var document = Loader.loadPDF(pdf)) {
+            var renderer = new PDFRenderer(document);
+            for (int page = 0; page < 12; page++) {
+                expected.add(renderer.renderImageWithDPI(page, 50, ImageType.RGB));
+            }
+        }
+
+        var executor = Executors.newFixedThreadPool(6);
+        try (var renderers = new PdfRendererPool(pdf, 3)) {
+            var futures = new ArrayList<Future<BufferedImage>>();
+            for (int page = 0; page < 12; page++) {
+                final int pageIndex = page;
+                futures.add(executor.submit(() -> renderers.render(pageIndex, 50)));
+            }
+            for (int page = 0; page < 12; page++) {
+                assertSameImage(expected.get(page), futures.get(page).get(), page);
+            }
+            assertTrue(renderers.openedHandles() <= 3, "Opened " + renderers.openedHandles() + " handles");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void poolsSharingABudgetOpenNoMoreDocumentsThanItAllows() throws Exception {
+        var first = TestPdfs.generate(tempDir.resolve("first.pdf"), 8).toFile();
+        var second = TestPdfs.generate(tempDir.resolve("second.pdf"), 2).toFile();
+        var budget = new Semaphore(2);
+
+        var executor = Executors.newFixedThreadPool(6);
+        try {
+            var firstPool = new PdfRendererPool(first, 3, PdfDocumentCache.SHARED, PdfMemoryMode.HEAP, budget);
+            var futures = new ArrayList<Future<BufferedImage>>();
+            for (int page = 0; page < 8; page++) {
+                final int pageIndex = page;
+                futures.add(executor.submit(() -> firstPool.render(pageIndex, 50)));
+            }
+            for (var future : futures) {
+                assertNotNull(future.get());
+            }
+            assertTrue(firstPool.openedHandles() <= 2, "Opened " + firstPool.openedHandles() + " handles");
+            assertEquals(2 - firstPool.openedHandles(), budget.availablePermits());
+
+            // Another file waits for a slot while the budget is held, and gets one when the first file closes
+            int held = budget.availablePermits();
+            budget.acquire(held);
+            try (var secondPool = new PdfRendererPool(second, 3, PdfDocumentCache.SHARED, PdfMemoryMode.HEAP, budget)) {
+                var waiting = executor.submit(() -> secondPool.render(0, 50));
+                assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+                firstPool.close();
+                assertNotNull(waiting.get(10, TimeUnit.SECONDS));
+                assertEquals(1, secondPool.openedHandles());
+            }
+            budget.release(held);
+            assertEquals(2, budget.availablePermits(), "closed pools return their slots");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual, int page) {
+        assertEquals(expected.getWidth(), actual.getWidth(), "Width of page " + page);
+        assertEquals(expected.getHeight(), actual.getHeight(), "Height of page " + page);
+        int w = expected.getWidth();
+        int h = expected.getHeight();
+        assertArrayEquals(expected.getRGB(0, 0, w, h, null, 0, w), actual.getRGB(0, 0, w, h, null, 0, w),
+            "Pixels of page " + page);
+    }
+}
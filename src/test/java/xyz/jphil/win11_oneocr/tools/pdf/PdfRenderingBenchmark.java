@@ -0,0 +1,88 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pages/sec for rendering a generated 500-page PDF: one shared renderer behind a lock
+ * (the previous multi-threaded path) vs. PdfRendererPool with one handle per thread.
+ *
+ * Run after test-compile:
+ * java -cp target/test-classes:target/classes:[test classpath] xyz.jphil.win11_oneocr.tools.pdf.PdfRenderingBenchmark [pages] [dpi] [maxThreads]
+ */
+public class PdfRenderingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int dpi = args.length > 1 ? Integer.parseInt(args[1]) : 150;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        var pdf = TestPdfs.generate(Files.createTempFile("render-benchmark", ".pdf"), pages).toFile();
+        pdf.deleteOnExit();
+        System.out.printf("%d pages at %d DPI, %d cores%n", pages, dpi, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %18s %18s%n", "threads", "locked pages/s", "pooled pages/s");
+
+        // Warm-up pass so class loading and JIT do not count against the first row
+        runLocked(pdf, Math.min(pages, 20), dpi, 1);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double locked = runLocked(pdf, pages, dpi, threads);
+            double pooled = runPooled(pdf, pages, dpi, threads);
+            System.out.printf("%-8d %18.1f %18.1f%n", threads, locked, pooled);
+        }
+    }
+
+    private static double runLocked(java.io.File pdf, int pages, int dpi, int threads) throws Exception {
+        try (var document = Loader.loadPDF(pdf)) {
+            var renderer = new PDFRenderer(document);
+            return pagesPerSecond(pages, threads, page -> {
+                synchronized (renderer) {
+                    renderer.renderImageWithDPI(page, dpi, ImageType.RGB);
+                }
+            });
+        }
+    }
+
+    private static double runPooled(java.io.File pdf, int pages, int dpi, int threads) throws Exception {
+        try (var renderers = new PdfRendererPool(pdf, threads)) {
+            return pagesPerSecond(pages, threads, page -> renderers.render(page, dpi));
+        }
+    }
+
+    private interface PageTask {
+        void render(int page) throws Exception;
+    }
+
+    private static double pagesPerSecond(int pages, int threads, PageTask task) throws Exception {
+        var next = new AtomicInteger(0);
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            var futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                Callable<Void> worker = () -> {
+                    int page;
+                    while ((page = next.getAndIncrement()) < pages) {
+                        task.render(page);
+                    }
+                    return null;
+                };
+                futures.add(executor.submit(worker));
+            }
+            for (var future : futures) {
+                future.get();
+            }
+            return pages / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
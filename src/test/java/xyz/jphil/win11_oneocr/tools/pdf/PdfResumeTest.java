@@ -0,0 +1,122 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.jphil.win11_oneocr.tools.SyntheticOcrEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+import static xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriterTest.comparable;
+
+/**
+ * A resumed run rebuilds the combined outputs from page sidecars, identical to an uninterrupted run
+ */
+public class PdfResumeTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void sidecarRoundTripIsLossless() throws Exception {
+        try (var session = new SyntheticOcrEngine(0, 7, 9).openSession(0)) {
+            var result = session.recognize(613, 877, new byte[] {42, 7});
+            var page = new PagedOcrResult(12, result, "doc.pdf.pg12.webp", 613, 877);
+
+            assertEquals(page, PageSidecar.fromJson(PageSidecar.toJson(page)));
+        }
+    }
+
+    @Test
+    void resumedRunMatchesFreshRun() throws Exception {
+        var fresh = tempDir.resolve("fresh");
+        var resumed = tempDir.resolve("resumed");
+        Files.createDirectories(fresh);
+        Files.createDirectories(resumed);
+        TestPdfs.generate(fresh.resolve("doc.pdf"), 6);
+        Files.copy(fresh.resolve("doc.pdf"), resumed.resolve("doc.pdf"));
+        var naming = new PdfNaming("doc.pdf", 6);
+
+        assertEquals(0, ocr(fresh.resolve("doc.pdf")));
+        var freshOut = fresh.resolve("doc.pdf.oneocr");
+        var resumedOut = resumed.resolve("doc.pdf.oneocr");
+
+        // Interrupted before the merge finished, with page 4 never written
+        Files.createDirectories(resumedOut);
+        try (var files = Files.list(freshOut)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (!name.startsWith(naming.combined("")) && !name.startsWith("doc.pdf.pg4.")) {
+                    Files.copy(file, resumedOut.resolve(name));
+                }
+            }
+        }
+        var page1Preview = resumedOut.resolve(naming.page(1, "webp"));
+        var page1Written = Files.getLastModifiedTime(page1Preview);
+
+        assertEquals(0, ocr(resumed.resolve("doc.pdf")));
+
+        assertEquals(Files.readString(freshOut.resolve(naming.combined("txt"))),
+            Files.readString(resumedOut.resolve(naming.combined("txt"))));
+        assertEquals(comparable(Files.readString(freshOut.resolve(naming.combined("xhtml")))),
+            comparable(Files.readString(resumedOut.resolve(naming.combined("xhtml")))));
+        assertTrue(Files.exists(resumedOut.resolve(naming.page(4, "json"))));
+        assertEquals(page1Written, Files.getLastModifiedTime(page1Preview), "page 1 was processed again");
+    }
+
+    @Test
+    void verifyRedoesPagesWhoseFilesChanged() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 4);
+        var naming = new PdfNaming("doc.pdf", 4);
+        var out = tempDir.resolve("doc.pdf.oneocr");
+        assertEquals(0, ocr(pdf));
+        var expected = Files.readString(out.resolve(naming.combined("xhtml")));
+        var preview = out.resolve(naming.page(2, "webp"));
+        var original = Files.readAllBytes(preview);
+
+        // Same size, different bytes: only the checksum in the journal can tell
+        var damaged = original.clone();
+        damaged[damaged.length / 2] ^= 0x5a;
+        Files.write(preview, damaged);
+
+        assertEquals(0, ocr(pdf));
+        assertArrayEquals(damaged, Files.readAllBytes(preview), "trusted run should not read the preview");
+
+        assertEquals(0, ocr(pdf, "--verify"));
+        assertArrayEquals(original, Files.readAllBytes(preview));
+        assertEquals(comparable(expected), comparable(Files.readString(out.resolve(naming.combined("xhtml")))));
+    }
+
+    @Test
+    void textOnlyRunResumesWithoutPreviews() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 3);
+        var naming = new PdfNaming("doc.pdf", 3);
+        var out = tempDir.resolve("doc.pdf.oneocr");
+        assertEquals(0, ocr(pdf, "--image-format", "none"));
+        var expected = Files.readString(out.resolve(naming.combined("xhtml")));
+        assertTrue(expected.contains("srcName=\"doc.pdf#page=2\""));
+        try (var files = Files.list(out)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".webp")));
+        }
+
+        // Lose the combined outputs; the pages are rehydrated, not redone
+        Files.delete(out.resolve(naming.combined("txt")));
+        Files.delete(out.resolve(naming.combined("xhtml")));
+        var sidecarWritten = Files.getLastModifiedTime(out.resolve(naming.page(1, "json")));
+        assertEquals(0, ocr(pdf, "--image-format", "none"));
+        assertEquals(comparable(expected), comparable(Files.readString(out.resolve(naming.combined("xhtml")))));
+        assertEquals(sidecarWritten, Files.getLastModifiedTime(out.resolve(naming.page(1, "json"))));
+
+        // Asking for previews later redoes the pages that have none
+        assertEquals(0, ocr(pdf, "--image-format", "jpg", "--verify"));
+        assertTrue(Files.size(out.resolve(naming.page(3, "jpg"))) > 0);
+        assertTrue(Files.readString(out.resolve(naming.combined("xhtml"))).contains("srcName=\"doc.pdf.pg2.jpg\""));
+    }
+
+    private static int ocr(Path pdf, String... options) {
+        return TestPdfs.runOcr("synthetic:0:6:8", List.of("--threads", "2", "pdf", pdf.toString()), options);
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.Loader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriterTest.comparable;
+
+/**
+ * Born-digital pages read their words from the text layer; scans and unreadable text still go to OCR
+ */
+public class PdfTextLayerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void textPageIsReadWithPositions() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 2);
+        try (var document = Loader.loadPDF(pdf.toFile())) {
+            var page = PdfTextLayer.extract(document, 1, 144);
+            assertNotNull(page);
+            assertEquals(1190, page.width()); // A4 at 144 DPI
+            assertEquals(1683, page.height());
+
+            var lines = page.ocrResult().lines();
+            assertEquals(46, lines.size());
+            assertEquals("Page 2", lines.get(0).text());
+            assertEquals(12, lines.get(1).words().size());
+            assertTrue(page.ocrResult().text().startsWith("Page 2\n" + lines.get(1).text() + "\n"));
+
+            // "Page" drawn at (60, 780) in PDF points: left edge and baseline in pixels from the top left
+            var heading = lines.get(0).words().get(0).boundingBox();
+            assertEquals(120, heading.x1(), 1);
+            assertEquals((842 - 780) * 2, heading.y3(), 1);
+            assertTrue(heading.y1() < heading.y3() && heading.x2() > heading.x1());
+            assertEquals(1.0, lines.get(0).words().get(0).confidence());
+        }
+    }
+
+    @Test
+    void scansAndUnreadableTextAreLeftToOcr() throws Exception {
+        // Only an invisible text layer over a full-page image
+        var scan = TestPdfs.scanned(tempDir.resolve("scan.pdf"), 1, 400);
+        try (var document = Loader.loadPDF(scan.toFile())) {
+            assertNull(PdfTextLayer.extract(document, 0, 100));
+        }
+
+        assertTrue(PdfTextLayer.isReadable('a'));
+        assertTrue(PdfTextLayer.isReadable('ß'));
+        assertFalse(PdfTextLayer.isReadable(0xFFFD));
+        assertFalse(PdfTextLayer.isReadable(0xE012)); // private use, typical of fonts without a Unicode map
+        assertFalse(PdfTextLayer.isReadable(0x0003));
+    }
+
+    @Test
+    void textLayerPagesSkipOcrAndResume() throws Exception {
+        var pdf = TestPdfs.generate(tempDir.resolve("doc.pdf"), 3);
+        var naming = new PdfNaming("doc.pdf", 3);
+        var out = tempDir.resolve("doc.pdf.oneocr");
+        assertEquals(0, ocr(pdf));
+
+        var xhtml = Files.readString(out.resolve(naming.combined("xhtml")));
+        assertTrue(xhtml.contains("textSource=\"pdfTextLayer\""));
+        assertTrue(xhtml.contains("srcName=\"doc.pdf#page=2\""), "no preview for text-layer pages");
+        assertTrue(Files.readString(out.resolve(naming.page(2, "xhtml"))).contains("textSource=\"pdfTextLayer\""));
+        assertTrue(Files.readString(out.resolve(naming.page(3, "txt"))).startsWith("Page 3\n"));
+        try (var files = Files.list(out)) {
+            assertTrue(files.noneMatch(f -> f.toString().endsWith(".webp")));
+        }
+
+        // The sidecar keeps the provenance for resumed runs
+        assertEquals(PdfTextLayer.SOURCE,
+            PageSidecar.fromJson(Files.readString(out.resolve(naming.page(1, "json")))).textSource());
+        Files.delete(out.resolve(naming.combined("xhtml")));
+        assertEquals(0, ocr(pdf));
+        assertEquals(comparable(xhtml), comparable(Files.readString(out.resolve(naming.combined("xhtml")))));
+    }
+
+    private static int ocr(Path pdf) {
+        return TestPdfs.runOcr("synthetic:0:6:8", "pdf", pdf.toString(), "--text-layer");
+    }
+}
@@ -0,0 +1,102 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import xyz.jphil.win11_oneocr.tools.OcrToSemanticXHtml;
+import xyz.jphil.win11_oneocr.tools.SyntheticOcrEngine;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.jphil.win11_oneocr.tools.PagedOcrData.*;
+import static xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriterTest.comparable;
+import static xyz.jphil.win11_oneocr.tools.StreamingCombinedXhtmlWriterTest.withoutSlotPadding;
+
+/**
+ * Append-only merge must produce the same combined output as the one-shot merge, across restarts
+ */
+public class ProgressiveMergeTest {
+
+    @TempDir
+    Path outputDir;
+
+    private static List<PagedOcrResult> pages(int count) throws Exception {
+        var pages = new ArrayList<PagedOcrResult>();
+        try (var session = new SyntheticOcrEngine(0, 6, 5).openSession(0)) {
+            for (int p = 1; p <= count; p++) {
+                var result = session.recognize(400 + p, 600, new byte[] {(byte) p});
+                pages.add(new PagedOcrResult(p, result, "doc.pdf.pg" + p + ".webp", 400 + p, 600));
+            }
+        }
+        return pages;
+    }
+
+    @Test
+    void resumedMergeMatchesOneShotCombine() throws Exception {
+        var naming = new PdfNaming("doc.pdf", 5);
+        var pages = pages(5);
+
+        try (var merge = ProgressiveMerge.open(outputDir, naming, "doc.pdf")) {
+            for (var page : pages.subList(0, 3)) merge.append(page);
+        }
+
+        // A crash while appending page 4 leaves unrecorded bytes behind
+        Files.writeString(outputDir.resolve(naming.combined("xhtml.partial")), "<section>half a page",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Files.writeString(outputDir.resolve(naming.combined("txt.partial")), "\nhalf",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (var merge = ProgressiveMerge.open(outputDir, naming, "doc.pdf")) {
+            assertEquals(3, merge.pagesMerged());
+            assertThrows(IllegalStateException.class, () -> merge.append(pages.get(4)));
+            for (var page : pages.subList(3, 5)) merge.append(page);
+            merge.finish();
+        }
+
+        var expectedText = String.join("\n", pages.stream().map(p -> p.ocrResult().text()).toList());
+        assertEquals(expectedText, Files.readString(outputDir.resolve(naming.combined("txt"))));
+        assertEquals(comparable(OcrToSemanticXHtml.combineMultipleResults(pages, "doc.pdf")),
+            comparable(withoutSlotPadding(Files.readString(outputDir.resolve(naming.combined("xhtml"))))));
+
+        try (var files = Files.list(outputDir)) {
+            assertEquals(List.of("doc.pdf.oneocr.txt", "doc.pdf.oneocr.xhtml"),
+                files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    void pagesAfterTheLastMarkerAreAppendedAgain() throws Exception {
+        var naming = new PdfNaming("doc.pdf", 6);
+        var pages = pages(6);
+        var marker = outputDir.resolve(naming.combined("progress.json"));
+
+        try (var merge = ProgressiveMerge.open(outputDir, naming, "doc.pdf")) {
+            for (var page : pages.subList(0, 2)) merge.append(page);
+        }
+        var closedMarker = Files.readAllBytes(marker);
+
+        long start = System.currentTimeMillis();
+        var crashed = ProgressiveMerge.open(outputDir, naming, "doc.pdf");
+        for (var page : pages.subList(2, 4)) crashed.append(page);
+        if (System.currentTimeMillis() - start < CheckpointJournal.FORCE_INTERVAL_MS) {
+            assertArrayEquals(closedMarker, Files.readAllBytes(marker), "markers are written in batches, not per page");
+        }
+        // The run dies before its close() could record pages 3 and 4
+        crashed.close();
+        Files.write(marker, closedMarker);
+
+        try (var merge = ProgressiveMerge.open(outputDir, naming, "doc.pdf")) {
+            assertEquals(2, merge.pagesMerged(), "appended again from the last marker");
+            for (var page : pages.subList(2, 6)) merge.append(page);
+            merge.finish();
+        }
+
+        assertEquals(comparable(OcrToSemanticXHtml.combineMultipleResults(pages, "doc.pdf")),
+            comparable(withoutSlotPadding(Files.readString(outputDir.resolve(naming.combined("xhtml"))))));
+    }
+}
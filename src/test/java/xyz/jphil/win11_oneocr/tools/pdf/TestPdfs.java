@@ -0,0 +1,139 @@
+package xyz.jphil.win11_oneocr.tools.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import picocli.CommandLine;
+import xyz.jphil.win11_oneocr.tools.OcrTool;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates text-and-vector and scanned (one JPEG per page) PDFs for tests and benchmarks, and runs
+ * the command line on them
+ */
+public class TestPdfs {
+
+    private static final String[] WORDS = {
+        "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit",
+        "sed", "do", "eiusmod", "tempor", "incididunt", "labore", "magna", "aliqua"
+    };
+
+    /**
+     * Write an A4 PDF with pageCount pages of body text, a heading and a few ruled boxes per page
+     */
+    public static Path generate(Path file, int pageCount) throws IOException {
+        try (var document = new PDDocument()) {
+            var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            var bold = new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD);
+            for (int p = 1; p <= pageCount; p++) {
+                var page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (var content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(bold, 18);
+                    content.newLineAtOffset(60, 780);
+                    content.showText("Page " + p);
+                    content.setFont(font, 10);
+                    content.setLeading(14);
+                    for (int line = 0; line < 45; line++) {
+                        content.newLine();
+                        content.showText(line(p, line));
+                    }
+                    content.endText();
+
+                    for (int box = 0; box < 4; box++) {
+                        content.addRect(60 + box * 120, 60, 100, 60);
+                    }
+                    content.stroke();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    /**
+     * Write a scanned-style A4 PDF: each page is one full-page JPEG of widthPx pixels with an
+     * invisible text layer over it, as scanners and OCR tools produce
+     */
+    public static Path scanned(Path file, int pageCount, int widthPx) throws IOException {
+        try (var document = new PDDocument()) {
+            var font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            var box = PDRectangle.A4;
+            int heightPx = Math.round(widthPx * box.getHeight() / box.getWidth());
+            for (int p = 1; p <= pageCount; p++) {
+                var page = new PDPage(box);
+                document.addPage(page);
+                var image = JPEGFactory.createFromByteArray(document, scan(p, widthPx, heightPx));
+                try (var content = new PDPageContentStream(document, page)) {
+                    content.drawImage(image, 0, 0, box.getWidth(), box.getHeight());
+                    content.beginText();
+                    content.setRenderingMode(RenderingMode.NEITHER);
+                    content.setFont(font, 10);
+                    content.newLineAtOffset(60, 780);
+                    content.showText(line(p, 0));
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    /**
+     * JPEG bytes of a page scan with a few lines of dark text
+     */
+    public static byte[] scan(int page, int width, int height) throws IOException {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.DARK_GRAY);
+        for (int line = 0; line < 20; line++) {
+            g.drawString(line(page, line), width / 12, height / 12 + line * height / 30);
+        }
+        g.dispose();
+        var out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static String line(int page, int line) {
+        var text = new StringBuilder();
+        for (int w = 0; w < 12; w++) {
+            if (w > 0) text.append(' ');
+            text.append(WORDS[(page * 31 + line * 7 + w * 3) % WORDS.length]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Run the command line with the given --engine; returns its exit code
+     */
+    public static int runOcr(String engineSpec, String... args) {
+        return runOcr(engineSpec, List.of(args));
+    }
+
+    /**
+     * Run the command line with the given --engine, the arguments and then the options; returns its exit code
+     */
+    public static int runOcr(String engineSpec, List<String> args, String... options) {
+        var all = new ArrayList<>(List.of("--engine", engineSpec));
+        all.addAll(args);
+        all.addAll(List.of(options));
+        return new CommandLine(new OcrTool()).execute(all.toArray(String[]::new));
+    }
+}